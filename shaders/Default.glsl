@@ -1,24 +1,27 @@
 #type vertex
 #version 330 core
 
-layout (location=0) in vec3 aPosition;
+layout (location=0) in vec2 aPosition;
 layout (location=1) in vec4 aColor;
 layout (location=2) in vec2 aUVCoordinates;
-layout (location=3) in float aTextureID;
+layout (location=3) in uint aTextureID;
 
-uniform mat4 uProjection;
-uniform mat4 uView;
+layout (std140) uniform Camera
+{
+    mat4 uProjection;
+    mat4 uView;
+};
 
 out vec4 fColor;
 out vec2 fUVCoordinates;
-out float fTextureID;
+flat out uint fTextureID;
 
 void main()
 {
     fColor = aColor;
     fUVCoordinates = aUVCoordinates;
     fTextureID = aTextureID;
-    gl_Position = uProjection * uView * vec4(aPosition, 1.0);
+    gl_Position = uProjection * uView * vec4(aPosition, 0.0, 1.0);
 }
 
 #type fragment
@@ -26,7 +29,7 @@ void main()
 
 in vec4 fColor;
 in vec2 fUVCoordinates;
-in float fTextureID;
+flat in uint fTextureID;
 
 uniform sampler2D uTextures[16];
 
@@ -34,7 +37,7 @@ out vec4 color;
 
 void main()
 {
-    if (fTextureID > 0) {
+    if (fTextureID > 0u) {
         int id = int(fTextureID);
         color = fColor * texture(uTextures[id], fUVCoordinates);
     } else {
@@ -0,0 +1,55 @@
+#type vertex
+#version 330 core
+
+layout (location=0) in vec2 aCorner;
+layout (location=1) in vec2 aPosition;
+layout (location=2) in vec2 aSize;
+layout (location=3) in float aRotation;
+layout (location=4) in vec4 aUVRect;
+layout (location=5) in vec4 aColor;
+layout (location=6) in uint aTextureID;
+layout (location=7) in uint aEntityID;
+
+layout (std140) uniform Camera
+{
+    mat4 uProjection;
+    mat4 uView;
+};
+
+out vec4 fColor;
+out vec2 fUVCoordinates;
+flat out uint fTextureID;
+
+void main()
+{
+    vec2 local = (aCorner - 0.5) * aSize;
+    float c = cos(aRotation);
+    float s = sin(aRotation);
+    vec2 position = aPosition + vec2(local.x * c - local.y * s, local.x * s + local.y * c);
+
+    fColor = aColor;
+    fUVCoordinates = mix(aUVRect.xy, aUVRect.zw, aCorner);
+    fTextureID = aTextureID;
+    gl_Position = uProjection * uView * vec4(position, 0.0, 1.0);
+}
+
+#type fragment
+#version 330 core
+
+in vec4 fColor;
+in vec2 fUVCoordinates;
+flat in uint fTextureID;
+
+uniform sampler2D uTextures[16];
+
+out vec4 color;
+
+void main()
+{
+    if (fTextureID > 0u) {
+        int id = int(fTextureID);
+        color = fColor * texture(uTextures[id], fUVCoordinates);
+    } else {
+        color = fColor;
+    }
+}
@@ -1,18 +1,21 @@
 #type vertex
 #version 330 core
-layout (location=0) in vec3 aPos;
+layout (location=0) in vec2 aPos;
 layout (location=1) in vec4 aColor;
 layout (location=2) in vec2 aTexCoords;
-layout (location=3) in float aTexId;
-layout (location=4) in float aEntityId;
+layout (location=3) in uint aTexId;
+layout (location=4) in uint aEntityId;
 
-uniform mat4 uProjection;
-uniform mat4 uView;
+layout (std140) uniform Camera
+{
+    mat4 uProjection;
+    mat4 uView;
+};
 
 out vec4 fColor;
 out vec2 fTexCoords;
-out float fTexId;
-out float fEntityId;
+flat out uint fTexId;
+flat out uint fEntityId;
 
 void main()
 {
@@ -21,7 +24,7 @@ void main()
     fTexId = aTexId;
     fEntityId = aEntityId;
 
-    gl_Position = uProjection * uView * vec4(aPos, 1.0);
+    gl_Position = uProjection * uView * vec4(aPos, 0.0, 1.0);
 }
 
 #type fragment
@@ -29,17 +32,17 @@ void main()
 
 in vec4 fColor;
 in vec2 fTexCoords;
-in float fTexId;
-in float fEntityId;
+flat in uint fTexId;
+flat in uint fEntityId;
 
 uniform sampler2D uTextures[16];
 
-out vec3 color;
+out uint entityId;
 
 void main()
 {
     vec4 texColor = vec4(1, 1, 1, 1);
-    if (fTexId > 0) {
+    if (fTexId > 0u) {
         int id = int(fTexId);
         texColor = fColor * texture(uTextures[id], fTexCoords);
     }
@@ -48,5 +51,5 @@ void main()
         discard;
 
     }
-    color = vec3(fEntityId, fEntityId, fEntityId);
+    entityId = fEntityId;
 }
\ No newline at end of file
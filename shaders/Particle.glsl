@@ -0,0 +1,43 @@
+#type vertex
+#version 330 core
+
+layout (location=0) in vec2 aCorner;
+layout (location=1) in vec2 aPosition;
+layout (location=2) in float aSize;
+layout (location=3) in vec4 aColor;
+
+layout (std140) uniform Camera
+{
+    mat4 uProjection;
+    mat4 uView;
+};
+
+out vec4 fColor;
+out vec2 fCorner;
+
+void main()
+{
+    vec2 position = aPosition + (aCorner - 0.5) * aSize;
+
+    fColor = aColor;
+    fCorner = aCorner;
+    gl_Position = uProjection * uView * vec4(position, 0.0, 1.0);
+}
+
+#type fragment
+#version 330 core
+
+in vec4 fColor;
+in vec2 fCorner;
+
+out vec4 color;
+
+void main()
+{
+    // Soft round particle, fading out towards the edge of the quad
+    float falloff = clamp(1.0 - length(fCorner - 0.5) * 2.0, 0.0, 1.0);
+    float alpha = fColor.a * falloff;
+
+    // Premultiplied, to match the GL_ONE, GL_ONE_MINUS_SRC_ALPHA blending
+    color = vec4(fColor.rgb * alpha, alpha);
+}
@@ -0,0 +1,142 @@
+/*
+ Title: QuadKernelBenchmark
+ Date: 2024-07-25
+ Author: Kyle St John
+ */
+package engine.graphics;
+
+import engine.utils.math.MathUtils;
+import org.joml.Vector2f;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import static engine.utils.engine.EConstants.MAX_BATCH_SIZE;
+
+/**
+ * Measures expanding rotated sprites into their quad corners, a batch of MAX_BATCH_SIZE sprites at a
+ * time like the renderer does. Compares the old per corner rotation with the scalar and vector paths
+ * of {@link QuadKernel}. Run with ./gradlew jmh. One operation is a pass over all numSprites sprites,
+ * so sprites per second are the score times numSprites.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class QuadKernelBenchmark {
+
+    // Same layout as a BatchRenderer vertex, only the positions are written
+    private static final int VERTEX_SIZE_IN_BYTES = 24;
+
+    @Param({"10000", "100000", "1000000"})
+    public int numSprites;
+
+    private float[] centerX, centerY, halfWidth, halfHeight, rotation;
+    private ByteBuffer staging;
+    private QuadKernel kernel;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        Random random = new Random(42);
+        centerX = new float[numSprites];
+        centerY = new float[numSprites];
+        halfWidth = new float[numSprites];
+        halfHeight = new float[numSprites];
+        rotation = new float[numSprites];
+        for (int i = 0; i < numSprites; i++) {
+            centerX[i] = random.nextFloat() * 4096.0f;
+            centerY[i] = random.nextFloat() * 4096.0f;
+            halfWidth[i] = 8.0f + random.nextFloat() * 24.0f;
+            halfHeight[i] = 8.0f + random.nextFloat() * 24.0f;
+            rotation[i] = random.nextFloat() * 360.0f;
+        }
+        staging = ByteBuffer.allocateDirect(MAX_BATCH_SIZE * 4 * VERTEX_SIZE_IN_BYTES).order(ByteOrder.nativeOrder());
+        kernel = new QuadKernel(MAX_BATCH_SIZE);
+    }
+
+    @Benchmark
+    public ByteBuffer rotateEachCorner() {
+        // The packer before the kernel: five allocations and four trig evaluations per sprite
+        for (int start = 0; start < numSprites; start += MAX_BATCH_SIZE) {
+            int end = Math.min(start + MAX_BATCH_SIZE, numSprites);
+            for (int i = start; i < end; i++) {
+                Vector2f origin = new Vector2f(centerX[i], centerY[i]);
+                int offset = (i - start) * 4 * VERTEX_SIZE_IN_BYTES;
+                for (int k = 0; k < 4; k++) {
+                    float localX = (k == 0 || k == 1) ? -halfWidth[i] : halfWidth[i];
+                    float localY = (k == 0 || k == 3) ? -halfHeight[i] : halfHeight[i];
+                    Vector2f vertex = new Vector2f(centerX[i] + localX, centerY[i] + localY);
+                    MathUtils.rotate(vertex, rotation[i], origin);
+                    staging.putFloat(offset, vertex.x);
+                    staging.putFloat(offset + 4, vertex.y);
+                    offset += VERTEX_SIZE_IN_BYTES;
+                }
+            }
+        }
+        return staging;
+    }
+
+    @Benchmark
+    public ByteBuffer writeQuad() {
+        for (int start = 0; start < numSprites; start += MAX_BATCH_SIZE) {
+            int end = Math.min(start + MAX_BATCH_SIZE, numSprites);
+            for (int i = start; i < end; i++) {
+                QuadKernel.writeQuad(staging, (i - start) * 4 * VERTEX_SIZE_IN_BYTES, VERTEX_SIZE_IN_BYTES,
+                        centerX[i], centerY[i], halfWidth[i], halfHeight[i], rotation[i]);
+            }
+        }
+        return staging;
+    }
+
+    @Benchmark
+    public ByteBuffer kernelScalar() {
+        for (int start = 0; start < numSprites; start += MAX_BATCH_SIZE) {
+            int count = loadBatch(start);
+            kernel.transformRange(0, count);
+            writeBatch(count);
+        }
+        return staging;
+    }
+
+    @Benchmark
+    public ByteBuffer kernelVector() {
+        for (int start = 0; start < numSprites; start += MAX_BATCH_SIZE) {
+            int count = loadBatch(start);
+            QuadKernelVector.transform(kernel, count);
+            writeBatch(count);
+        }
+        return staging;
+    }
+
+    private int loadBatch(int start) {
+        int count = Math.min(MAX_BATCH_SIZE, numSprites - start);
+        for (int i = 0; i < count; i++) {
+            kernel.setQuad(i, centerX[start + i], centerY[start + i], halfWidth[start + i], halfHeight[start + i],
+                    rotation[start + i]);
+        }
+        return count;
+    }
+
+    private void writeBatch(int count) {
+        for (int i = 0; i < count; i++) {
+            kernel.writeCorners(i, staging, i * 4 * VERTEX_SIZE_IN_BYTES, VERTEX_SIZE_IN_BYTES);
+        }
+    }
+}
+/*End of QuadKernelBenchmark class*/
@@ -5,12 +5,51 @@
  */
 
 import engine.graphics.EngineWindow;
+import engine.graphics.QuadKernel;
+import engine.utils.engine.EConstants;
 
 /**
  * The engines main class
  */
 public class Engine {
     public static void main(String[] args) {
+        for (String arg : args) {
+            // Draws sprites with one instanced quad each instead of four CPU built vertices
+            if (arg.equals("--instanced")) {
+                EngineWindow.Enabled_Render_Mode = EConstants.RenderMode.Instanced;
+            }
+            // Computes sprite corners with the Vector API, needs --add-modules jdk.incubator.vector
+            if (arg.equals("--vector-kernel")) {
+                QuadKernel.Use_Vector_Kernel = true;
+            }
+            // Renders launched levels on their own thread, overlapping rendering with the next tick
+            if (arg.equals("--render-thread")) {
+                EngineWindow.Use_Render_Thread = true;
+            }
+            // Renders the launched level offscreen for a fixed number of frames and reports the frame times
+            if (arg.equals("--headless")) {
+                EngineWindow.Use_Headless = true;
+                EngineWindow.Enabled_Engine_Mode = EConstants.EngineMode.LaunchMode;
+            }
+            // Headless without a display server, through OSMesa (e.g. Mesa's software rasterizer)
+            if (arg.equals("--osmesa")) {
+                EngineWindow.Use_OSMesa = true;
+            }
+            if (arg.startsWith("--frames=")) {
+                EngineWindow.Headless_Frames = Integer.parseInt(arg.substring("--frames=".length()));
+            }
+            // Resolution of headless runs, e.g. --size=1920x1080
+            if (arg.startsWith("--size=")) {
+                String[] size = arg.substring("--size=".length()).split("x");
+                EngineWindow.Headless_Width = Integer.parseInt(size[0]);
+                EngineWindow.Headless_Height = Integer.parseInt(size[1]);
+            }
+            // Writes the last headless frame to a PNG file, for image diffs
+            if (arg.startsWith("--screenshot=")) {
+                EngineWindow.Headless_Screenshot_Path = arg.substring("--screenshot=".length());
+            }
+        }
+
         EngineWindow engine = EngineWindow.get();
         engine.run();
     }
@@ -6,16 +6,17 @@
 package engine.debugging.draw;
 
 import engine.graphics.Shader;
-import engine.editor.GameEditor;
+import engine.graphics.StreamingBuffer;
 import engine.utils.engine.ResourceUtils;
 import org.joml.Vector2f;
 import org.joml.Vector3f;
+import org.lwjgl.system.MemoryUtil;
 
 import java.util.ArrayList;
-import java.util.Arrays;
 
 import static engine.utils.engine.EConstants.DEBUG_LINE_WIDTH;
 import static engine.utils.engine.EConstants.MAX_DEBUG_LINES;
+import static engine.utils.engine.EConstants.STREAMING_REGION_COUNT;
 import static org.lwjgl.opengl.GL15.*;
 import static org.lwjgl.opengl.GL20.*;
 import static org.lwjgl.opengl.GL30.glBindVertexArray;
@@ -29,8 +30,9 @@ public class DebugRenderer {
 
     // Rendering
     private static int VAO_ID;
-    private static int VBO_ID;
-    private static final float[] Vertices = new float[MAX_DEBUG_LINES * 6 * 2];
+    // Lines are rewritten every frame, so they are streamed straight into mapped memory
+    private static StreamingBuffer Line_Buffer;
+    private static final int VERTEX_SIZE_IN_BYTES = 6 * Float.BYTES;
     private static final Shader Debug_Shader = ResourceUtils.getOrCreateShader("C:\\Dev\\StellarSprite2D\\JEngine2D\\shaders\\Debug.glsl");
 
     // Debug Lines
@@ -46,18 +48,13 @@ public class DebugRenderer {
         VAO_ID = glGenVertexArrays();
         glBindVertexArray(VAO_ID);
 
-        // Generate the vertex buffer object
-        VBO_ID = glGenBuffers();
-        glBindBuffer(GL_ARRAY_BUFFER, VBO_ID);
-        glBufferData(GL_ARRAY_BUFFER, Vertices.length * Float.BYTES, GL_DYNAMIC_DRAW);
+        // Generate the streaming vertex buffer, one region holds every line of a frame
+        Line_Buffer = new StreamingBuffer(MAX_DEBUG_LINES * 2 * VERTEX_SIZE_IN_BYTES, STREAMING_REGION_COUNT);
 
         // Enable the attributes
-        // Position
-        glVertexAttribPointer(0, 3, GL_FLOAT, false, 6 * Float.BYTES, 0);
+        glBindBuffer(GL_ARRAY_BUFFER, Line_Buffer.getBufferID());
+        setVertexAttributePointers(0);
         glEnableVertexAttribArray(0);
-
-        // Color
-        glVertexAttribPointer(1, 3, GL_FLOAT, false, 6 * Float.BYTES, 3 * Float.BYTES);
         glEnableVertexAttribArray(1);
 
         // Set the line width (for windows)
@@ -75,47 +72,54 @@ public class DebugRenderer {
             return;
         }
 
-        // Index to keep track of the current position in the vertices array
-        int index = 0;
+        int numLines = Math.min(DEBUG_LINES.size(), MAX_DEBUG_LINES);
+
+        // Reserve this frame's vertices in the streaming buffer
+        Line_Buffer.beginFrame();
+        long bufferOffset = Line_Buffer.reserve(numLines * 2 * VERTEX_SIZE_IN_BYTES, Float.BYTES);
+        if (bufferOffset == -1) {
+            Line_Buffer.endFrame();
+            return;
+        }
+        long address = Line_Buffer.getAddress(bufferOffset);
 
         // Iterate through each line in the list
-        for (DebugLine debugLine : DEBUG_LINES) {
+        for (int lineIndex = 0; lineIndex < numLines; lineIndex++) {
+            DebugLine debugLine = DEBUG_LINES.get(lineIndex);
             // Iterate twice for the start and end points of the line
             for (int i = 0; i < 2; i++) {
                 // Determine whether to get the start or end point of the line
                 Vector2f position = (i == 0) ? debugLine.getLineStart() : debugLine.getLineEnd();
                 Vector3f color = debugLine.getLineColor();
 
-                // Load position into the vertices array
-                Vertices[index] = position.x;
-                Vertices[index + 1] = position.y;
-                Vertices[index + 2] = 0.0f;
+                // Load position into the mapped buffer
+                MemoryUtil.memPutFloat(address, position.x);
+                MemoryUtil.memPutFloat(address + 4, position.y);
+                MemoryUtil.memPutFloat(address + 8, 0.0f);
 
-                // Load color into the vertices array
-                Vertices[index + 3] = color.x;
-                Vertices[index + 4] = color.y;
-                Vertices[index + 5] = color.z;
+                // Load color into the mapped buffer
+                MemoryUtil.memPutFloat(address + 12, color.x);
+                MemoryUtil.memPutFloat(address + 16, color.y);
+                MemoryUtil.memPutFloat(address + 20, color.z);
 
-                // Move to the next set of coordinates in the vertices array
-                index += 6;
+                // Move to the next vertex
+                address += VERTEX_SIZE_IN_BYTES;
             }
         }
-
-        // Update the buffer data with the new vertices
-        glBindBuffer(GL_ARRAY_BUFFER, VBO_ID);
-        glBufferSubData(GL_ARRAY_BUFFER, 0, Arrays.copyOfRange(Vertices, 0, DEBUG_LINES.size() * 6 * 2));
+        Line_Buffer.endFrame();
 
         // Use the debug shader
         Debug_Shader.use();
-        Debug_Shader.uploadMat4f("uProjection", GameEditor.current_Level.getOrthoCamera().getProjectionMatrix());
-        Debug_Shader.uploadMat4f("uView", GameEditor.current_Level.getOrthoCamera().calculateViewMatrix());
 
-        // Bind the vertex array object (VAO) and enable vertex attributes
+        // Bind the vertex array object (VAO), point it at this frame's region and enable vertex attributes
         glBindVertexArray(VAO_ID);
+        glBindBuffer(GL_ARRAY_BUFFER, Line_Buffer.getBufferID());
+        setVertexAttributePointers(bufferOffset);
         enableVertexAttributes();
 
-        // Draw the lines
-        glDrawArrays(GL_LINES, 0, DEBUG_LINES.size() * 6 * 2);
+        // Draw the lines, two vertices each
+        glDrawArrays(GL_LINES, 0, numLines * 2);
+        Line_Buffer.fenceFrame();
 
         // Disable vertex attributes and unbind the VAO
         disableVertexAttributes();
@@ -134,6 +138,19 @@ public class DebugRenderer {
         }*/
     }
 
+    /**
+     * Points the position and color attributes at the bound buffer.
+     *
+     * @param baseOffset Byte offset of the first vertex.
+     */
+    private static void setVertexAttributePointers(long baseOffset) {
+        // Position
+        glVertexAttribPointer(0, 3, GL_FLOAT, false, VERTEX_SIZE_IN_BYTES, baseOffset);
+
+        // Color
+        glVertexAttribPointer(1, 3, GL_FLOAT, false, VERTEX_SIZE_IN_BYTES, baseOffset + 3 * Float.BYTES);
+    }
+
     /**
      * Enables vertex attributes for position and color.
      */
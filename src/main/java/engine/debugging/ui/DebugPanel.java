@@ -3,7 +3,9 @@ package engine.debugging.ui;
 import engine.debugging.draw.DebugRenderer;
 import engine.debugging.info.Logger;
 import engine.graphics.Texture;
+import engine.graphics.TextureResidency;
 import engine.debugging.info.ErrorManager;
+import engine.editor.GameEditor;
 import engine.utils.engine.ResourceUtils;
 import imgui.ImGui;
 import imgui.flag.ImGuiCol;
@@ -64,6 +66,11 @@ public class DebugPanel {
 
         setSectionName("Info");
         ImGui.setCursorPosX(X_SPACING);
+        ImGui.text("Culled sprites: " + GameEditor.current_Level.getRenderer().getNumCulledSprites());
+        ImGui.setCursorPosX(X_SPACING);
+        ImGui.text("Texture memory: " + TextureResidency.getResidentBytes() / (1024 * 1024) + " / "
+                + TextureResidency.getMemoryBudget() / (1024 * 1024) + " MB");
+        ImGui.setCursorPosX(X_SPACING);
         ErrorManager.displayReportList();
 
         ImGui.sameLine();
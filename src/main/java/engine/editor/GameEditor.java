@@ -11,16 +11,19 @@ import engine.debugging.info.Logger;
 import engine.debugging.ui.DebugPanel;
 import engine.editor.controls.EditorControls;
 import engine.editor.controls.ObjectPicker;
+import engine.editor.controls.SpritePicker;
 import engine.editor.ui.ContentWindow;
 import engine.editor.ui.DetailsWindow;
 import engine.editor.ui.ImportWindow;
 import engine.eventsystem.Event;
 import engine.eventsystem.EventDispatcher;
 import engine.eventsystem.EventListener;
+import engine.graphics.CameraUniformBuffer;
 import engine.graphics.EngineWindow;
 import engine.graphics.Renderer;
 import engine.serialization.LevelSerializer;
 import engine.utils.engine.EConstants;
+import engine.utils.engine.ResourceUtils;
 import engine.world.levels.Level;
 import engine.world.objects.GameObject;
 import org.joml.Vector2f;
@@ -37,6 +40,7 @@ public class GameEditor implements EventListener {
     private final DetailsWindow defaultDetailsWindow = new DetailsWindow();
     public  static ObjectPicker Object_Picker =
             new ObjectPicker( EngineWindow.get().getWindowWidth(), EngineWindow.get().getWindowHeight());
+    public static final SpritePicker Sprite_Picker = new SpritePicker();
     private final EditorControls editorControls = new EditorControls();
     private boolean showPopup = false;
 
@@ -65,9 +69,14 @@ public class GameEditor implements EventListener {
         EventDispatcher.addListener(EConstants.EventType.Load_New_Scene, this);
         EventDispatcher.addListener(EConstants.EventType.Save, this);
         DebugRenderer.init();
+        CameraUniformBuffer.init();
+        ResourceUtils.buildTextureAtlas();
     }
 
     public void loadNewLevel(Level level) {
+        if (current_Level != null) {
+            current_Level.cleanup();
+        }
         LevelSerializer.load(level);
         current_Level = level;
         current_Level.init();
@@ -77,7 +86,12 @@ public class GameEditor implements EventListener {
 
     public void tick(float deltaTime) {
         current_Level.tick(deltaTime);
-        editorControls.tick(deltaTime);
+        // Editor controls only run while editing, the render thread only drives launched levels and
+        // headless runs have no input
+        if (!EngineWindow.Use_Headless
+                && !(EngineWindow.Use_Render_Thread && EngineWindow.Enabled_Engine_Mode == EConstants.EngineMode.LaunchMode)) {
+            editorControls.tick(deltaTime);
+        }
     }
 
     public void physicsTick(float deltaTime) {
@@ -86,14 +100,19 @@ public class GameEditor implements EventListener {
 
 
     public void renderEditor() {
-        glDisable(GL_BLEND);
-
-        Object_Picker.bind();
-        Renderer.setPickingShader();
-        current_Level.render();
-        Object_Picker.unbind();
-
-        glEnable(GL_BLEND);
+        // The picking pass only runs on frames with a pick waiting, the Sprite_Picker handles regular clicks
+        Object_Picker.update();
+        if (Object_Picker.hasPendingRequest()) {
+            glDisable(GL_BLEND);
+
+            Object_Picker.bind();
+            Renderer.setPickingShader();
+            current_Level.render();
+            Object_Picker.readPendingRequest();
+            Object_Picker.unbind();
+
+            glEnable(GL_BLEND);
+        }
 
         drawGridLines();
     }
@@ -20,13 +20,19 @@ import engine.world.levels.Level;
 import engine.world.objects.GameObject;
 import org.joml.Vector2f;
 
+import java.util.Set;
+
 import static engine.editor.GameEditor.Object_Picker;
+import static engine.editor.GameEditor.Sprite_Picker;
 import static engine.utils.engine.EConstants.*;
 import static org.lwjgl.glfw.GLFW.GLFW_KEY_DELETE;
 import static org.lwjgl.glfw.GLFW.GLFW_MOUSE_BUTTON_LEFT;
 
 public class EditorControls implements EventListener {
 
+    // Resolve clicks with the GPU picking pass instead of the Sprite_Picker, e.g. for shader driven sprites
+    public static boolean Use_Gpu_Picking = false;
+
     private static GameObject Active_Object = null;
     private boolean enableGridSnap = true;
     private float debounce = 0.5f;
@@ -116,20 +122,36 @@ public class EditorControls implements EventListener {
     public void selectAndDispatch(float deltaTime) {
         debounce -= deltaTime;
 
-        if (MouseInputs.mouseButtonDown(GLFW_MOUSE_BUTTON_LEFT) && debounce < 0) {
-            int x = (int) MouseInputs.getScreenX();
-            int y = (int) MouseInputs.getScreenY();
-
-            int gameObjectId = Object_Picker.readObjectIDByPixel(x, y);
-            GameObject pickedObj = GameEditor.current_Level.getGameObject(gameObjectId);
+        if (Use_Gpu_Picking) {
+            dispatchGpuPick();
+        }
 
-            if (pickedObj != null && gameObjectId != GIZMO_GAME_OBJECT_UID) {
-                EventDispatcher.dispatchEvent(new Event(EConstants.EventType.Active_Object), pickedObj);
+        if (MouseInputs.mouseButtonDown(GLFW_MOUSE_BUTTON_LEFT) && debounce < 0) {
+            if (Use_Gpu_Picking) {
+                // Answered by a later frame, see dispatchGpuPick()
+                Object_Picker.requestPick((int) MouseInputs.getScreenX(), (int) MouseInputs.getScreenY());
+            } else {
+                // Resolved against the sprites on the CPU, so the editor renders no picking pass
+                dispatchPick(Sprite_Picker.pick(GameEditor.current_Level.getRenderer(),
+                        MouseInputs.getOrthoX(), MouseInputs.getOrthoY()));
             }
             this.debounce = 0.5f;
         }
     }
 
+    private void dispatchGpuPick() {
+        Set<Integer> pickedUIDs = Object_Picker.pollResult();
+        if (pickedUIDs != null && !pickedUIDs.isEmpty()) {
+            dispatchPick(GameEditor.current_Level.getGameObject(pickedUIDs.iterator().next()));
+        }
+    }
+
+    private void dispatchPick(GameObject pickedObj) {
+        if (pickedObj != null && pickedObj.getUID() != GIZMO_GAME_OBJECT_UID) {
+            EventDispatcher.dispatchEvent(new Event(EConstants.EventType.Active_Object), pickedObj);
+        }
+    }
+
     public void setLevel(Level level) {
         currentLevel = level;
         masterGizmo.setLevel(level);
@@ -6,11 +6,39 @@
 package engine.editor.controls;
 
 import engine.debugging.info.Logger;
+import org.lwjgl.system.MemoryUtil;
+
+import java.nio.ByteBuffer;
+import java.util.HashSet;
+import java.util.Set;
 
 import static org.lwjgl.opengl.GL30.*;
+import static org.lwjgl.opengl.GL32.*;
 
+/**
+ * GPU picking. The level is rendered into an R32UI attachment holding the entity ID + 1 of every pixel,
+ * but only on frames where a pick was requested. The requested pixel or rectangle is copied into a pixel
+ * buffer object and mapped once a fence says the copy finished, usually a frame or two later, so picking
+ * never stalls the pipeline. One request is in flight at a time; a newer request replaces a waiting one.
+ */
 public class ObjectPicker {
+    private static final int[] CLEAR_ID = {0, 0, 0, 0};
+
     private int frameBufferId;
+    private int pixelBufferId;
+    private int width;
+    private int height;
+
+    // Rectangle to render and read on the next picking pass
+    private boolean bHasPendingRequest = false;
+    private int requestX, requestY, requestWidth, requestHeight;
+
+    // Read issued by the last picking pass and not yet mapped
+    private long readFence = 0;
+    private int numPixelsInFlight = 0;
+
+    // Entity UIDs of the last finished read, until collected
+    private Set<Integer> completedResult = null;
 
     public ObjectPicker(int width, int height) {
         init(width, height);
@@ -18,18 +46,22 @@ public class ObjectPicker {
 
 
     public void init(int width, int height) {
+        this.width = width;
+        this.height = height;
+
         // Generate framebuffer
         frameBufferId = glGenFramebuffers();
         glBindFramebuffer(GL_FRAMEBUFFER, frameBufferId);
 
+        // Entity IDs are stored as exact unsigned integers, 0 meaning no entity
         int pickingTextureId = glGenTextures();
         glBindTexture(GL_TEXTURE_2D, pickingTextureId);
         glTexParameteri(GL_TEXTURE_2D, GL_TEXTURE_WRAP_S, GL_REPEAT);
         glTexParameteri(GL_TEXTURE_2D, GL_TEXTURE_WRAP_T, GL_REPEAT);
         glTexParameteri(GL_TEXTURE_2D, GL_TEXTURE_MAG_FILTER, GL_NEAREST);
         glTexParameteri(GL_TEXTURE_2D, GL_TEXTURE_MIN_FILTER, GL_NEAREST);
-        glTexImage2D(GL_TEXTURE_2D, 0, GL_RGB32F, width, height, 0,
-                GL_RGB, GL_FLOAT, 0);
+        glTexImage2D(GL_TEXTURE_2D, 0, GL_R32UI, width, height, 0,
+                GL_RED_INTEGER, GL_UNSIGNED_INT, 0);
 
         glFramebufferTexture2D(GL_FRAMEBUFFER, GL_COLOR_ATTACHMENT0, GL_TEXTURE_2D,
                 pickingTextureId, 0);
@@ -48,11 +80,55 @@ public class ObjectPicker {
 
         glBindTexture(GL_TEXTURE_2D, 0);
         glBindFramebuffer(GL_FRAMEBUFFER, 0);
+
+        // Large enough for a rectangle covering the whole attachment
+        pixelBufferId = glGenBuffers();
+        glBindBuffer(GL_PIXEL_PACK_BUFFER, pixelBufferId);
+        glBufferData(GL_PIXEL_PACK_BUFFER, (long) width * height * Integer.BYTES, GL_STREAM_READ);
+        glBindBuffer(GL_PIXEL_PACK_BUFFER, 0);
+    }
+
+
+    /**
+     * Requests the entity under a pixel. The result is available from {@link #pollResult()} a few frames later.
+     */
+    public void requestPick(int x, int y) {
+        requestRegion(x, y, 1, 1);
+    }
+
+
+    /**
+     * Requests every entity drawn in a rectangle of pixels, for box selection. The rectangle is clamped
+     * to the attachment. The result is available from {@link #pollResult()} a few frames later.
+     */
+    public void requestRegion(int x, int y, int regionWidth, int regionHeight) {
+        int minX = Math.max(0, Math.min(x, x + regionWidth));
+        int minY = Math.max(0, Math.min(y, y + regionHeight));
+        int maxX = Math.min(width, Math.max(x, x + regionWidth));
+        int maxY = Math.min(height, Math.max(y, y + regionHeight));
+        if (maxX <= minX || maxY <= minY) {
+            return;
+        }
+
+        requestX = minX;
+        requestY = minY;
+        requestWidth = maxX - minX;
+        requestHeight = maxY - minY;
+        bHasPendingRequest = true;
+    }
+
+
+    /**
+     * Checks if the level has to be rendered into the picking attachment this frame.
+     */
+    public boolean hasPendingRequest() {
+        return bHasPendingRequest && readFence == 0;
     }
 
 
     public void bind() {
         glBindFramebuffer(GL_DRAW_FRAMEBUFFER, frameBufferId);
+        glClearBufferuiv(GL_COLOR, 0, CLEAR_ID);
     }
 
 
@@ -61,14 +137,66 @@ public class ObjectPicker {
     }
 
 
-    public int readObjectIDByPixel(int x, int y) {
+    /**
+     * Copies the requested rectangle into the pixel buffer without waiting for it. Called after the
+     * picking pass was rendered.
+     */
+    public void readPendingRequest() {
         glBindFramebuffer(GL_READ_FRAMEBUFFER, frameBufferId);
         glReadBuffer(GL_COLOR_ATTACHMENT0);
+        glBindBuffer(GL_PIXEL_PACK_BUFFER, pixelBufferId);
+        glReadPixels(requestX, requestY, requestWidth, requestHeight, GL_RED_INTEGER, GL_UNSIGNED_INT, 0);
+        glBindBuffer(GL_PIXEL_PACK_BUFFER, 0);
+        glBindFramebuffer(GL_READ_FRAMEBUFFER, 0);
+
+        readFence = glFenceSync(GL_SYNC_GPU_COMMANDS_COMPLETE, 0);
+        numPixelsInFlight = requestWidth * requestHeight;
+        bHasPendingRequest = false;
+    }
+
+
+    /**
+     * Collects the read in flight if the GPU has finished it. Never waits. Called once per frame.
+     */
+    public void update() {
+        if (readFence == 0) {
+            return;
+        }
+        int status = glClientWaitSync(readFence, 0, 0);
+        if (status != GL_ALREADY_SIGNALED && status != GL_CONDITION_SATISFIED) {
+            return;
+        }
+        glDeleteSync(readFence);
+        readFence = 0;
+
+        Set<Integer> entityUIDs = new HashSet<>();
+        glBindBuffer(GL_PIXEL_PACK_BUFFER, pixelBufferId);
+        ByteBuffer pixels = glMapBufferRange(GL_PIXEL_PACK_BUFFER, 0, (long) numPixelsInFlight * Integer.BYTES, GL_MAP_READ_BIT);
+        if (pixels != null) {
+            long address = MemoryUtil.memAddress(pixels);
+            for (int i = 0; i < numPixelsInFlight; i++) {
+                int entityID = MemoryUtil.memGetInt(address + (long) i * Integer.BYTES);
+                if (entityID != 0) {
+                    entityUIDs.add(entityID - 1);
+                }
+            }
+            glUnmapBuffer(GL_PIXEL_PACK_BUFFER);
+        }
+        glBindBuffer(GL_PIXEL_PACK_BUFFER, 0);
+        completedResult = entityUIDs;
+    }
 
-        float[] pixels = new float[3];
-        glReadPixels(x, y, 1, 1, GL_RGB, GL_FLOAT, pixels);
 
-        return (int)(pixels[0]) - 1;
+    /**
+     * Takes the result of the last finished request.
+     *
+     * @return The UIDs of the game objects drawn in the requested pixels, or null if no request finished
+     * since the last call. Background pixels are left out.
+     */
+    public Set<Integer> pollResult() {
+        Set<Integer> result = completedResult;
+        completedResult = null;
+        return result;
     }
 }
 /*End of PickingTexture class*/
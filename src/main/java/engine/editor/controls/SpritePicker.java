@@ -0,0 +1,257 @@
+/*
+ Title: SpritePicker
+ Date: 2024-07-22
+ Author: Kyle St John
+ */
+package engine.editor.controls;
+
+import engine.graphics.BatchRenderer;
+import engine.graphics.RenderQueue;
+import engine.graphics.Renderer;
+import engine.graphics.Texture;
+import engine.utils.engine.ResourceUtils;
+import engine.world.components.Sprite;
+import engine.world.components.Tilemap;
+import engine.world.objects.GameObject;
+import org.joml.Vector2f;
+import org.lwjgl.BufferUtils;
+
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static engine.utils.engine.EConstants.EMPTY_TILE;
+import static org.lwjgl.stb.STBImage.stbi_image_free;
+import static org.lwjgl.stb.STBImage.stbi_load;
+import static org.lwjgl.stb.STBImage.stbi_set_flip_vertically_on_load;
+
+/**
+ * Resolves which game object is under a point in the world on the CPU, without rendering a picking pass.
+ * The renderer's chunked batches act as the spatial index: only sprites of batches whose bounds contain
+ * the point are tested. Each candidate is tested against its rotated rectangle and, optionally, against
+ * an alpha mask of its texture so clicks on transparent pixels fall through. Tilemaps are found by the
+ * chunk under the point and hit where that chunk holds a tile. Makes no GL calls.
+ */
+public class SpritePicker {
+
+    // Texels with an alpha above this are pickable
+    private static final int ALPHA_THRESHOLD = 0;
+
+    private final List<Sprite> candidates = new ArrayList<>();
+    private final List<Tilemap> tilemapCandidates = new ArrayList<>();
+
+    // Alpha masks by texture file path. Textures without a readable file map to null
+    private final Map<String, AlphaMask> alphaMasks = new HashMap<>();
+    private boolean bUseAlphaMasks = true;
+
+    /**
+     * Finds the top-most sprite or tilemap under a point.
+     *
+     * @param renderer The renderer of the level to pick from.
+     * @param worldX   The x coordinate of the point in world space.
+     * @param worldY   The y coordinate of the point in world space.
+     * @return The game object owning the sprite or tilemap drawn last under the point, or null.
+     */
+    public GameObject pick(Renderer renderer, float worldX, float worldY) {
+        candidates.clear();
+        tilemapCandidates.clear();
+        renderer.collectSpritesAt(worldX, worldY, candidates);
+        renderer.collectTilemapsAt(worldX, worldY, tilemapCandidates);
+        GameObject pickedObject = pick(candidates, tilemapCandidates, worldX, worldY);
+        candidates.clear();
+        tilemapCandidates.clear();
+        return pickedObject;
+    }
+
+    /**
+     * Finds the top-most of a list of sprites and tilemaps under a point.
+     *
+     * @param sprites  The sprite candidates, in the order the renderer submits their batches and, within a
+     *                 batch, in slot order.
+     * @param tilemaps The tilemap candidates, in the order the renderer holds them.
+     * @return The game object owning the sprite or tilemap drawn last under the point, or null.
+     */
+    GameObject pick(List<Sprite> sprites, List<Tilemap> tilemaps, float worldX, float worldY) {
+        // Batches are drawn in the order of their render queue keys, and in submission order among equal
+        // keys, so the hit with the highest key wins and a later hit wins a tie
+        Sprite pickedSprite = null;
+        long pickedKey = 0;
+        for (Sprite sprite : sprites) {
+            long key = getDrawKey(sprite);
+            if (pickedSprite != null && Long.compareUnsigned(key, pickedKey) < 0) {
+                continue;
+            }
+            if (isHit(sprite, worldX, worldY)) {
+                pickedSprite = sprite;
+                pickedKey = key;
+            }
+        }
+
+        // Tilemaps are drawn before the batches of their z-index, so they only cover sprites below them.
+        // Among themselves they are drawn by z-index, in list order among equal z-indices
+        Tilemap pickedTilemap = null;
+        for (Tilemap tilemap : tilemaps) {
+            int zIndex = tilemap.getTransform().getzIndex();
+            if (pickedTilemap != null && zIndex < pickedTilemap.getTransform().getzIndex()) {
+                continue;
+            }
+            if (pickedSprite != null && zIndex <= getDrawZIndex(pickedSprite)) {
+                continue;
+            }
+            if (isTileHit(tilemap, worldX, worldY)) {
+                pickedTilemap = tilemap;
+            }
+        }
+
+        if (pickedTilemap != null) {
+            return pickedTilemap.getOwningGameObject();
+        }
+        return pickedSprite != null ? pickedSprite.getOwningGameObject() : null;
+    }
+
+    /**
+     * Gets the z-index a sprite is drawn at, which is its batch's.
+     */
+    private static int getDrawZIndex(Sprite sprite) {
+        BatchRenderer batch = sprite.getBatch();
+        return batch != null ? batch.getzIndex() : sprite.getOwningGameObject().getZIndex();
+    }
+
+    /**
+     * Gets the key the render queue sorts a sprite's batch by, see {@link RenderQueue#makeKey(int, int)}.
+     */
+    private static long getDrawKey(Sprite sprite) {
+        BatchRenderer batch = sprite.getBatch();
+        return RenderQueue.makeKey(getDrawZIndex(sprite), batch != null ? batch.getSortTextureID() : 0);
+    }
+
+    /**
+     * Checks if the tile under a point is drawn. Tile (0, 0) has its bottom left corner at the tilemap's position.
+     */
+    private static boolean isTileHit(Tilemap tilemap, float worldX, float worldY) {
+        if (tilemap.getTileWidth() <= 0 || tilemap.getTileHeight() <= 0) {
+            return false;
+        }
+        Vector2f origin = tilemap.getTransform().getPosition();
+        int tileX = (int) Math.floor((worldX - origin.x) / tilemap.getTileWidth());
+        int tileY = (int) Math.floor((worldY - origin.y) / tilemap.getTileHeight());
+        int tile = tilemap.getTile(tileX, tileY);
+        if (tile == EMPTY_TILE) {
+            return false;
+        }
+        // Tiles past the end of the sprite sheet are skipped when the chunk meshes are built
+        return tilemap.getSpriteSheet() == null || tile < tilemap.getSpriteSheet().numOfSprites();
+    }
+
+    private boolean isHit(Sprite sprite, float worldX, float worldY) {
+        Vector2f spritePos = sprite.getSpritePos();
+        Vector2f spriteSize = sprite.getSpriteSize();
+        if (spriteSize.x == 0 || spriteSize.y == 0) {
+            return false;
+        }
+
+        // Move the point into the sprite's unrotated space, then to [0, 1] across the quad
+        double angle = Math.toRadians(-sprite.getSpriteRotation());
+        float cos = (float) Math.cos(angle);
+        float sin = (float) Math.sin(angle);
+        float dx = worldX - spritePos.x;
+        float dy = worldY - spritePos.y;
+        float s = (dx * cos - dy * sin) / spriteSize.x + 0.5f;
+        float t = (dx * sin + dy * cos) / spriteSize.y + 0.5f;
+        if (s < 0 || s > 1 || t < 0 || t > 1) {
+            return false;
+        }
+
+        Texture texture = sprite.getSpriteTexture();
+        if (!bUseAlphaMasks || texture == null) {
+            return true;
+        }
+        AlphaMask alphaMask = getAlphaMask(texture);
+        if (alphaMask == null) {
+            return true;
+        }
+
+        // Corner 0 is at (0, 0), corner 1 at (0, 1) and corner 3 at (1, 0), see BatchRenderer. The UVs
+        // are the ones drawn, so an animated sprite is tested against its current frame
+        float u = sprite.getU(0) + s * (sprite.getU(3) - sprite.getU(0)) + t * (sprite.getU(1) - sprite.getU(0));
+        float v = sprite.getV(0) + s * (sprite.getV(3) - sprite.getV(0)) + t * (sprite.getV(1) - sprite.getV(0));
+        return alphaMask.isOpaque(u, v);
+    }
+
+    private AlphaMask getAlphaMask(Texture texture) {
+        String filePath = texture.getFilePath();
+        if (filePath == null) {
+            return null;
+        }
+        if (!alphaMasks.containsKey(filePath)) {
+            alphaMasks.put(filePath, AlphaMask.load(filePath));
+        }
+        return alphaMasks.get(filePath);
+    }
+
+    /**
+     * Sets whether transparent texels are ignored when picking. Without masks the whole rectangle of a sprite is pickable.
+     */
+    public void setUseAlphaMasks(boolean bUseAlphaMasks) {
+        this.bUseAlphaMasks = bUseAlphaMasks;
+    }
+
+    /**
+     * Forgets the cached alpha masks, so edited textures are read again.
+     */
+    public void clearAlphaMasks() {
+        alphaMasks.clear();
+    }
+
+    /**
+     * One bit per texel of a texture, set where the texel is opaque enough to pick.
+     */
+    private static class AlphaMask {
+        private final BitSet opaqueTexels;
+        private final int width;
+        private final int height;
+
+        private AlphaMask(BitSet opaqueTexels, int width, int height) {
+            this.opaqueTexels = opaqueTexels;
+            this.width = width;
+            this.height = height;
+        }
+
+        private static AlphaMask load(String filePath) {
+            if (!ResourceUtils.isValidFilePath(filePath)) {
+                return null;
+            }
+
+            IntBuffer width = BufferUtils.createIntBuffer(1);
+            IntBuffer height = BufferUtils.createIntBuffer(1);
+            IntBuffer channels = BufferUtils.createIntBuffer(1);
+            // Flipped like the textures, so rows line up with the V coordinate
+            stbi_set_flip_vertically_on_load(true);
+            ByteBuffer image = stbi_load(filePath, width, height, channels, 4);
+            if (image == null) {
+                return null;
+            }
+
+            int numTexels = width.get(0) * height.get(0);
+            BitSet opaqueTexels = new BitSet(numTexels);
+            for (int i = 0; i < numTexels; i++) {
+                if ((image.get(4 * i + 3) & 0xFF) > ALPHA_THRESHOLD) {
+                    opaqueTexels.set(i);
+                }
+            }
+            stbi_image_free(image);
+            return new AlphaMask(opaqueTexels, width.get(0), height.get(0));
+        }
+
+        private boolean isOpaque(float u, float v) {
+            int x = Math.min(Math.max((int) (u * width), 0), width - 1);
+            int y = Math.min(Math.max((int) (v * height), 0), height - 1);
+            return opaqueTexels.get(y * width + x);
+        }
+    }
+}
+/*End of SpritePicker class*/
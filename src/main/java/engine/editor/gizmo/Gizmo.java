@@ -4,6 +4,7 @@ import engine.graphics.EngineWindow;
 import engine.graphics.SpriteSheet;
 import engine.graphics.Texture;
 import engine.io.MouseInputs;
+import engine.utils.engine.ResourceUtils;
 import engine.world.components.Sprite;
 import engine.world.components.Transform;
 import engine.world.objects.GameObject;
@@ -34,7 +35,7 @@ public class Gizmo {
 
     public Gizmo(GameObject gameObject) {
         this.activeGameObject = gameObject;
-        this.gizmoSpriteSheetTexture = new Texture("assets/spritesheets/gizmos.png");
+        this.gizmoSpriteSheetTexture = ResourceUtils.getOrCreateTexture("assets/spritesheets/gizmos.png");
         this.gizmoSpriteSheet = new SpriteSheet(gizmoSpriteSheetTexture, 32,32,0, "Gizmos");
         calculateGizmoPositions();
     }
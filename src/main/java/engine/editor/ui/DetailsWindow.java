@@ -122,7 +122,6 @@ public class DetailsWindow implements EventListener {
         }
 
         private void setTransformControlUI () {
-            int zIndex = activeGameObject.getZIndex();
             setSectionName("Transform");
             ImGuiUtils.renderVec2Sliders("Scale", activeGameObject.getTransform().getScale(), initialScale);
             ImGuiUtils.renderVec2Sliders("Position", activeGameObject.getTransform().getPosition(), initialPosition);
@@ -130,14 +129,10 @@ public class DetailsWindow implements EventListener {
 
             activeGameObject.getTransform().setRotation(ImGuiUtils.renderFloatSlider("Rotation", activeGameObject.getTransform().getRotation()));
             activeGameObject.setZIndex(ImGuiUtils.renderIntSlider("Z-Index", activeGameObject.getZIndex()));
-            activeGameObject.getComponent(Sprite.class).setColor(ImGuiUtils.renderColorPicker4f("Color", activeGameObject.getComponent(Sprite.class).getColor()));
-            updateZIndex(zIndex);
-        }
-
-        private void updateZIndex ( int oldZIndex){
-            if (activeGameObject.getZIndex() != oldZIndex) {
-                GameEditor.current_Level.removeGameObject(activeGameObject.getUID());
-                GameEditor.current_Level.addGameObject(activeGameObject);
+            // A z-index change is picked up by the renderer, which moves the sprite to a matching batch
+            Sprite sprite = activeGameObject.getComponent(Sprite.class);
+            if (sprite != null) {
+                sprite.setColor(ImGuiUtils.renderColorPicker4f("Color", sprite.getColor()));
             }
         }
 
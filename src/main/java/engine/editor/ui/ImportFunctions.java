@@ -6,7 +6,7 @@
 package engine.editor.ui;
 
 import engine.graphics.SpriteSheet;
-import engine.graphics.Texture;
+import engine.graphics.TextureLoader;
 import engine.serialization.SpriteSheetSerializer;
 import engine.utils.engine.ResourceUtils;
 import imgui.ImGui;
@@ -105,9 +105,9 @@ public class ImportFunctions {
             return;
         }
 
-        // Add new SpriteSheet to the ResourceManager
+        // Add new SpriteSheet to the ResourceManager. The texture decodes in the background so the editor keeps running
         ResourceUtils.addSpriteSheet(filePath,
-                new SpriteSheet(new Texture(filePath),
+                new SpriteSheet(TextureLoader.load(filePath),
                         spriteWidth, spriteHeight,
                         spriteSpacing, type));
 
@@ -5,14 +5,17 @@
  */
 package engine.graphics;
 
-import engine.editor.GameEditor;
-import engine.utils.math.MathUtils;
-import engine.utils.engine.ResourceUtils;
+import engine.graphics.atlas.AtlasRegion;
+import engine.utils.collections.IntIntHashMap;
 import engine.world.components.Sprite;
 import org.joml.Vector2f;
 import org.joml.Vector4f;
+import org.lwjgl.system.MemoryUtil;
 
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 
 import static engine.utils.engine.EConstants.MAX_BATCH_SIZE;
@@ -21,33 +24,108 @@ import static org.lwjgl.opengl.GL20.glDisableVertexAttribArray;
 import static org.lwjgl.opengl.GL20.glEnableVertexAttribArray;
 import static org.lwjgl.opengl.GL20C.glVertexAttribPointer;
 import static org.lwjgl.opengl.GL30.glBindVertexArray;
+import static org.lwjgl.opengl.GL30.glVertexAttribIPointer;
+import static org.lwjgl.opengl.GL30.glDeleteVertexArrays;
 import static org.lwjgl.opengl.GL30.glGenVertexArrays;
 
 public class BatchRenderer implements Comparable<BatchRenderer> {
 
-    private final int vertexSize = 10;
+    // Packed vertex: float2 position, unorm16x2 UV, RGBA8 color, uint texture unit and uint entity ID
+    // Tilemap chunk meshes share the layout, see TilemapRenderer
+    static final int VERTEX_SIZE_IN_BYTES = 24;
+    static final int UV_OFFSET = 8;
+    static final int COLOR_OFFSET = 12;
+    static final int TEXTURE_ID_OFFSET = 16;
+    static final int ENTITY_ID_OFFSET = 20;
 
-    private final Sprite[] sprites = new Sprite[MAX_BATCH_SIZE];
+    protected final Sprite[] sprites = new Sprite[MAX_BATCH_SIZE];
 
-    private int numSprites = 0;
+    protected int numSprites = 0;
 
-    private boolean bBatchHasRoom = true;
-    private boolean reBuffer = true;
+    // Texture each slot's sprite had when it was last checked, counted towards the texture's live sprites
+    private final Texture[] slotTextures = new Texture[MAX_BATCH_SIZE];
+
+    // Owning game object UID -> slot, so removal never scans the batch
+    private final IntIntHashMap uidToSlot = new IntIntHashMap(MAX_BATCH_SIZE);
+    // Number of sprites whose UID was already mapped when they were added (gizmos share GIZMO_GAME_OBJECT_UID)
+    private int numDuplicateUIDs = 0;
 
-    private final float[] vertices = new float[MAX_BATCH_SIZE * 4 * vertexSize];
-    private int vaoID, vboID;
+    private boolean bBatchHasRoom = true;
 
-    private Shader shader = ResourceUtils.getOrCreateShader("C:\\Dev\\StellarSprite2D\\JEngine2D\\shaders\\Default.glsl");
+    // Slots whose sprites changed since the last upload. Sprites push themselves here when modified
+    private final int[] dirtySlots = new int[MAX_BATCH_SIZE];
+    private final boolean[] isSlotDirty = new boolean[MAX_BATCH_SIZE];
+    private int numDirtySlots = 0;
+
+    // Slots whose sprites only changed animation frame, re-packed by rewriting their UVs alone
+    private final int[] uvDirtySlots = new int[MAX_BATCH_SIZE];
+    private final boolean[] isSlotUVsDirty = new boolean[MAX_BATCH_SIZE];
+    private int numUVDirtySlots = 0;
+
+    // Dirty ranges separated by at most this many clean slots are uploaded with a single call
+    private static final int MAX_MERGE_GAP = 8;
+
+    // Slot ranges packed by packDirtySlots() and waiting to be uploaded, as first/last pairs
+    private final int[] packedRanges = new int[2 * MAX_BATCH_SIZE];
+    private int numPackedRanges = 0;
+
+    // Scratch memory of the vector kernel, created the first time a batch packs with it
+    private QuadKernel quadKernel;
+
+    // Off-heap staging memory written directly by the packer and handed to GL by address.
+    // Sized by getSlotSizeInBytes() so subclasses can stage a different layout
+    protected ByteBuffer vertexData;
+    private long vertexDataAddress;
+    protected int vaoID, vboID, eboID;
+
+    // GL objects are created on the first sync, so batches can be created on a thread without a GL context
+    private boolean bIsInitialized = false;
+
+    // Where the last sync left the vertices of a dynamic batch in the renderer's streaming buffer, or -1
+    // when they are drawn from the batch's own VBO. Static batches always draw from their own VBO
+    private static final int STREAM_ALIGNMENT = 16;
+    private long streamOffset = -1;
+    private int streamBufferID = 0;
+    // True while the batch's own VBO misses changes that only went to the streaming buffer
+    private boolean bIsVboStale = false;
+
+    // Buffer and offset the VAO's attribute pointers currently read from
+    private int attributeBufferID = 0;
+    private long attributeOffset = 0;
+
+    // Sprite count and textures captured when the frame was prepared, and what the last sync handed to
+    // the draw. With a render thread the simulation keeps changing the batch while a frame is drawn,
+    // so the GL side never reads the live sprite count or texture list
+    private int numSpritesPrepared = 0;
+    private final Texture[] texturesPrepared = new Texture[NUM_TEXTURE_SLOTS - 1];
+    private int numTexturesPrepared = 0;
+    protected int numSpritesToDraw = 0;
+    private final Texture[] texturesToDraw = new Texture[NUM_TEXTURE_SLOTS - 1];
+    private int numTexturesToDraw = 0;
 
     private final List<Texture> textures = new ArrayList<>();
-    private final int NUM_TEXTURE_SLOTS = 16; // Define the number of texture slots
-    private final int[] textureSlots = new int[NUM_TEXTURE_SLOTS];
+    static final int NUM_TEXTURE_SLOTS = 16; // Define the number of texture slots
 
     private int zIndex;
 
-    public BatchRenderer(int zIndex) {
+    // Spatial chunk the batch draws, see Renderer.getChunk()
+    private final int chunkX, chunkY;
+
+    // Static batches only hold sprites of static game objects and are uploaded as GL_STATIC_DRAW
+    private final boolean bIsStatic;
+
+    // World space bounds of every sprite the batch has held. Only ever grows, so it stays conservative
+    private float boundsMinX = Float.POSITIVE_INFINITY, boundsMinY = Float.POSITIVE_INFINITY;
+    private float boundsMaxX = Float.NEGATIVE_INFINITY, boundsMaxY = Float.NEGATIVE_INFINITY;
+
+    public BatchRenderer(int zIndex, int chunkX, int chunkY, boolean bIsStatic) {
         this.zIndex = zIndex;
-        init();
+        this.chunkX = chunkX;
+        this.chunkY = chunkY;
+        this.bIsStatic = bIsStatic;
+
+        vertexData = MemoryUtil.memAlloc(MAX_BATCH_SIZE * getSlotSizeInBytes());
+        vertexDataAddress = MemoryUtil.memAddress(vertexData);
     }
 
     @Override
@@ -55,16 +133,10 @@ public class BatchRenderer implements Comparable<BatchRenderer> {
         return Integer.compare(this.zIndex, o.zIndex);
     }
 
+    /**
+     * Creates the GL objects of the batch. Must run on the GL thread.
+     */
     public void init() {
-        // Initialize textureSlots
-        // Initialize the texture slots array
-        for (int i = 0; i < NUM_TEXTURE_SLOTS; i++) {
-            textureSlots[i] = i;
-        }
-
-        // Compile and link shaders
-        shader.compileAndLinkShaders();
-
         // Generate and bind a Vertex Array Object
         vaoID = glGenVertexArrays();
         glBindVertexArray(vaoID);
@@ -72,81 +144,139 @@ public class BatchRenderer implements Comparable<BatchRenderer> {
         // Create and generate a VBO
         vboID = glGenBuffers();
         glBindBuffer(GL_ARRAY_BUFFER, vboID);
-        glBufferData(GL_ARRAY_BUFFER, (long) vertices.length * Float.BYTES, GL_DYNAMIC_DRAW);
+        glBufferData(GL_ARRAY_BUFFER, vertexData.capacity(), bIsStatic ? GL_STATIC_DRAW : GL_DYNAMIC_DRAW);
 
         // Create and upload indices buffer
-        int eboID = glGenBuffers();
+        eboID = glGenBuffers();
         int[] indices = generateIndices();
         glBindBuffer(GL_ELEMENT_ARRAY_BUFFER, eboID);
         glBufferData(GL_ELEMENT_ARRAY_BUFFER, indices, GL_STATIC_DRAW);
 
-        // Enable the buffer attribute pointers
-        int vertexSizeInBytes = vertexSize * Float.BYTES;
-
-        int vertexPosOffset = 0;
-        int vertexPosSize = 2;
-        glVertexAttribPointer(0, vertexPosSize, GL_FLOAT, false, vertexSizeInBytes, vertexPosOffset);
-        glEnableVertexAttribArray(0);
-
-        int vertexColorSize = 4;
-        int colorPosOffset = vertexPosOffset + vertexPosSize * Float.BYTES;
-        glVertexAttribPointer(1, vertexColorSize, GL_FLOAT, false, vertexSizeInBytes, colorPosOffset);
-        glEnableVertexAttribArray(1);
-
-        int uvCoordinateSize = 2;
-        int uvCoordinateOffset = colorPosOffset + vertexColorSize * Float.BYTES;
-        glVertexAttribPointer(2, uvCoordinateSize, GL_FLOAT, false, vertexSizeInBytes, uvCoordinateOffset);
-        glEnableVertexAttribArray(2);
-
-        int textureIdSize = 1;
-        int textureIdOffset = uvCoordinateOffset + uvCoordinateSize * Float.BYTES;
-        glVertexAttribPointer(3, textureIdSize, GL_FLOAT, false, vertexSizeInBytes, textureIdOffset);
-        glEnableVertexAttribArray(3);
-
-        int objectUIDSize = 1;
-        int objectUIDOffset = textureIdOffset + textureIdSize * Float.BYTES;
-        glVertexAttribPointer(4, objectUIDSize, GL_FLOAT, false, vertexSizeInBytes, objectUIDOffset);
-        glEnableVertexAttribArray(4);
-    }
-
-    public void render() {
-        for (int i=0; i < numSprites; i++) {
-            Sprite sprite = sprites[i];
-            // TODO: Add a check to ensure the ZIndex matches and if it does not remove it and re add it
-            if (sprite.isBisModified()) {
-                updateVertexAttribArray(i);
-                sprite.setModified(false);
-                reBuffer = true;
-            }
+        initVertexAttributes();
+        attributeBufferID = vboID;
+        attributeOffset = 0;
+    }
+
+
+    /**
+     * Describes the layout of the VBO to the VAO. The VAO, VBO and EBO are bound when this is called.
+     */
+    protected void initVertexAttributes() {
+        setVertexAttributePointers(0);
+        for (int i = 0; i < getNumVertexAttributes(); i++) {
+            glEnableVertexAttribArray(i);
         }
+    }
 
-        if (reBuffer) {
-            glBindBuffer(GL_ARRAY_BUFFER, vboID);
-            glBufferSubData(GL_ARRAY_BUFFER, 0, vertices);
-            reBuffer = false;
+
+    /**
+     * Points the per sprite attributes at the buffer bound to GL_ARRAY_BUFFER. The VAO is bound when this
+     * is called.
+     *
+     * @param baseOffset Byte offset of the first sprite in the buffer.
+     */
+    protected void setVertexAttributePointers(long baseOffset) {
+        setPackedVertexPointers(baseOffset);
+    }
+
+
+    /**
+     * Points attributes 0 to 4 at packed vertices in the buffer bound to GL_ARRAY_BUFFER.
+     *
+     * @param baseOffset Byte offset of the first vertex in the buffer.
+     */
+    static void setPackedVertexPointers(long baseOffset) {
+        glVertexAttribPointer(0, 2, GL_FLOAT, false, VERTEX_SIZE_IN_BYTES, baseOffset);
+
+        // RGBA packed into four normalized bytes
+        glVertexAttribPointer(1, 4, GL_UNSIGNED_BYTE, true, VERTEX_SIZE_IN_BYTES, baseOffset + COLOR_OFFSET);
+
+        // UVs as normalized shorts, fine enough for any atlas page
+        glVertexAttribPointer(2, 2, GL_UNSIGNED_SHORT, true, VERTEX_SIZE_IN_BYTES, baseOffset + UV_OFFSET);
+
+        // Integer attributes reach the shader unconverted, so entity IDs stay exact past 2^24
+        glVertexAttribIPointer(3, 1, GL_UNSIGNED_INT, VERTEX_SIZE_IN_BYTES, baseOffset + TEXTURE_ID_OFFSET);
+        glVertexAttribIPointer(4, 1, GL_UNSIGNED_INT, VERTEX_SIZE_IN_BYTES, baseOffset + ENTITY_ID_OFFSET);
+    }
+
+    /**
+     * Captures the sprite count and textures of the frame being prepared. Called after packing.
+     */
+    public void capturePreparedState() {
+        numSpritesPrepared = numSprites;
+        numTexturesPrepared = textures.size();
+        for (int i = 0; i < numTexturesPrepared; i++) {
+            texturesPrepared[i] = textures.get(i);
+        }
+    }
+
+    /**
+     * Uploads the packed slots and hands the prepared state to the next draw. Must run on the GL thread,
+     * and must not overlap with preparing a frame when the renderer uses a render thread.
+     *
+     * @param streamingBuffer The renderer's streaming buffer, mapped for this frame, or null. Dynamic
+     *                        batches that changed this frame copy all of their sprites into it instead
+     *                        of updating their own VBO.
+     */
+    public void sync(StreamingBuffer streamingBuffer) {
+        if (!bIsInitialized) {
+            init();
+            bIsInitialized = true;
         }
 
-        // Use shader
-        shader = Renderer.getActiveShader();
-        shader.use();
-        shader.uploadMat4f("uProjection", GameEditor.current_Level.getOrthoCamera().getProjectionMatrix());
-        shader.uploadMat4f("uView", GameEditor.current_Level.getOrthoCamera().calculateViewMatrix());
+        if (streamingBuffer != null && !bIsStatic && numPackedRanges > 0) {
+            streamSprites(streamingBuffer);
+        } else {
+            // Static batches, and dynamic batches that did not change this frame, draw from their own VBO
+            streamOffset = -1;
+            updateVbo();
+        }
 
-        // Bind textures
-        bindTextures();
-        shader.uploadIntArray("uTextures", textureSlots);
+        numSpritesToDraw = numSpritesPrepared;
+        numTexturesToDraw = numTexturesPrepared;
+        System.arraycopy(texturesPrepared, 0, texturesToDraw, 0, numTexturesPrepared);
+    }
+
+    /**
+     * Draws the batch as captured by the last sync. The renderer binds the shader and uploads the
+     * texture slot uniform once for all batches of a pass.
+     *
+     * @param previousBatch The batch drawn right before this one in the same pass, or null.
+     */
+    public void draw(BatchRenderer previousBatch) {
+        // Texture units stay bound between draws, so a batch using the same textures as the one
+        // before it (typically the same atlas page) skips rebinding
+        if (previousBatch == null || !hasSameTexturesToDraw(previousBatch)) {
+            bindTextures();
+        }
 
         glBindVertexArray(vaoID);
+        bindVertexSource();
         enableVertexAttributes();
 
-        glDrawElements(GL_TRIANGLES, this.numSprites * 6, GL_UNSIGNED_INT, 0);
+        drawSprites();
 
         disableVertexAttributes();
         glBindVertexArray(0);
+    }
 
-        unBindTextures();
+    /**
+     * Issues the draw call for the sprites of the batch. The VAO and textures are bound when this is called.
+     */
+    protected void drawSprites() {
+        glDrawElements(GL_TRIANGLES, this.numSpritesToDraw * 6, GL_UNSIGNED_INT, 0);
+    }
 
-        shader.detach();
+    private boolean hasSameTexturesToDraw(BatchRenderer other) {
+        if (numTexturesToDraw != other.numTexturesToDraw) {
+            return false;
+        }
+        for (int i = 0; i < numTexturesToDraw; i++) {
+            if (texturesToDraw[i] != other.texturesToDraw[i]) {
+                return false;
+            }
+        }
+        return true;
     }
 
     public void addSpriteToBatch(Sprite sprite) {
@@ -156,140 +286,601 @@ public class BatchRenderer implements Comparable<BatchRenderer> {
         this.numSprites++;
 
         addTexture(sprite);
+        setSlotTexture(index, sprite.getSpriteTexture());
+
+        int spriteUID = sprite.getOwningGameObject().getUID();
+        if (uidToSlot.containsKey(spriteUID)) {
+            numDuplicateUIDs++;
+        }
+        uidToSlot.put(spriteUID, index);
 
-        // Update the vertex attribute array
-        updateVertexAttribArray(index);
+        // Queue the new slot so it is packed and uploaded on the next render
+        sprite.setBatch(this, index);
+        sprite.setModified(true);
         checkCapacity();
     }
 
 
-    private void addTexture(Sprite sprite) {
-        if (sprite.getSpriteTexture() != null) {
-            if (!textures.contains(sprite.getSpriteTexture())) {
-                textures.add(sprite.getSpriteTexture());
+    /**
+     * Queues a slot to be re-packed and uploaded on the next render. Queuing the same slot twice is a no-op.
+     *
+     * @param slot The slot of the modified sprite.
+     */
+    public void markSlotDirty(int slot) {
+        if (!isSlotDirty[slot]) {
+            isSlotDirty[slot] = true;
+            dirtySlots[numDirtySlots++] = slot;
+        }
+    }
+
+
+    /**
+     * Queues a slot to have only its UVs re-packed on the next render. Ignored if the whole slot is
+     * already queued.
+     *
+     * @param slot The slot of the sprite that changed animation frame.
+     */
+    public void markSlotUVsDirty(int slot) {
+        if (!isSlotDirty[slot] && !isSlotUVsDirty[slot]) {
+            isSlotUVsDirty[slot] = true;
+            uvDirtySlots[numUVDirtySlots++] = slot;
+        }
+    }
+
+
+    /**
+     * Re-packs the queued slots into the staging memory and records the ranges to upload, merging
+     * neighbouring slots into as few ranges as possible. Makes no GL calls and only touches this
+     * batch's own memory, so the renderer may pack several batches in parallel.
+     */
+    public void packDirtySlots() {
+        // Slots queued in full since their UVs were queued are re-packed in full anyway
+        Arrays.sort(uvDirtySlots, 0, numUVDirtySlots);
+        int numUVSlotsToPack = 0;
+        for (int i = 0; i < numUVDirtySlots; i++) {
+            int slot = uvDirtySlots[i];
+            isSlotUVsDirty[slot] = false;
+            if (slot < numSprites && !isSlotDirty[slot]) {
+                uvDirtySlots[numUVSlotsToPack++] = slot;
+            }
+        }
+        numUVDirtySlots = 0;
+
+        Arrays.sort(dirtySlots, 0, numDirtySlots);
+
+        // Slots past the end belong to sprites that have since been removed
+        int numSlotsToPack = 0;
+        for (int i = 0; i < numDirtySlots; i++) {
+            int slot = dirtySlots[i];
+            isSlotDirty[slot] = false;
+            if (slot < numSprites) {
+                dirtySlots[numSlotsToPack++] = slot;
+            }
+        }
+        numDirtySlots = 0;
+
+        packSlots(dirtySlots, numSlotsToPack);
+        for (int i = 0; i < numUVSlotsToPack; i++) {
+            packSlotUVs(uvDirtySlots[i]);
+        }
+
+        // Walk both sorted lists in slot order so their ranges merge with each other
+        int rangeStart = -1;
+        int rangeEnd = -1;
+        int nextSlot = 0;
+        int nextUVSlot = 0;
+        while (nextSlot < numSlotsToPack || nextUVSlot < numUVSlotsToPack) {
+            int slot;
+            if (nextUVSlot == numUVSlotsToPack
+                    || (nextSlot < numSlotsToPack && dirtySlots[nextSlot] < uvDirtySlots[nextUVSlot])) {
+                slot = dirtySlots[nextSlot++];
+                sprites[slot].setModified(false);
+            } else {
+                slot = uvDirtySlots[nextUVSlot++];
+            }
+
+            if (rangeStart == -1) {
+                rangeStart = slot;
+            } else if (slot - rangeEnd > MAX_MERGE_GAP) {
+                addPackedRange(rangeStart, rangeEnd);
+                rangeStart = slot;
+            }
+            rangeEnd = slot;
+        }
+
+        if (rangeStart != -1) {
+            addPackedRange(rangeStart, rangeEnd);
+        }
+    }
+
+
+    private void addPackedRange(int firstSlot, int lastSlot) {
+        packedRanges[2 * numPackedRanges] = firstSlot;
+        packedRanges[2 * numPackedRanges + 1] = lastSlot;
+        numPackedRanges++;
+    }
+
+
+    /**
+     * Uploads the ranges recorded by packDirtySlots(). Must run on the GL thread.
+     */
+    private void uploadPackedRanges() {
+        glBindBuffer(GL_ARRAY_BUFFER, vboID);
+        long slotSizeInBytes = getSlotSizeInBytes();
+        for (int i = 0; i < numPackedRanges; i++) {
+            int firstSlot = packedRanges[2 * i];
+            int lastSlot = packedRanges[2 * i + 1];
+            long byteOffset = firstSlot * slotSizeInBytes;
+            nglBufferSubData(GL_ARRAY_BUFFER, byteOffset, (lastSlot - firstSlot + 1) * slotSizeInBytes,
+                    vertexDataAddress + byteOffset);
+        }
+        numPackedRanges = 0;
+    }
+
+
+    /**
+     * Copies every prepared sprite of a batch that changed this frame into the streaming buffer. Dynamic
+     * batches that change hold moving objects that change most frames, and the staging memory always holds
+     * the whole batch, so a straight copy into unsynchronized memory replaces the per range buffer updates.
+     * Falls back to the batch's own VBO when the frame's region is full.
+     */
+    private void streamSprites(StreamingBuffer streamingBuffer) {
+        int numBytes = numSpritesPrepared * getSlotSizeInBytes();
+        streamOffset = numBytes > 0 ? streamingBuffer.write(vertexDataAddress, numBytes, STREAM_ALIGNMENT) : -1;
+        if (streamOffset != -1) {
+            streamBufferID = streamingBuffer.getBufferID();
+            numPackedRanges = 0;
+            bIsVboStale = true;
+        } else {
+            updateVbo();
+        }
+    }
+
+
+    /**
+     * Brings the batch's own VBO up to date. After the batch streamed, the whole batch is refreshed once,
+     * otherwise only the packed ranges are uploaded. The VBO is not drawn from while the batch streams,
+     * so the refresh does not wait for pending draws.
+     */
+    private void updateVbo() {
+        if (bIsVboStale) {
+            glBindBuffer(GL_ARRAY_BUFFER, vboID);
+            nglBufferSubData(GL_ARRAY_BUFFER, 0, (long) numSpritesPrepared * getSlotSizeInBytes(), vertexDataAddress);
+            bIsVboStale = false;
+            numPackedRanges = 0;
+        } else if (numPackedRanges > 0) {
+            uploadPackedRanges();
+        }
+    }
+
+
+    /**
+     * Points the VAO at wherever the last sync left the sprites, if it moved since the last draw.
+     */
+    private void bindVertexSource() {
+        int bufferID = streamOffset != -1 ? streamBufferID : vboID;
+        long offset = streamOffset != -1 ? streamOffset : 0;
+        if (bufferID != attributeBufferID || offset != attributeOffset) {
+            glBindBuffer(GL_ARRAY_BUFFER, bufferID);
+            setVertexAttributePointers(offset);
+            attributeBufferID = bufferID;
+            attributeOffset = offset;
+        }
+    }
+
+
+    /**
+     * Gets the number of slots queued to be re-packed, in full or UVs only.
+     */
+    public int getNumDirtySlots() {
+        return numDirtySlots + numUVDirtySlots;
+    }
+
+
+    /**
+     * Gets the number of bytes staged and uploaded for each sprite.
+     */
+    protected int getSlotSizeInBytes() {
+        return 4 * VERTEX_SIZE_IN_BYTES;
+    }
+
+
+    /**
+     * Writes the sprites in several slots into the staging memory. With the vector kernel enabled the
+     * corners of all of them are computed in one pass.
+     *
+     * @param slots    The slots to pack, in ascending order.
+     * @param numSlots The number of slots to pack.
+     */
+    protected void packSlots(int[] slots, int numSlots) {
+        if (!QuadKernel.isVectorized() || numSlots < QuadKernel.MIN_VECTOR_QUADS) {
+            for (int i = 0; i < numSlots; i++) {
+                packSlot(slots[i]);
+            }
+            return;
+        }
+
+        if (quadKernel == null) {
+            quadKernel = new QuadKernel(MAX_BATCH_SIZE);
+        }
+        for (int i = 0; i < numSlots; i++) {
+            Sprite sprite = sprites[slots[i]];
+            Vector2f spritePos = sprite.getSpritePos();
+            Vector2f spriteSize = sprite.getSpriteSize();
+            quadKernel.setQuad(i, spritePos.x, spritePos.y, spriteSize.x * 0.5f, spriteSize.y * 0.5f,
+                    sprite.getSpriteRotation());
+        }
+        quadKernel.transform(numSlots);
+        for (int i = 0; i < numSlots; i++) {
+            int offset = slots[i] * 4 * VERTEX_SIZE_IN_BYTES;
+            quadKernel.writeCorners(i, vertexData, offset, VERTEX_SIZE_IN_BYTES);
+            packVertexAttributes(slots[i]);
+        }
+    }
+
+
+    /**
+     * Writes the sprite in a slot into the staging memory.
+     *
+     * @param index The slot to pack.
+     */
+    protected void packSlot(int index) {
+        Sprite sprite = this.sprites[index];
+        Vector2f spritePos = sprite.getSpritePos();
+        Vector2f spriteSize = sprite.getSpriteSize();
+
+        // Rotate the four corners around the sprite's center
+        QuadKernel.writeQuad(vertexData, index * 4 * VERTEX_SIZE_IN_BYTES, VERTEX_SIZE_IN_BYTES,
+                spritePos.x, spritePos.y, spriteSize.x * 0.5f, spriteSize.y * 0.5f, sprite.getSpriteRotation());
+        packVertexAttributes(index);
+    }
+
+
+    /**
+     * Rewrites only the UVs of a slot's four vertices in the staging memory.
+     *
+     * @param index The slot to pack.
+     */
+    protected void packSlotUVs(int index) {
+        Sprite sprite = this.sprites[index];
+        Texture spriteTexture = sprite.getSpriteTexture();
+        writeUVs(sprite, spriteTexture != null ? spriteTexture.getAtlasRegion() : null,
+                index * 4 * VERTEX_SIZE_IN_BYTES);
+    }
+
+
+    /**
+     * Writes the UVs of a sprite's four vertices, remapped onto the atlas page if the texture was packed.
+     *
+     * @param offset Byte offset of the sprite's first vertex in the staging memory.
+     */
+    private void writeUVs(Sprite sprite, AtlasRegion atlasRegion, int offset) {
+        for (int i = 0; i < 4; i++) {
+            float u = sprite.getU(i);
+            float v = sprite.getV(i);
+            if (atlasRegion != null) {
+                u = atlasRegion.mapU(u);
+                v = atlasRegion.mapV(v);
+            }
+            vertexData.putShort(offset + UV_OFFSET, toUnorm16(u));
+            vertexData.putShort(offset + UV_OFFSET + 2, toUnorm16(v));
+            offset += VERTEX_SIZE_IN_BYTES;
+        }
+    }
+
+
+    /**
+     * Finds the texture unit a texture is bound to while this batch renders.
+     *
+     * @param renderTexture The texture that is bound, see {@link Texture#getRenderTexture()}.
+     * @return The texture unit, or 0 if the texture is not part of the batch.
+     */
+    protected int getTextureUnit(Texture renderTexture) {
+        for (int i = 0; i < textures.size(); i++) {
+            if (textures.get(i) == renderTexture) {
+                return i + 1;
             }
         }
+        return 0;
+    }
+
+
+    private void addTexture(Sprite sprite) {
+        acceptTexture(sprite.getSpriteTexture());
     }
 
     public void removeSpriteFromBatch(int spriteUID) {
-        int index = -1;
-        // Find the index of the sprite with the given UID in the array
+        int index = uidToSlot.get(spriteUID, -1);
+        if (index != -1) {
+            removeSlot(index);
+        }
+    }
+
+
+    /**
+     * Removes a sprite using the slot it records, without any lookup.
+     *
+     * @param sprite A sprite that belongs to this batch.
+     */
+    public void removeSprite(Sprite sprite) {
+        if (sprite.getBatch() == this) {
+            removeSlot(sprite.getBatchSlot());
+        }
+    }
+
+
+    /**
+     * Removes the sprite in a slot by moving the last sprite of the batch into it. Only the moved
+     * sprite's slot has to be re-packed.
+     */
+    private void removeSlot(int index) {
+        Sprite removedSprite = sprites[index];
+        int spriteUID = removedSprite.getOwningGameObject().getUID();
+        removedSprite.setBatch(null, -1);
+
+        // A sprite that is not the mapped one for its UID was counted as a duplicate when added
+        boolean wasMapped = uidToSlot.get(spriteUID, -1) == index;
+        if (wasMapped) {
+            uidToSlot.remove(spriteUID);
+        } else {
+            numDuplicateUIDs--;
+        }
+
+        setSlotTexture(index, null);
+
+        int lastIndex = numSprites - 1;
+        if (index != lastIndex) {
+            Sprite movedSprite = sprites[lastIndex];
+            sprites[index] = movedSprite;
+            slotTextures[index] = slotTextures[lastIndex];
+            slotTextures[lastIndex] = null;
+            movedSprite.setBatch(this, index);
+
+            int movedUID = movedSprite.getOwningGameObject().getUID();
+            if (uidToSlot.get(movedUID, -1) == lastIndex) {
+                uidToSlot.put(movedUID, index);
+            }
+            markSlotDirty(index);
+        }
+        sprites[lastIndex] = null;
+        numSprites--;
+        bBatchHasRoom = true;
+
+        if (wasMapped && numDuplicateUIDs > 0) {
+            remapDuplicateUID(spriteUID);
+        }
+    }
+
+
+    /**
+     * Checks if any sprite of the batch can overlap a view rectangle. Sprites waiting to be packed
+     * grow the bounds first, so a culled batch still notices sprites moving into view.
+     *
+     * @return True if the batch has to be drawn.
+     */
+    public boolean isInView(float viewMinX, float viewMinY, float viewMaxX, float viewMaxY) {
+        for (int i = 0; i < numDirtySlots; i++) {
+            if (dirtySlots[i] < numSprites) {
+                growBounds(sprites[dirtySlots[i]]);
+            }
+        }
+        return boundsMinX <= viewMaxX && boundsMaxX >= viewMinX && boundsMinY <= viewMaxY && boundsMaxY >= viewMinY;
+    }
+
+
+    /**
+     * Adds every sprite of the batch to a list if the bounds of the batch contain a point.
+     *
+     * @param candidates The list the sprites are added to.
+     */
+    public void collectSpritesAt(float x, float y, List<Sprite> candidates) {
+        if (!isInView(x, y, x, y)) {
+            return;
+        }
         for (int i = 0; i < numSprites; i++) {
-            if (sprites[i].getOwningGameObject().getUID() == spriteUID) {
-                index = i;
-                break;
+            candidates.add(sprites[i]);
+        }
+    }
+
+
+    private void growBounds(Sprite sprite) {
+        Vector2f spritePos = sprite.getSpritePos();
+        Vector2f spriteSize = sprite.getSpriteSize();
+
+        // Half the diagonal covers the sprite at any rotation
+        float extent = 0.5f * (float) Math.sqrt(spriteSize.x * spriteSize.x + spriteSize.y * spriteSize.y);
+        boundsMinX = Math.min(boundsMinX, spritePos.x - extent);
+        boundsMinY = Math.min(boundsMinY, spritePos.y - extent);
+        boundsMaxX = Math.max(boundsMaxX, spritePos.x + extent);
+        boundsMaxY = Math.max(boundsMaxY, spritePos.y + extent);
+    }
+
+
+    /**
+     * Collects the queued sprites that no longer belong in this batch, either because their z-index,
+     * chunk or static flag changed or because they were given a texture the batch has no free slot for. The renderer
+     * moves them to a suitable batch before rendering.
+     *
+     * @param misplacedSprites The list the misplaced sprites are added to.
+     */
+    public void collectMisplacedSprites(List<Sprite> misplacedSprites) {
+        for (int i = 0; i < numDirtySlots; i++) {
+            int slot = dirtySlots[i];
+            if (slot >= numSprites) {
+                continue;
+            }
+            Sprite sprite = sprites[slot];
+            setSlotTexture(slot, sprite.getSpriteTexture());
+            if (sprite.getOwningGameObject().getZIndex() != zIndex || !isInChunk(sprite)
+                    || sprite.getOwningGameObject().isStatic() != bIsStatic
+                    || !acceptTexture(sprite.getSpriteTexture())) {
+                misplacedSprites.add(sprite);
             }
         }
+    }
 
-        // If the sprite with the given UID was found, remove it
-        if (index != -1) {
-            // Shift the remaining sprites to fill the gap
-            if (numSprites - 1 - index >= 0)
-                System.arraycopy(sprites, index + 1, sprites, index, numSprites - 1 - index);
-            // Decrement the number of sprites
-            numSprites--;
 
-            // Update the vertex attribute array
-            updateVerticesArray();
+    /**
+     * Updates which texture a slot counts as live, see {@link TextureResidency}.
+     */
+    private void setSlotTexture(int slot, Texture texture) {
+        Texture previousTexture = slotTextures[slot];
+        if (previousTexture == texture) {
+            return;
+        }
+        if (previousTexture != null) {
+            previousTexture.releaseForSprite();
+        }
+        if (texture != null) {
+            texture.retainForSprite();
+        }
+        slotTextures[slot] = texture;
+    }
+
 
-            // Mark for re-buffering
-            reBuffer = true;
+    /**
+     * Makes sure a texture can be drawn by this batch, claiming a free texture slot if needed.
+     *
+     * @param texture The texture, may be null for untextured sprites.
+     * @return False if the texture is new and every texture slot is taken.
+     */
+    public boolean acceptTexture(Texture texture) {
+        if (texture == null) {
+            return true;
+        }
+        // Atlased textures share the slot of their page
+        texture = texture.getRenderTexture();
+        if (textures.contains(texture)) {
+            return true;
         }
+        if (hasFreeTextureSlot()) {
+            textures.add(texture);
+            return true;
+        }
+        return false;
     }
 
-    private void updateVerticesArray() {
+
+    /**
+     * Points the map at another sprite sharing a removed UID. Only objects that deliberately share
+     * a UID (the gizmos) ever take this path.
+     */
+    private void remapDuplicateUID(int spriteUID) {
         for (int i = 0; i < numSprites; i++) {
-            updateVertexAttribArray(i);
+            if (sprites[i].getOwningGameObject().getUID() == spriteUID) {
+                uidToSlot.put(spriteUID, i);
+                numDuplicateUIDs--;
+                return;
+            }
         }
     }
 
-    private void updateVertexAttribArray(int index) {
+    /**
+     * Writes everything but the positions of a slot's four vertices into the staging memory.
+     */
+    private void packVertexAttributes(int index) {
         // Store the sprite at the specified index
         Sprite sprite = this.sprites[index];
 
-        // Find offset within array (4 vertices per sprite)
-        int offset = index * 4 * vertexSize;
+        // Find offset within the staging memory (4 vertices per sprite)
+        int offset = index * 4 * VERTEX_SIZE_IN_BYTES;
 
-        // Get the sprite's attributes
-        Vector2f spritePos = sprite.getSpritePos();
-        Vector2f spriteSize = sprite.getSpriteSize();
         Vector4f color = sprite.getColor();
-        Vector2f[] uvCoordinates = sprite.getUvCoordinates();
-
-        float rotation = sprite.getSpriteRotation(); // Get the rotation angle
 
         // Check if the sprite has a texture, and if so, find its corresponding ID in the textures array
         int textureID = 0;
         Texture spriteTexture = sprite.getSpriteTexture();
+        AtlasRegion atlasRegion = null;
 
         if (spriteTexture != null) {
-            for (int i = 0; i < textures.size(); i++) {
-                if (textures.get(i) == spriteTexture) {
-                    textureID = i + 1;
-                    break;
-                }
-            }
+            atlasRegion = spriteTexture.getAtlasRegion();
+            textureID = getTextureUnit(atlasRegion != null ? atlasRegion.getPage() : spriteTexture);
         }
 
-        // Pre-calculate position components
-        float xPos = spritePos.x;
-        float yPos = spritePos.y;
-        float xSize = spriteSize.x;
-        float ySize = spriteSize.y;
+        // Color and IDs are shared by all four vertices
+        int packedColor = packColor(color);
+        int entityID = sprite.getOwningGameObject().getUID() + 1;
 
-        // Calculate the half size of the sprite for rotation
-        float halfWidth = xSize * 0.5f;
-        float halfHeight = ySize * 0.5f;
+        // Load texture coordinates
+        writeUVs(sprite, atlasRegion, offset);
 
-        // Apply rotation to each vertex
-        Vector2f origin = new Vector2f(xPos, yPos); // Origin for rotation
         for (int i = 0; i < 4; i++) {
-            // Calculate vertex position relative to the sprite's center and apply rotation
-            float localX = ((i == 0 || i == 1) ? -halfWidth : halfWidth);
-            float localY = ((i == 0 || i == 3) ? -halfHeight : halfHeight);
+            // Load color
+            vertexData.putInt(offset + COLOR_OFFSET, packedColor);
+
+            // Load texture id and entity id
+            vertexData.putInt(offset + TEXTURE_ID_OFFSET, textureID);
+            vertexData.putInt(offset + ENTITY_ID_OFFSET, entityID);
+
+            offset += VERTEX_SIZE_IN_BYTES;
+        }
+    }
 
-            Vector2f vertex = new Vector2f(xPos + localX, yPos + localY);
-            MathUtils.rotate(vertex, rotation, origin);
 
-            // Load position
-            vertices[offset] = vertex.x;
-            vertices[offset + 1] = vertex.y;
+    /**
+     * Packs a color into four bytes in RGBA memory order, read back by a normalized GL_UNSIGNED_BYTE attribute.
+     * The staging memory is in native order, so the bytes are placed to match it.
+     */
+    public static int packColor(Vector4f color) {
+        int r = toColorByte(color.x);
+        int g = toColorByte(color.y);
+        int b = toColorByte(color.z);
+        int a = toColorByte(color.w);
+        if (ByteOrder.nativeOrder() == ByteOrder.LITTLE_ENDIAN) {
+            return r | (g << 8) | (b << 16) | (a << 24);
+        }
+        return (r << 24) | (g << 16) | (b << 8) | a;
+    }
 
-            // Load color
-            vertices[offset + 2] = color.x;
-            vertices[offset + 3] = color.y;
-            vertices[offset + 4] = color.z;
-            vertices[offset + 5] = color.w;
 
-            // Load texture coordinates
-            vertices[offset + 6] = uvCoordinates[i].x;
-            vertices[offset + 7] = uvCoordinates[i].y;
+    private static int toColorByte(float channel) {
+        return Math.round(Math.max(0.0f, Math.min(1.0f, channel)) * 255.0f);
+    }
 
-            // Load texture id
-            vertices[offset + 8] = textureID;
 
-            // Load entity id
-            vertices[offset + 9] = sprite.getOwningGameObject().getUID() + 1;
+    /**
+     * Converts a texture coordinate in [0, 1] to a normalized unsigned short.
+     */
+    protected static short toUnorm16(float uv) {
+        return (short) Math.round(Math.max(0.0f, Math.min(1.0f, uv)) * 65535.0f);
+    }
 
-            offset += vertexSize;
+
+    /**
+     * Releases the GL objects and the off-heap vertex memory owned by this batch.
+     * The batch must not be rendered after this call.
+     */
+    public void destroy() {
+        if (bIsInitialized) {
+            glDeleteBuffers(vboID);
+            glDeleteBuffers(eboID);
+            glDeleteVertexArrays(vaoID);
+        }
+        MemoryUtil.memFree(vertexData);
+        for (int i = 0; i < numSprites; i++) {
+            setSlotTexture(i, null);
         }
+        numSprites = 0;
     }
 
 
     private void bindTextures() {
-        for (int i = 0; i < textures.size(); i++) {
+        for (int i = 0; i < numTexturesToDraw; i++) {
             glActiveTexture(GL_TEXTURE0 + i + 1);
-            textures.get(i).bind();
+            texturesToDraw[i].bind();
         }
     }
 
-    private void unBindTextures() {
-        for (Texture texture : textures) {
-            texture.unbind();
+    void unBindTextures() {
+        for (int i = 0; i < numTexturesToDraw; i++) {
+            texturesToDraw[i].unbind();
         }
     }
 
-    private int[] generateIndices() {
+    /**
+     * Generates the contents of the EBO.
+     */
+    protected int[] generateIndices() {
         // 6 indices per quad (3 per triangle)
         int[] elements = new int[6 * MAX_BATCH_SIZE];
         for (int i = 0; i < MAX_BATCH_SIZE; i++) {
@@ -316,19 +907,22 @@ public class BatchRenderer implements Comparable<BatchRenderer> {
     }
 
     private void enableVertexAttributes() {
-        glEnableVertexAttribArray(0);
-        glEnableVertexAttribArray(1);
-        glEnableVertexAttribArray(2);
-        glEnableVertexAttribArray(3);
-        glEnableVertexAttribArray(4);
+        for (int i = 0; i < getNumVertexAttributes(); i++) {
+            glEnableVertexAttribArray(i);
+        }
     }
 
     private void disableVertexAttributes() {
-        glDisableVertexAttribArray(0);
-        glDisableVertexAttribArray(1);
-        glDisableVertexAttribArray(2);
-        glDisableVertexAttribArray(3);
-        glDisableVertexAttribArray(4);
+        for (int i = 0; i < getNumVertexAttributes(); i++) {
+            glDisableVertexAttribArray(i);
+        }
+    }
+
+    /**
+     * Gets the number of vertex attributes set up by {@link #initVertexAttributes()}.
+     */
+    protected int getNumVertexAttributes() {
+        return 5;
     }
 
 
@@ -350,16 +944,46 @@ public class BatchRenderer implements Comparable<BatchRenderer> {
         return numSprites;
     }
 
+    /**
+     * Checks if a sprite's position lies in the chunk of this batch.
+     */
+    public boolean isInChunk(Sprite sprite) {
+        Vector2f spritePos = sprite.getSpritePos();
+        return Renderer.getChunk(spritePos.x) == chunkX && Renderer.getChunk(spritePos.y) == chunkY;
+    }
+
+    public int getChunkX() {
+        return chunkX;
+    }
+
+    public int getChunkY() {
+        return chunkY;
+    }
+
+    public boolean isStatic() {
+        return bIsStatic;
+    }
+
     public void setZIndex(int zIndex) {
         this.zIndex = zIndex;
     }
 
-    public boolean isTexSlotsFull() {
-        return this.textures.size() < 16;
+    /**
+     * Checks if another texture can be added. Texture unit 0 is reserved for untextured sprites.
+     */
+    public boolean hasFreeTextureSlot() {
+        return this.textures.size() < NUM_TEXTURE_SLOTS - 1;
+    }
+
+    /**
+     * Gets the GL name of the first texture of the batch, used to sort batches sharing textures together.
+     */
+    public int getSortTextureID() {
+        return textures.isEmpty() ? 0 : textures.get(0).peekTextureID();
     }
 
     public boolean hasTexture(Texture tex) {
-        return this.textures.contains(tex);
+        return this.textures.contains(tex.getRenderTexture());
     }
 }
 /*End of BatchRenderer class*/
\ No newline at end of file
@@ -0,0 +1,90 @@
+/*
+ Title: CameraUniformBuffer
+ Date: 2024-06-18
+ Author: Kyle St John
+ */
+package engine.graphics;
+
+import org.lwjgl.BufferUtils;
+
+import java.nio.FloatBuffer;
+
+import static engine.utils.engine.EConstants.CAMERA_UBO_BINDING;
+import static org.lwjgl.opengl.GL15.*;
+import static org.lwjgl.opengl.GL30.glBindBufferBase;
+import static org.lwjgl.opengl.GL31.GL_UNIFORM_BUFFER;
+
+/**
+ * Holds the camera matrices in a std140 uniform buffer shared by every shader that declares the
+ * Camera block. The buffer is written at most once per frame instead of every shader uploading
+ * uProjection and uView on each draw.
+ */
+public class CameraUniformBuffer {
+
+    // std140 block: mat4 uProjection followed by mat4 uView
+    private static final int BLOCK_SIZE_IN_FLOATS = 32;
+
+    private static int UBO_ID;
+    private static final FloatBuffer Block_Data = BufferUtils.createFloatBuffer(BLOCK_SIZE_IN_FLOATS);
+
+    // Camera and matrix version last captured, so unchanged frames skip the upload
+    private static OrthoCamera Captured_Camera = null;
+    private static int Captured_Version = -1;
+    private static boolean Is_Upload_Pending = false;
+
+    /**
+     * Creates the uniform buffer and attaches it to the camera binding point.
+     */
+    public static void init() {
+        UBO_ID = glGenBuffers();
+        glBindBuffer(GL_UNIFORM_BUFFER, UBO_ID);
+        glBufferData(GL_UNIFORM_BUFFER, BLOCK_SIZE_IN_FLOATS * Float.BYTES, GL_DYNAMIC_DRAW);
+        glBindBuffer(GL_UNIFORM_BUFFER, 0);
+        glBindBufferBase(GL_UNIFORM_BUFFER, CAMERA_UBO_BINDING, UBO_ID);
+    }
+
+    /**
+     * Writes the matrices of a camera into the buffer if they changed since the last upload.
+     *
+     * @param camera The camera the frame is rendered with.
+     */
+    public static void upload(OrthoCamera camera) {
+        capture(camera);
+        flush();
+    }
+
+    /**
+     * Copies the matrices of a camera if they changed since the last capture. Makes no GL calls,
+     * so the simulation thread can capture the camera of the frame it prepares.
+     *
+     * @param camera The camera the frame is rendered with.
+     */
+    public static void capture(OrthoCamera camera) {
+        int version = camera.getVersion();
+        if (camera == Captured_Camera && version == Captured_Version) {
+            return;
+        }
+
+        camera.getProjectionMatrix().get(0, Block_Data);
+        camera.calculateViewMatrix().get(16, Block_Data);
+
+        Captured_Camera = camera;
+        Captured_Version = version;
+        Is_Upload_Pending = true;
+    }
+
+    /**
+     * Uploads the last captured matrices. Must run on the GL thread.
+     */
+    public static void flush() {
+        if (!Is_Upload_Pending) {
+            return;
+        }
+
+        glBindBuffer(GL_UNIFORM_BUFFER, UBO_ID);
+        glBufferSubData(GL_UNIFORM_BUFFER, 0, Block_Data);
+        glBindBuffer(GL_UNIFORM_BUFFER, 0);
+        Is_Upload_Pending = false;
+    }
+}
+/*End of CameraUniformBuffer class*/
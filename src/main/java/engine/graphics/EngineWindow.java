@@ -32,6 +32,7 @@ import org.lwjgl.glfw.GLFWVidMode;
 import org.lwjgl.opengl.GL;
 import org.lwjgl.opengl.GL11;
 
+import java.util.Arrays;
 import java.util.Objects;
 
 import static engine.utils.engine.EConstants.DEFAULT_ASPECT_RATIO;
@@ -57,6 +58,20 @@ public class EngineWindow implements EventListener {
     private float DELTA_TIME = -1;
 
     public static EngineMode Enabled_Engine_Mode = EditorMode;
+    public static EConstants.RenderMode Enabled_Render_Mode = EConstants.RenderMode.Batched;
+    // Render launched levels on a dedicated thread while the next tick runs
+    public static boolean Use_Render_Thread = false;
+    private RenderThread renderThread = null;
+
+    // Headless runs for benchmarks and golden images: a hidden window, a fixed resolution, no ImGui and
+    // a scripted number of frames rendered offscreen
+    public static boolean Use_Headless = false;
+    // Creates the context through OSMesa on GLFW's null platform, so no display server or GPU is needed
+    public static boolean Use_OSMesa = false;
+    public static int Headless_Width = 1280;
+    public static int Headless_Height = 720;
+    public static int Headless_Frames = 600;
+    public static String Headless_Screenshot_Path = null;
 
     private Framebuffer framebuffer;
     private boolean isWireFrameEnabled = false;
@@ -78,7 +93,11 @@ public class EngineWindow implements EventListener {
         System.out.println("Hello LWJGL " + Version.getVersion() + "!");
 
         init();
-        tick();
+        if (Use_Headless) {
+            runHeadless();
+        } else {
+            tick();
+        }
 
         terminateProgram();
     }
@@ -88,6 +107,11 @@ public class EngineWindow implements EventListener {
         // will print the error message in System.err.
         GLFWErrorCallback.createPrint(System.err).set();
 
+        // Without a display server GLFW can only use its null platform, which renders through OSMesa
+        if (Use_Headless && Use_OSMesa) {
+            glfwInitHint(GLFW_PLATFORM, GLFW_PLATFORM_NULL);
+        }
+
         // Initialize GLFW. Most GLFW functions will not work before doing this.
         if (!glfwInit())
             throw new IllegalStateException("Unable to initialize GLFW");
@@ -104,11 +128,19 @@ public class EngineWindow implements EventListener {
         glfwWindowHint(GLFW_OPENGL_FORWARD_COMPAT, GLFW_TRUE);
         glfwWindowHint(GLFW_VISIBLE, GLFW_FALSE); // the window will stay hidden after creation
         glfwWindowHint(GLFW_RESIZABLE, GLFW_TRUE); // the window will be resizable
-        glfwWindowHint(GLFW_MAXIMIZED, GLFW_TRUE);
+        glfwWindowHint(GLFW_MAXIMIZED, Use_Headless ? GLFW_FALSE : GLFW_TRUE);
+        if (Use_Headless && Use_OSMesa) {
+            glfwWindowHint(GLFW_CONTEXT_CREATION_API, GLFW_OSMESA_CONTEXT_API);
+        }
 
-        // Create the window
-        this.windowWidth = (int) getDefaultScreenSize().x;
-        this.windowHeight = (int) getDefaultScreenSize().y;
+        // Create the window. Headless runs use a fixed size, machines without a monitor have no video mode
+        if (Use_Headless) {
+            this.windowWidth = Headless_Width;
+            this.windowHeight = Headless_Height;
+        } else {
+            this.windowWidth = (int) getDefaultScreenSize().x;
+            this.windowHeight = (int) getDefaultScreenSize().y;
+        }
         this.aspectRatio =  DEFAULT_ASPECT_RATIO;
 
         // Prints the Window size to the console
@@ -135,11 +167,13 @@ public class EngineWindow implements EventListener {
         // Make the OpenGL context current
         glfwMakeContextCurrent(glfwWindow);
 
-        // Enable v-sync
-        glfwSwapInterval(1);
+        // Enable v-sync, headless runs are timed without it
+        glfwSwapInterval(Use_Headless ? 0 : 1);
 
         // Make the window visible
-        glfwShowWindow(glfwWindow);
+        if (!Use_Headless) {
+            glfwShowWindow(glfwWindow);
+        }
 
         // This line is critical for LWJGL's interoperation with GLFW's
         // OpenGL context, or any context that is managed externally.
@@ -167,7 +201,9 @@ public class EngineWindow implements EventListener {
         EventDispatcher.addListener(Wire_Frame, this);
 
         // Initialize ImGui functionality
-        ImGui_Controller.initImGui(glfwWindow);
+        if (!Use_Headless) {
+            ImGui_Controller.initImGui(glfwWindow);
+        }
 
         // Load and initialize the editor
         Game_Editor = new GameEditor();
@@ -194,8 +230,16 @@ public class EngineWindow implements EventListener {
 
             pollUserEvents();
 
+            // The render thread only drives launched levels, which have no editor UI to draw
+            if (renderThread == null && Use_Render_Thread && Enabled_Engine_Mode == LaunchMode) {
+                renderThread = new RenderThread(glfwWindow);
+                renderThread.start();
+            }
+
             // Render
-            render();
+            if (renderThread == null) {
+                render();
+            }
 
             // Update logic at fixed rate
             while (accumulatedTime >= DELTA_TIME) {
@@ -207,7 +251,12 @@ public class EngineWindow implements EventListener {
                 accumulatedTime -= DELTA_TIME;
             }
 
-            glfwSwapBuffers(glfwWindow);
+            if (renderThread != null) {
+                // Hand the ticked state to the render thread, which draws and swaps while the next tick runs
+                renderThread.publishFrame(GameEditor.current_Level);
+            } else {
+                glfwSwapBuffers(glfwWindow);
+            }
 
             frames++;
 
@@ -220,11 +269,112 @@ public class EngineWindow implements EventListener {
                 timePerFrame = 0.0f;
             }
         }
+        if (renderThread != null) {
+            renderThread.stop();
+            renderThread = null;
+        }
         closeEngine();
     }
 
 
+    /**
+     * Runs the scripted headless frames, rendering the level into the offscreen framebuffer, then
+     * reports the frame timings and optionally writes the last frame to a PNG file.
+     */
+    private void runHeadless() {
+        DELTA_TIME = 1.0f / 120.0f;
+
+        // Wait for every texture, so each frame and the final image show the real pixels
+        while (TextureLoader.getNumPending() > 0) {
+            TextureLoader.processUploads();
+            try {
+                Thread.sleep(1);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+
+        Renderer.setDefaultShader();
+        long[] frameTimes = new long[Headless_Frames];
+        for (int frame = 0; frame < Headless_Frames; frame++) {
+            long frameStart = System.nanoTime();
+
+            // Ticks use the fixed step so runs are reproducible
+            Game_Editor.tick(DELTA_TIME);
+            Game_Editor.physicsTick(DELTA_TIME);
+            renderOffscreen();
+
+            // Wait for the GPU so the timing covers the whole frame
+            glFinish();
+            frameTimes[frame] = System.nanoTime() - frameStart;
+        }
+        logFrameTimings(frameTimes);
+
+        if (Headless_Screenshot_Path != null) {
+            if (framebuffer.saveToPNG(Headless_Screenshot_Path, windowWidth, windowHeight)) {
+                Logger.info("Saved the last frame to '" + Headless_Screenshot_Path + "'", true);
+            } else {
+                Logger.error("Failed to save the last frame to '" + Headless_Screenshot_Path + "'", true);
+            }
+        }
+    }
+
+
+    private void renderOffscreen() {
+        TextureResidency.selectEvictions();
+        TextureResidency.processFrame();
+        TextureLoader.processUploads();
+        CameraUniformBuffer.upload(GameEditor.current_Level.getOrthoCamera());
+
+        this.framebuffer.use(windowWidth, windowHeight);
+        clear();
+        Game_Editor.renderLevel();
+        this.framebuffer.detatch();
+    }
+
+
+    private void logFrameTimings(long[] frameTimes) {
+        if (frameTimes.length == 0) {
+            return;
+        }
+        long[] sortedTimes = frameTimes.clone();
+        Arrays.sort(sortedTimes);
+
+        long totalTime = 0;
+        for (long frameTime : sortedTimes) {
+            totalTime += frameTime;
+        }
+        Logger.info("Headless run of " + frameTimes.length + " frames at " + windowWidth + " x " + windowHeight
+                + " on " + glGetString(GL_RENDERER)
+                + "\n\t...Average: " + toMillis(totalTime / sortedTimes.length) + " ms"
+                + "\n\t...Min: " + toMillis(sortedTimes[0]) + " ms"
+                + "\n\t...P50: " + toMillis(getPercentile(sortedTimes, 0.50)) + " ms"
+                + "\n\t...P95: " + toMillis(getPercentile(sortedTimes, 0.95)) + " ms"
+                + "\n\t...P99: " + toMillis(getPercentile(sortedTimes, 0.99)) + " ms"
+                + "\n\t...Max: " + toMillis(sortedTimes[sortedTimes.length - 1]) + " ms", true);
+    }
+
+
+    private static long getPercentile(long[] sortedTimes, double percentile) {
+        int index = (int) Math.ceil(percentile * sortedTimes.length) - 1;
+        return sortedTimes[Math.max(0, Math.min(index, sortedTimes.length - 1))];
+    }
+
+
+    private static String toMillis(long nanos) {
+        return String.format("%.3f", nanos / 1_000_000.0);
+    }
+
+
     private void render() {
+        TextureResidency.selectEvictions();
+        TextureResidency.processFrame();
+        TextureLoader.processUploads();
+
+        // Every pass of the frame reads the camera from the same uniform buffer
+        CameraUniformBuffer.upload(GameEditor.current_Level.getOrthoCamera());
+
         if (Enabled_Engine_Mode == LaunchMode) {
             clear();
             Game_Editor.renderLevel();
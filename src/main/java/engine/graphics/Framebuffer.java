@@ -6,7 +6,13 @@
 
 package engine.graphics;
 
+import org.lwjgl.BufferUtils;
+
+import java.nio.ByteBuffer;
+
 import static org.lwjgl.opengl.GL30.*;
+import static org.lwjgl.stb.STBImageWrite.stbi_flip_vertically_on_write;
+import static org.lwjgl.stb.STBImageWrite.stbi_write_png;
 
 public class Framebuffer {
 
@@ -61,5 +67,26 @@ public class Framebuffer {
     public int getTextureID() {
         return textureAttachment.getTextureID();
     }
+
+    /**
+     * Reads the color attachment back and writes it to a PNG file, top row first.
+     *
+     * @param filePath The file to write.
+     * @param width    The width of the attachment.
+     * @param height   The height of the attachment.
+     * @return True if the file was written.
+     */
+    public boolean saveToPNG(String filePath, int width, int height) {
+        ByteBuffer pixels = BufferUtils.createByteBuffer(width * height * 4);
+        glBindFramebuffer(GL_READ_FRAMEBUFFER, framebufferID);
+        glReadBuffer(GL_COLOR_ATTACHMENT0);
+        glPixelStorei(GL_PACK_ALIGNMENT, 1);
+        glReadPixels(0, 0, width, height, GL_RGBA, GL_UNSIGNED_BYTE, pixels);
+        glBindFramebuffer(GL_READ_FRAMEBUFFER, 0);
+
+        // GL rows start at the bottom, PNG rows at the top
+        stbi_flip_vertically_on_write(true);
+        return stbi_write_png(filePath, width, height, 4, pixels, width * 4);
+    }
 }
 /* End of Framebuffer class */
\ No newline at end of file
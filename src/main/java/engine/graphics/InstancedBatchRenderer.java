@@ -0,0 +1,177 @@
+/*
+ Title: InstancedBatchRenderer
+ Date: 2024-06-12
+ Author: Kyle St John
+ */
+package engine.graphics;
+
+import engine.graphics.atlas.AtlasRegion;
+import engine.world.components.Sprite;
+import org.joml.Vector2f;
+import org.joml.Vector4f;
+
+import static org.lwjgl.opengl.GL15.*;
+import static org.lwjgl.opengl.GL20.glEnableVertexAttribArray;
+import static org.lwjgl.opengl.GL20.glVertexAttribPointer;
+import static org.lwjgl.opengl.GL30.glVertexAttribIPointer;
+import static org.lwjgl.opengl.GL31.glDrawElementsInstanced;
+import static org.lwjgl.opengl.GL33.glVertexAttribDivisor;
+
+/**
+ * A batch that draws one shared unit quad per sprite with glDrawElementsInstanced. Each sprite is
+ * staged as a single 48 byte instance (position, size, rotation, UV rectangle, packed color, texture
+ * unit and entity ID) and the quad is expanded and rotated in the vertex shader, instead of packing
+ * four rotated vertices on the CPU. Requires the Instanced.glsl and InstancedPicker.glsl shaders.
+ */
+public class InstancedBatchRenderer extends BatchRenderer {
+
+    // Floats, the packed color and the integer IDs making up one instance
+    private static final int INSTANCE_SIZE_IN_BYTES = 12 * Float.BYTES;
+
+    // Corner of the unit quad in [0, 1], in the same order as the vertices of the regular batch
+    private static final float[] QUAD_CORNERS = {
+            0, 0,
+            0, 1,
+            1, 1,
+            1, 0
+    };
+
+    private int quadVboID;
+
+    public InstancedBatchRenderer(int zIndex, int chunkX, int chunkY, boolean bIsStatic) {
+        super(zIndex, chunkX, chunkY, bIsStatic);
+    }
+
+    @Override
+    protected void initVertexAttributes() {
+        // Attribute 0 steps per vertex through the shared quad
+        quadVboID = glGenBuffers();
+        glBindBuffer(GL_ARRAY_BUFFER, quadVboID);
+        glBufferData(GL_ARRAY_BUFFER, QUAD_CORNERS, GL_STATIC_DRAW);
+        glVertexAttribPointer(0, 2, GL_FLOAT, false, 2 * Float.BYTES, 0);
+        glEnableVertexAttribArray(0);
+
+        // The remaining attributes step once per sprite through the instance buffer
+        glBindBuffer(GL_ARRAY_BUFFER, vboID);
+        setVertexAttributePointers(0);
+        for (int i = 1; i < getNumVertexAttributes(); i++) {
+            glVertexAttribDivisor(i, 1);
+            glEnableVertexAttribArray(i);
+        }
+    }
+
+    @Override
+    protected void setVertexAttributePointers(long baseOffset) {
+        // Only the instance attributes move, the quad stays in its own buffer
+        long positionOffset = baseOffset;
+        addInstanceAttribute(1, 2, GL_FLOAT, false, positionOffset);
+
+        long sizeOffset = positionOffset + 2 * Float.BYTES;
+        addInstanceAttribute(2, 2, GL_FLOAT, false, sizeOffset);
+
+        long rotationOffset = sizeOffset + 2 * Float.BYTES;
+        addInstanceAttribute(3, 1, GL_FLOAT, false, rotationOffset);
+
+        long uvRectOffset = rotationOffset + Float.BYTES;
+        addInstanceAttribute(4, 4, GL_FLOAT, false, uvRectOffset);
+
+        // RGBA packed into four normalized bytes
+        long colorOffset = uvRectOffset + 4 * Float.BYTES;
+        addInstanceAttribute(5, 4, GL_UNSIGNED_BYTE, true, colorOffset);
+
+        long textureIdOffset = colorOffset + 4;
+        glVertexAttribIPointer(6, 1, GL_UNSIGNED_INT, INSTANCE_SIZE_IN_BYTES, textureIdOffset);
+
+        long objectUIDOffset = textureIdOffset + Integer.BYTES;
+        glVertexAttribIPointer(7, 1, GL_UNSIGNED_INT, INSTANCE_SIZE_IN_BYTES, objectUIDOffset);
+    }
+
+    private void addInstanceAttribute(int index, int size, int type, boolean normalized, long offset) {
+        glVertexAttribPointer(index, size, type, normalized, INSTANCE_SIZE_IN_BYTES, offset);
+    }
+
+    @Override
+    protected int[] generateIndices() {
+        // A single quad, with the same winding as the regular batch
+        return new int[]{3, 2, 0, 0, 2, 1};
+    }
+
+    @Override
+    protected int getNumVertexAttributes() {
+        return 8;
+    }
+
+    @Override
+    protected int getSlotSizeInBytes() {
+        return INSTANCE_SIZE_IN_BYTES;
+    }
+
+    @Override
+    protected void drawSprites() {
+        glDrawElementsInstanced(GL_TRIANGLES, 6, GL_UNSIGNED_INT, 0, numSpritesToDraw);
+    }
+
+    @Override
+    protected void packSlots(int[] slots, int numSlots) {
+        // Instances are rotated in the vertex shader, there are no corners to transform
+        for (int i = 0; i < numSlots; i++) {
+            packSlot(slots[i]);
+        }
+    }
+
+    @Override
+    protected void packSlot(int index) {
+        Sprite sprite = sprites[index];
+        Vector2f spritePos = sprite.getSpritePos();
+        Vector2f spriteSize = sprite.getSpriteSize();
+        Vector4f color = sprite.getColor();
+
+        int textureID = 0;
+        Texture spriteTexture = sprite.getSpriteTexture();
+        AtlasRegion atlasRegion = null;
+        if (spriteTexture != null) {
+            atlasRegion = spriteTexture.getAtlasRegion();
+            textureID = getTextureUnit(atlasRegion != null ? atlasRegion.getPage() : spriteTexture);
+        }
+
+        // Sprite UVs are an axis aligned rectangle, so the corners at vertex 0 and vertex 2 describe all four
+        float u0 = sprite.getU(0);
+        float v0 = sprite.getV(0);
+        float u1 = sprite.getU(2);
+        float v1 = sprite.getV(2);
+        if (atlasRegion != null) {
+            u0 = atlasRegion.mapU(u0);
+            v0 = atlasRegion.mapV(v0);
+            u1 = atlasRegion.mapU(u1);
+            v1 = atlasRegion.mapV(v1);
+        }
+
+        int offset = index * INSTANCE_SIZE_IN_BYTES;
+        vertexData.putFloat(offset, spritePos.x);
+        vertexData.putFloat(offset + 4, spritePos.y);
+        vertexData.putFloat(offset + 8, spriteSize.x);
+        vertexData.putFloat(offset + 12, spriteSize.y);
+        vertexData.putFloat(offset + 16, (float) Math.toRadians(sprite.getSpriteRotation()));
+        vertexData.putFloat(offset + 20, u0);
+        vertexData.putFloat(offset + 24, v0);
+        vertexData.putFloat(offset + 28, u1);
+        vertexData.putFloat(offset + 32, v1);
+        vertexData.putInt(offset + 36, packColor(color));
+        vertexData.putInt(offset + 40, textureID);
+        vertexData.putInt(offset + 44, sprite.getOwningGameObject().getUID() + 1);
+    }
+
+    @Override
+    protected void packSlotUVs(int index) {
+        // The UVs are a quarter of a single instance record, so the record is simply re-packed
+        packSlot(index);
+    }
+
+    @Override
+    public void destroy() {
+        // Zero if the batch was never synced, which glDeleteBuffers ignores
+        glDeleteBuffers(quadVboID);
+        super.destroy();
+    }
+}
+/*End of InstancedBatchRenderer class*/
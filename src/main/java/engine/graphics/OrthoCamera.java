@@ -7,7 +7,6 @@ package engine.graphics;
 
 import org.joml.Matrix4f;
 import org.joml.Vector2f;
-import org.joml.Vector3f;
 
 public class OrthoCamera {
 
@@ -18,6 +17,17 @@ public class OrthoCamera {
 
     public Vector2f position;
     public Vector2f size = new Vector2f(32.0f * 40.0f, 32.0f * 20.0f);
+    private float zoom = 1.0f;
+
+    // Values the cached matrices were built from. Position and size are public, so changes are
+    // detected by comparing against these instead of through setters
+    private final Vector2f builtPosition = new Vector2f();
+    private final Vector2f builtSize = new Vector2f();
+    private float builtZoom;
+    private boolean bIsViewBuilt = false;
+
+    // Incremented every time the matrices are rebuilt, so users of the matrices can skip unchanged frames
+    private int version = 0;
 
     public OrthoCamera(Vector2f position) {
         this.position = position;
@@ -31,35 +41,65 @@ public class OrthoCamera {
 
     public void setOrthographicProjection() {
         projectionMatrix.identity();
-        projectionMatrix.ortho(0.0f, size.x, 0.0f, size.y, 0.0f, 50.0f);
+        projectionMatrix.ortho(0.0f, size.x * zoom, 0.0f, size.y * zoom, 0.0f, 50.0f);
         projectionMatrix.invert(inverseProjection);
+        builtSize.set(size);
+        builtZoom = zoom;
+        version++;
     }
 
-    public Matrix4f calculateViewMatrix() {
-        this.viewMatrix.identity();
-        Vector3f cameraFront = new Vector3f(0.0f, 0.0f, 0.0f);
-        Vector3f cameraUp = new Vector3f(0.0f, 1.0f, 0.0f);
-
-        viewMatrix.lookAt(new Vector3f(position.x, position.y, 20.0f),
-                cameraFront.add(position.x, position.y, 0.0f),
-                cameraUp);
-
-        this.viewMatrix.invert(inverseView);
+    /**
+     * Rebuilds the matrices if the position, size or zoom changed since they were last built.
+     */
+    public void update() {
+        if (!size.equals(builtSize) || zoom != builtZoom) {
+            setOrthographicProjection();
+        }
+        if (!bIsViewBuilt || !position.equals(builtPosition)) {
+            // Looking down the z-axis from z = 20 is a plain translation
+            viewMatrix.translation(-position.x, -position.y, -20.0f);
+            inverseView.translation(position.x, position.y, 20.0f);
+            builtPosition.set(position);
+            bIsViewBuilt = true;
+            version++;
+        }
+    }
 
+    public Matrix4f calculateViewMatrix() {
+        update();
         return this.viewMatrix;
     }
 
     public Matrix4f getProjectionMatrix() {
+        update();
         return projectionMatrix;
     }
 
     public Matrix4f getInverseProjection() {
+        update();
         return inverseProjection;
     }
 
     public Matrix4f getInverseView() {
+        update();
         return inverseView;
     }
 
+    public float getZoom() {
+        return zoom;
+    }
+
+    /**
+     * Sets the zoom of the camera. Values above 1 show more of the world.
+     */
+    public void setZoom(float zoom) {
+        this.zoom = zoom;
+    }
+
+    public int getVersion() {
+        update();
+        return version;
+    }
+
 }
-/*End of OrthographicCamera class*/
\ No newline at end of file
+/*End of OrthographicCamera class*/
@@ -0,0 +1,222 @@
+/*
+ Title: ParticleRenderer
+ Date: 2024-08-05
+ Author: Kyle St John
+ */
+package engine.graphics;
+
+import engine.world.components.ParticleEmitter;
+import org.lwjgl.system.MemoryUtil;
+
+import java.nio.ByteBuffer;
+
+import static org.lwjgl.opengl.GL15.*;
+import static org.lwjgl.opengl.GL20.glEnableVertexAttribArray;
+import static org.lwjgl.opengl.GL20.glVertexAttribPointer;
+import static org.lwjgl.opengl.GL30.glBindVertexArray;
+import static org.lwjgl.opengl.GL30.glDeleteVertexArrays;
+import static org.lwjgl.opengl.GL30.glGenVertexArrays;
+import static org.lwjgl.opengl.GL31.glDrawArraysInstanced;
+import static org.lwjgl.opengl.GL33.glVertexAttribDivisor;
+
+/**
+ * Draws the live particles of a {@link ParticleEmitter} with a single instanced draw of a shared unit quad.
+ * Each particle is a 16 byte instance (position, size, packed color) and the quad is expanded in the
+ * Particle.glsl vertex shader. Instances stream through the renderer's streaming buffer like the
+ * sprites of dynamic batches.
+ * <p>
+ * Follows the renderer's phases: {@link #prepare} packs the particles without touching GL, {@link #sync}
+ * uploads them and {@link #draw} draws what the last sync captured.
+ */
+public class ParticleRenderer {
+
+    private static final int INSTANCE_SIZE_IN_BYTES = 16;
+    private static final int STREAM_ALIGNMENT = 16;
+
+    // Corners of the unit quad, drawn as a triangle fan
+    private static final float[] QUAD_CORNERS = {
+            0, 0,
+            0, 1,
+            1, 1,
+            1, 0
+    };
+
+    private final ParticleEmitter emitter;
+
+    // Off-heap staging memory sized for every particle the emitter can hold
+    private final ByteBuffer instanceData;
+    private final long instanceDataAddress;
+
+    private int numParticlesPrepared = 0;
+    private int numParticlesToDraw = 0;
+    private int zIndexPrepared;
+    private int zIndexToDraw;
+
+    private int vaoID = 0;
+    private int quadVboID = 0;
+    private int instanceVboID = 0;
+
+    // Where the last sync left the instances, see BatchRenderer
+    private long streamOffset = -1;
+    private int streamBufferID = 0;
+    private int attributeBufferID = 0;
+    private long attributeOffset = 0;
+
+    public ParticleRenderer(ParticleEmitter emitter) {
+        this.emitter = emitter;
+        instanceData = MemoryUtil.memAlloc(emitter.getMaxParticles() * INSTANCE_SIZE_IN_BYTES);
+        instanceDataAddress = MemoryUtil.memAddress(instanceData);
+    }
+
+    /**
+     * Packs the live particles into the staging memory if any of them can be in view. Makes no GL calls.
+     *
+     * @return True if the emitter has to be drawn.
+     */
+    public boolean prepare(float viewMinX, float viewMinY, float viewMaxX, float viewMaxY) {
+        numParticlesPrepared = 0;
+        if (!emitter.isInView(viewMinX, viewMinY, viewMaxX, viewMaxY)) {
+            return false;
+        }
+
+        float[] positionX = emitter.getPositionX();
+        float[] positionY = emitter.getPositionY();
+        float[] sizes = emitter.getSizes();
+        int[] colors = emitter.getColors();
+        float[] life = emitter.getLife();
+        float[] inverseLifetime = emitter.getInverseLifetime();
+
+        int numParticles = emitter.getNumAlive();
+        int offset = 0;
+        for (int i = 0; i < numParticles; i++) {
+            instanceData.putFloat(offset, positionX[i]);
+            instanceData.putFloat(offset + 4, positionY[i]);
+            instanceData.putFloat(offset + 8, sizes[i]);
+            instanceData.putInt(offset + 12, colors[i]);
+
+            // Fade out over the particle's life. Alpha is the last byte of the packed color in memory
+            int alpha = instanceData.get(offset + 15) & 0xFF;
+            float remainingLife = Math.min(1.0f, life[i] * inverseLifetime[i]);
+            instanceData.put(offset + 15, (byte) (alpha * remainingLife));
+            offset += INSTANCE_SIZE_IN_BYTES;
+        }
+
+        numParticlesPrepared = numParticles;
+        zIndexPrepared = emitter.getTransform().getzIndex();
+        return numParticles > 0;
+    }
+
+    /**
+     * Uploads the prepared particles. Must run on the GL thread, and must not overlap with preparing a frame.
+     *
+     * @param streamingBuffer The renderer's streaming buffer, mapped for this frame, or null.
+     */
+    public void sync(StreamingBuffer streamingBuffer) {
+        if (vaoID == 0) {
+            init();
+        }
+
+        numParticlesToDraw = numParticlesPrepared;
+        zIndexToDraw = zIndexPrepared;
+        int numBytes = numParticlesPrepared * INSTANCE_SIZE_IN_BYTES;
+        if (numBytes == 0) {
+            return;
+        }
+
+        streamOffset = streamingBuffer != null
+                ? streamingBuffer.write(instanceDataAddress, numBytes, STREAM_ALIGNMENT)
+                : -1;
+        if (streamOffset != -1) {
+            streamBufferID = streamingBuffer.getBufferID();
+        } else {
+            // Orphan the old storage so the upload never waits for the previous frame's draw
+            glBindBuffer(GL_ARRAY_BUFFER, instanceVboID);
+            glBufferData(GL_ARRAY_BUFFER, instanceData.capacity(), GL_STREAM_DRAW);
+            nglBufferSubData(GL_ARRAY_BUFFER, 0, numBytes, instanceDataAddress);
+        }
+    }
+
+    private void init() {
+        vaoID = glGenVertexArrays();
+        glBindVertexArray(vaoID);
+
+        // Attribute 0 steps per vertex through the shared quad
+        quadVboID = glGenBuffers();
+        glBindBuffer(GL_ARRAY_BUFFER, quadVboID);
+        glBufferData(GL_ARRAY_BUFFER, QUAD_CORNERS, GL_STATIC_DRAW);
+        glVertexAttribPointer(0, 2, GL_FLOAT, false, 2 * Float.BYTES, 0);
+        glEnableVertexAttribArray(0);
+
+        // The remaining attributes step once per particle
+        instanceVboID = glGenBuffers();
+        glBindBuffer(GL_ARRAY_BUFFER, instanceVboID);
+        glBufferData(GL_ARRAY_BUFFER, instanceData.capacity(), GL_STREAM_DRAW);
+        setInstanceAttributePointers(0);
+        for (int i = 1; i < 4; i++) {
+            glVertexAttribDivisor(i, 1);
+            glEnableVertexAttribArray(i);
+        }
+        glBindVertexArray(0);
+
+        attributeBufferID = instanceVboID;
+        attributeOffset = 0;
+    }
+
+    private static void setInstanceAttributePointers(long baseOffset) {
+        glVertexAttribPointer(1, 2, GL_FLOAT, false, INSTANCE_SIZE_IN_BYTES, baseOffset);
+        glVertexAttribPointer(2, 1, GL_FLOAT, false, INSTANCE_SIZE_IN_BYTES, baseOffset + 8);
+        // RGBA packed into four normalized bytes
+        glVertexAttribPointer(3, 4, GL_UNSIGNED_BYTE, true, INSTANCE_SIZE_IN_BYTES, baseOffset + 12);
+    }
+
+    /**
+     * Draws the particles captured by the last sync. The renderer binds the particle shader.
+     */
+    public void draw() {
+        if (numParticlesToDraw == 0) {
+            return;
+        }
+        glBindVertexArray(vaoID);
+
+        // Point the instance attributes at wherever the last sync left the particles
+        int bufferID = streamOffset != -1 ? streamBufferID : instanceVboID;
+        long offset = streamOffset != -1 ? streamOffset : 0;
+        if (bufferID != attributeBufferID || offset != attributeOffset) {
+            glBindBuffer(GL_ARRAY_BUFFER, bufferID);
+            setInstanceAttributePointers(offset);
+            attributeBufferID = bufferID;
+            attributeOffset = offset;
+        }
+
+        glDrawArraysInstanced(GL_TRIANGLE_FAN, 0, 4, numParticlesToDraw);
+        glBindVertexArray(0);
+    }
+
+    /**
+     * Releases the GL objects and the off-heap memory. The renderer must not be drawn after this call.
+     */
+    public void destroy() {
+        if (vaoID != 0) {
+            glDeleteBuffers(quadVboID);
+            glDeleteBuffers(instanceVboID);
+            glDeleteVertexArrays(vaoID);
+        }
+        MemoryUtil.memFree(instanceData);
+    }
+
+    public ParticleEmitter getEmitter() {
+        return emitter;
+    }
+
+    /**
+     * Gets the z-index captured by the last sync.
+     */
+    public int getZIndexToDraw() {
+        return zIndexToDraw;
+    }
+
+    public int getNumParticlesToDraw() {
+        return numParticlesToDraw;
+    }
+}
+/*End of ParticleRenderer class*/
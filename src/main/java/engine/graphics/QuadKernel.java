@@ -0,0 +1,185 @@
+/*
+ Title: QuadKernel
+ Date: 2024-07-25
+ Author: Kyle St John
+ */
+package engine.graphics;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Expands sprites into the four rotated corners of their quad. Sine and cosine are computed once per
+ * sprite (and skipped for unrotated sprites) and corners are written straight into staging memory, so
+ * packing allocates nothing. Corners come out in the vertex order of {@link BatchRenderer}:
+ * 0 (-, -), 1 (-, +), 2 (+, +), 3 (+, -), rotated counter-clockwise in degrees like
+ * {@link engine.utils.math.MathUtils#rotate}.
+ * <p>
+ * An instance holds structure of arrays scratch memory for transforming many sprites in one call. When
+ * {@link #Use_Vector_Kernel} is set and the JVM was started with {@code --add-modules jdk.incubator.vector},
+ * those calls are handed to {@code QuadKernelVector}, which transforms a full vector of sprites per instruction.
+ * That class is compiled in its own source set with the incubator module, so it is only found at runtime.
+ */
+public final class QuadKernel {
+
+    // Transforms batches of sprites with the incubating Vector API when it is available
+    public static boolean Use_Vector_Kernel = false;
+
+    // Below this many sprites the scalar loop beats setting up vectors
+    public static final int MIN_VECTOR_QUADS = 32;
+
+    // Null when the incubator module or the vector source set is missing
+    private static final VectorTransform VECTOR_TRANSFORM = loadVectorTransform();
+
+    static final float DEG_TO_RAD = (float) (Math.PI / 180.0);
+
+    // Sprite centers, half sizes and rotations in degrees
+    final float[] centerX, centerY;
+    final float[] halfWidth, halfHeight;
+    final float[] rotation;
+
+    // Corner k of sprite i is at k * capacity + i, so each corner is a contiguous run for the vector path
+    final float[] cornerX, cornerY;
+
+    final int capacity;
+
+    public QuadKernel(int capacity) {
+        this.capacity = capacity;
+        centerX = new float[capacity];
+        centerY = new float[capacity];
+        halfWidth = new float[capacity];
+        halfHeight = new float[capacity];
+        rotation = new float[capacity];
+        cornerX = new float[4 * capacity];
+        cornerY = new float[4 * capacity];
+    }
+
+    /**
+     * Checks if batches of sprites are transformed with the Vector API.
+     */
+    public static boolean isVectorized() {
+        return Use_Vector_Kernel && VECTOR_TRANSFORM != null;
+    }
+
+    private static VectorTransform loadVectorTransform() {
+        if (ModuleLayer.boot().findModule("jdk.incubator.vector").isEmpty()) {
+            return null;
+        }
+        try {
+            return (VectorTransform) Class.forName("engine.graphics.QuadKernelVector").getDeclaredConstructor().newInstance();
+        } catch (ReflectiveOperationException | LinkageError e) {
+            return null;
+        }
+    }
+
+    /**
+     * Stores a sprite to be transformed by the next {@link #transform(int)}.
+     *
+     * @param index       The position of the sprite in the scratch memory.
+     * @param rotationDeg The rotation of the sprite in degrees.
+     */
+    public void setQuad(int index, float x, float y, float halfWidth, float halfHeight, float rotationDeg) {
+        centerX[index] = x;
+        centerY[index] = y;
+        this.halfWidth[index] = halfWidth;
+        this.halfHeight[index] = halfHeight;
+        rotation[index] = rotationDeg;
+    }
+
+    /**
+     * Computes the corners of the first sprites stored with {@link #setQuad}.
+     *
+     * @param numQuads The number of sprites to transform.
+     */
+    public void transform(int numQuads) {
+        if (isVectorized() && numQuads >= MIN_VECTOR_QUADS) {
+            VECTOR_TRANSFORM.transformQuads(this, numQuads);
+        } else {
+            transformRange(0, numQuads);
+        }
+    }
+
+    /**
+     * Computes the corners of a range of sprites one at a time. Also finishes the tail of the vector path.
+     */
+    void transformRange(int from, int to) {
+        for (int i = from; i < to; i++) {
+            float cos = 1.0f;
+            float sin = 0.0f;
+            if (rotation[i] != 0.0f) {
+                cos = (float) Math.cos(rotation[i] * DEG_TO_RAD);
+                sin = (float) Math.sin(rotation[i] * DEG_TO_RAD);
+            }
+            float a = halfWidth[i] * cos;
+            float b = halfWidth[i] * sin;
+            float d = halfHeight[i] * sin;
+            float e = halfHeight[i] * cos;
+
+            cornerX[i] = centerX[i] - a + d;
+            cornerY[i] = centerY[i] - b - e;
+            cornerX[capacity + i] = centerX[i] - a - d;
+            cornerY[capacity + i] = centerY[i] - b + e;
+            cornerX[2 * capacity + i] = centerX[i] + a - d;
+            cornerY[2 * capacity + i] = centerY[i] + b + e;
+            cornerX[3 * capacity + i] = centerX[i] + a + d;
+            cornerY[3 * capacity + i] = centerY[i] + b - e;
+        }
+    }
+
+    /**
+     * Writes the corners computed by the last {@link #transform(int)} for one sprite as float2 positions.
+     *
+     * @param index  The position of the sprite in the scratch memory.
+     * @param dst    The staging memory.
+     * @param offset The byte offset of the first corner.
+     * @param stride The number of bytes between two corners.
+     */
+    public void writeCorners(int index, ByteBuffer dst, int offset, int stride) {
+        for (int k = 0; k < 4; k++) {
+            dst.putFloat(offset, cornerX[k * capacity + index]);
+            dst.putFloat(offset + 4, cornerY[k * capacity + index]);
+            offset += stride;
+        }
+    }
+
+    /**
+     * Computes the corners of a single sprite and writes them as float2 positions, without any scratch memory.
+     *
+     * @param dst         The staging memory.
+     * @param offset      The byte offset of the first corner.
+     * @param stride      The number of bytes between two corners.
+     * @param rotationDeg The rotation of the sprite in degrees.
+     */
+    public static void writeQuad(ByteBuffer dst, int offset, int stride, float x, float y,
+                                 float halfWidth, float halfHeight, float rotationDeg) {
+        float cos = 1.0f;
+        float sin = 0.0f;
+        if (rotationDeg != 0.0f) {
+            cos = (float) Math.cos(rotationDeg * DEG_TO_RAD);
+            sin = (float) Math.sin(rotationDeg * DEG_TO_RAD);
+        }
+        float a = halfWidth * cos;
+        float b = halfWidth * sin;
+        float d = halfHeight * sin;
+        float e = halfHeight * cos;
+
+        dst.putFloat(offset, x - a + d);
+        dst.putFloat(offset + 4, y - b - e);
+        offset += stride;
+        dst.putFloat(offset, x - a - d);
+        dst.putFloat(offset + 4, y - b + e);
+        offset += stride;
+        dst.putFloat(offset, x + a - d);
+        dst.putFloat(offset + 4, y + b + e);
+        offset += stride;
+        dst.putFloat(offset, x + a + d);
+        dst.putFloat(offset + 4, y + b - e);
+    }
+
+    /**
+     * Transforms a batch of sprites with the Vector API, see {@code QuadKernelVector}.
+     */
+    interface VectorTransform {
+        void transformQuads(QuadKernel kernel, int numQuads);
+    }
+}
+/*End of QuadKernel class*/
@@ -0,0 +1,114 @@
+/*
+ Title: RenderQueue
+ Date: 2024-06-24
+ Author: Kyle St John
+ */
+package engine.graphics;
+
+import java.util.Arrays;
+
+/**
+ * Orders the batches drawn in a frame by a 64-bit sort key so that batches sharing state end up
+ * next to each other. Keys are built with {@link #makeKey(int, int)} and sorted with an LSD radix
+ * sort, which is linear in the number of batches and allocation free once the arrays have grown.
+ * <p>
+ * Key layout, most significant first: 16 bits layer (z-index), 32 bits texture, 16 bits submission
+ * order. The submission order doubles as the index of the batch, so only the keys are sorted.
+ */
+public class RenderQueue {
+
+    private static final int ORDER_BITS = 16;
+    private static final long ORDER_MASK = (1L << ORDER_BITS) - 1;
+    private static final int MAX_QUEUED_BATCHES = 1 << ORDER_BITS;
+
+    private long[] keys = new long[64];
+    private long[] sortBuffer = new long[64];
+    private BatchRenderer[] batches = new BatchRenderer[64];
+    private final int[] counts = new int[256];
+    private int size = 0;
+
+    /**
+     * Builds the sort key of a batch.
+     *
+     * @param layer     The z-index of the batch. Lower layers are drawn first.
+     * @param textureID The GL name of the batch's first texture, so batches on the same atlas page sort together.
+     * @return The key, without the submission order.
+     */
+    public static long makeKey(int layer, int textureID) {
+        // Bias the signed z-index so negative layers sort below positive ones as unsigned values
+        long biasedLayer = (Math.max(Short.MIN_VALUE, Math.min(Short.MAX_VALUE, layer)) - Short.MIN_VALUE) & 0xFFFFL;
+        return (biasedLayer << 48) | ((textureID & 0xFFFFFFFFL) << ORDER_BITS);
+    }
+
+    public void clear() {
+        Arrays.fill(batches, 0, size, null);
+        size = 0;
+    }
+
+    /**
+     * Queues a batch to be drawn this frame.
+     *
+     * @param batch   The batch.
+     * @param sortKey The key built by {@link #makeKey(int, int)}.
+     */
+    public void submit(BatchRenderer batch, long sortKey) {
+        assert size < MAX_QUEUED_BATCHES : "Error: Too many batches queued in a single frame";
+        if (size == keys.length) {
+            keys = Arrays.copyOf(keys, size * 2);
+            sortBuffer = new long[size * 2];
+            batches = Arrays.copyOf(batches, size * 2);
+        }
+        keys[size] = (sortKey & ~ORDER_MASK) | size;
+        batches[size] = batch;
+        size++;
+    }
+
+    /**
+     * Sorts the queued batches by key, one byte at a time starting with the least significant.
+     * Bytes that are the same for every key are skipped, which is most of them in a typical frame.
+     */
+    public void sort() {
+        long[] source = keys;
+        long[] destination = sortBuffer;
+
+        for (int shift = 0; shift < Long.SIZE; shift += 8) {
+            Arrays.fill(counts, 0);
+            for (int i = 0; i < size; i++) {
+                counts[(int) (source[i] >>> shift) & 0xFF]++;
+            }
+            if (size == 0 || counts[(int) (source[0] >>> shift) & 0xFF] == size) {
+                continue;
+            }
+
+            // Turn the counts into the first output position of every byte value
+            int position = 0;
+            for (int i = 0; i < counts.length; i++) {
+                int count = counts[i];
+                counts[i] = position;
+                position += count;
+            }
+            for (int i = 0; i < size; i++) {
+                destination[counts[(int) (source[i] >>> shift) & 0xFF]++] = source[i];
+            }
+
+            long[] swap = source;
+            source = destination;
+            destination = swap;
+        }
+
+        keys = source;
+        sortBuffer = destination;
+    }
+
+    /**
+     * Gets the batch at a position of the sorted queue.
+     */
+    public BatchRenderer get(int index) {
+        return batches[(int) (keys[index] & ORDER_MASK)];
+    }
+
+    public int size() {
+        return size;
+    }
+}
+/*End of RenderQueue class*/
@@ -0,0 +1,142 @@
+/*
+ Title: RenderThread
+ Date: 2024-07-01
+ Author: Kyle St John
+ */
+package engine.graphics;
+
+import engine.debugging.info.Logger;
+import engine.world.levels.Level;
+import org.lwjgl.opengl.GL;
+
+import static org.lwjgl.glfw.GLFW.glfwMakeContextCurrent;
+import static org.lwjgl.glfw.GLFW.glfwSwapBuffers;
+import static org.lwjgl.opengl.GL11.*;
+import static org.lwjgl.system.MemoryUtil.NULL;
+
+/**
+ * Owns the GL context and draws frames while the simulation thread runs the next tick.
+ * <p>
+ * At the end of each tick the simulation publishes a frame: it captures the camera and lets the level's
+ * renderer prepare the frame, which packs every changed sprite into its batch's staging memory. The render
+ * thread then syncs the frame, uploading the packed data and capturing the draw state, and draws it while the
+ * simulation moves on. Both steps hold the frame lock and the simulation waits until the last frame was synced,
+ * so frame time approaches the longer of simulation and rendering instead of their sum.
+ */
+public class RenderThread implements Runnable {
+
+    private final long glfwWindow;
+    private final Object frameLock = new Object();
+    private Thread thread;
+
+    // Guarded by frameLock
+    private Renderer publishedRenderer = null;
+    private boolean bIsFramePublished = false;
+    private boolean bIsRunning = false;
+
+    /**
+     * @param glfwWindow The window whose GL context is moved to the render thread.
+     */
+    public RenderThread(long glfwWindow) {
+        this.glfwWindow = glfwWindow;
+    }
+
+    /**
+     * Releases the GL context on the calling thread and starts rendering on a new thread.
+     */
+    public void start() {
+        glfwMakeContextCurrent(NULL);
+        bIsRunning = true;
+        thread = new Thread(this, "Render Thread");
+        thread.start();
+        Logger.info("Rendering on a dedicated render thread");
+    }
+
+    /**
+     * Stops the render thread and makes the GL context current on the calling thread again.
+     */
+    public void stop() {
+        synchronized (frameLock) {
+            bIsRunning = false;
+            frameLock.notifyAll();
+        }
+        try {
+            thread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        glfwMakeContextCurrent(glfwWindow);
+        GL.createCapabilities();
+    }
+
+    /**
+     * Prepares a frame of a level and hands it to the render thread. Waits until the previously
+     * published frame has been synced, so at most one frame is in flight.
+     *
+     * @param level The level to render.
+     */
+    public void publishFrame(Level level) {
+        synchronized (frameLock) {
+            while (bIsFramePublished && bIsRunning) {
+                try {
+                    frameLock.wait();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+            }
+
+            CameraUniformBuffer.capture(level.getOrthoCamera());
+            // Decided here, where the live sprites are counted, and carried out by the next sync
+            TextureResidency.selectEvictions();
+            level.getRenderer().prepareFrame();
+            publishedRenderer = level.getRenderer();
+            bIsFramePublished = true;
+            frameLock.notifyAll();
+        }
+    }
+
+    @Override
+    public void run() {
+        glfwMakeContextCurrent(glfwWindow);
+        GL.createCapabilities();
+        Renderer.setDefaultShader();
+
+        while (true) {
+            Renderer renderer;
+            synchronized (frameLock) {
+                while (!bIsFramePublished && bIsRunning) {
+                    try {
+                        frameLock.wait();
+                    } catch (InterruptedException e) {
+                        bIsRunning = false;
+                    }
+                }
+                if (!bIsRunning) {
+                    break;
+                }
+
+                // Everything here reads state prepareFrame() reads or writes, so it holds the lock. The tick
+                // itself runs outside the lock, so nothing here may read state only the tick writes, such
+                // as the live sprite counts of textures
+                renderer = publishedRenderer;
+                CameraUniformBuffer.flush();
+                TextureResidency.processFrame();
+                // Swaps the IDs and sizes of finished textures, which prepareFrame() reads for the sort keys.
+                // The upload budget keeps the time spent under the lock short
+                TextureLoader.processUploads();
+                renderer.syncFrame();
+                bIsFramePublished = false;
+                frameLock.notifyAll();
+            }
+
+            glClearColor(0, 0, 0, 1.0f);
+            glClear(GL_COLOR_BUFFER_BIT | GL_DEPTH_BUFFER_BIT);
+            renderer.drawFrame();
+            glfwSwapBuffers(glfwWindow);
+        }
+
+        glfwMakeContextCurrent(NULL);
+    }
+}
+/*End of RenderThread class*/
@@ -5,28 +5,331 @@
  */
 package engine.graphics;
 
+import engine.editor.GameEditor;
+import engine.utils.engine.EConstants;
 import engine.utils.engine.ResourceUtils;
+import engine.world.components.ParticleEmitter;
 import engine.world.components.Sprite;
+import engine.world.components.Tilemap;
 import engine.world.objects.GameObject;
 
 import java.util.ArrayList;
-import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+import static engine.utils.engine.EConstants.CULLING_CHUNK_SIZE;
+import static engine.utils.engine.EConstants.MIN_PARALLEL_PACK_SLOTS;
+import static engine.utils.engine.EConstants.STREAMING_REGION_COUNT;
+import static engine.utils.engine.EConstants.STREAMING_REGION_SIZE;
+import static org.lwjgl.opengl.GL13.GL_TEXTURE0;
+import static org.lwjgl.opengl.GL13.glActiveTexture;
 
 public class Renderer {
 
     private final List<BatchRenderer> batchList = new ArrayList<>();
 
+    // Batches grouped by everything a sprite has to share with its batch (z-index, chunk, static flag),
+    // so adding a sprite only looks at the batches it could actually join
+    private final Map<Long, List<BatchRenderer>> batchBuckets = new HashMap<>();
+
+    // Visible batches of the current pass, sorted so batches sharing state are drawn back to back
+    private final RenderQueue renderQueue = new RenderQueue();
+
+    // Visible batches with sprites waiting to be packed this pass
+    private final List<BatchRenderer> batchesToPack = new ArrayList<>();
+
+    // Batches captured by the last sync, in draw order. Only touched on the GL thread
+    private final List<BatchRenderer> drawList = new ArrayList<>();
+
+    // Batches emptied since the last prepared frame. They may still be drawn by the render thread, so they
+    // are handed over when the next frame is prepared and destroyed by the sync after that
+    private final List<BatchRenderer> emptiedBatches = new ArrayList<>();
+    private final List<BatchRenderer> batchesToDestroy = new ArrayList<>();
+
+    // Tilemaps of the level, each drawn as one static mesh per visible chunk
+    private final List<TilemapRenderer> tilemapRenderers = new ArrayList<>();
+    // Tilemaps with chunks in view when the frame was prepared, and what the last sync handed to the draw
+    private final List<TilemapRenderer> tilemapsPrepared = new ArrayList<>();
+    private final List<TilemapRenderer> tilemapDrawList = new ArrayList<>();
+    // Removed tilemaps, destroyed with the same delay as emptied batches
+    private final List<TilemapRenderer> removedTilemaps = new ArrayList<>();
+    private final List<TilemapRenderer> tilemapsToDestroy = new ArrayList<>();
+
+    // Particle emitters of the level, each drawn with a single instanced draw
+    private final List<ParticleRenderer> particleRenderers = new ArrayList<>();
+    private final List<ParticleRenderer> particlesPrepared = new ArrayList<>();
+    private final List<ParticleRenderer> particleDrawList = new ArrayList<>();
+    private final List<ParticleRenderer> removedParticles = new ArrayList<>();
+    private final List<ParticleRenderer> particlesToDestroy = new ArrayList<>();
+
+    // Ring buffer the dynamic batches that changed stream their sprites through. Created on the GL thread by the first sync
+    private StreamingBuffer streamingBuffer;
+
+    // Texture unit of every sampler in uTextures, uploaded once per pass
+    private static final int[] TEXTURE_SLOTS = new int[BatchRenderer.NUM_TEXTURE_SLOTS];
+
+    static {
+        for (int i = 0; i < TEXTURE_SLOTS.length; i++) {
+            TEXTURE_SLOTS[i] = i;
+        }
+    }
+
+    private static final Comparator<TilemapRenderer> TILEMAP_ORDER =
+            Comparator.comparingInt(TilemapRenderer::getZIndexToDraw);
+
+    // Sprites that changed z-index or texture and have to move to another batch
+    private final List<Sprite> misplacedSprites = new ArrayList<>();
+
+    // Sprites in batches skipped by the last render because they were outside the camera's view
+    private int numCulledSprites = 0;
+
     private static Shader activeShader;
-    private static final Shader defaultShader = ResourceUtils.getOrCreateShader("C:\\Dev\\StellarSprite2D\\JEngine2D\\shaders\\Default.glsl");
-    private static final Shader pickingShader =  ResourceUtils.getOrCreateShader("C:\\Dev\\StellarSprite2D\\JEngine2D\\shaders\\ObjPicker.glsl");
+    // The render mode is fixed at startup, so the matching shader pair is picked once
+    private static final boolean bIsInstanced = EngineWindow.Enabled_Render_Mode == EConstants.RenderMode.Instanced;
+    private static final Shader defaultShader = ResourceUtils.getOrCreateShader(bIsInstanced
+            ? "C:\\Dev\\StellarSprite2D\\JEngine2D\\shaders\\Instanced.glsl"
+            : "C:\\Dev\\StellarSprite2D\\JEngine2D\\shaders\\Default.glsl");
+    private static final Shader pickingShader = ResourceUtils.getOrCreateShader(bIsInstanced
+            ? "C:\\Dev\\StellarSprite2D\\JEngine2D\\shaders\\InstancedPicker.glsl"
+            : "C:\\Dev\\StellarSprite2D\\JEngine2D\\shaders\\ObjPicker.glsl");
+    private static final Shader particleShader = ResourceUtils.getOrCreateShader(
+            "C:\\Dev\\StellarSprite2D\\JEngine2D\\shaders\\Particle.glsl");
 
+    private static final Comparator<ParticleRenderer> PARTICLE_ORDER =
+            Comparator.comparingInt(ParticleRenderer::getZIndexToDraw);
 
+
+    /**
+     * Renders a frame on the calling thread.
+     */
     public void render() {
-        // Update the batches
+        prepareFrame();
+        syncFrame();
+        drawFrame();
+    }
+
+
+    /**
+     * Prepares the next frame without touching GL: moves misplaced sprites, culls, sorts and packs the
+     * visible batches. With a render thread this runs on the simulation thread while the previous
+     * frame is drawn.
+     */
+    public void prepareFrame() {
+        relocateMisplacedSprites();
+        batchesToDestroy.addAll(emptiedBatches);
+        emptiedBatches.clear();
+        tilemapsToDestroy.addAll(removedTilemaps);
+        removedTilemaps.clear();
+        particlesToDestroy.addAll(removedParticles);
+        removedParticles.clear();
+
+        // The camera looks down at [position, position + size * zoom]
+        OrthoCamera camera = GameEditor.current_Level.getOrthoCamera();
+        float viewMinX = camera.position.x;
+        float viewMinY = camera.position.y;
+        float viewMaxX = viewMinX + camera.size.x * camera.getZoom();
+        float viewMaxY = viewMinY + camera.size.y * camera.getZoom();
+
+        // Queue the visible batches. Culled batches are neither packed nor drawn, their changes stay queued
+        numCulledSprites = 0;
+        renderQueue.clear();
         for (BatchRenderer batch : batchList) {
-            batch.render();
+            if (batch.isInView(viewMinX, viewMinY, viewMaxX, viewMaxY)) {
+                renderQueue.submit(batch, RenderQueue.makeKey(batch.getzIndex(), batch.getSortTextureID()));
+            } else {
+                numCulledSprites += batch.getNumSprites();
+            }
+        }
+        renderQueue.sort();
+        packVisibleBatches();
+        for (int i = 0; i < renderQueue.size(); i++) {
+            renderQueue.get(i).capturePreparedState();
+        }
+
+        tilemapsPrepared.clear();
+        for (TilemapRenderer tilemapRenderer : tilemapRenderers) {
+            if (tilemapRenderer.prepare(viewMinX, viewMinY, viewMaxX, viewMaxY)) {
+                tilemapsPrepared.add(tilemapRenderer);
+            }
+        }
+
+        particlesPrepared.clear();
+        for (ParticleRenderer particleRenderer : particleRenderers) {
+            if (particleRenderer.prepare(viewMinX, viewMinY, viewMaxX, viewMaxY)) {
+                particlesPrepared.add(particleRenderer);
+            }
+        }
+    }
+
+
+    /**
+     * Hands the prepared frame to the GL: uploads the packed sprites and captures the draw list.
+     * Must run on the GL thread, and never at the same time as prepareFrame().
+     */
+    public void syncFrame() {
+        for (BatchRenderer batch : batchesToDestroy) {
+            batch.destroy();
+        }
+        batchesToDestroy.clear();
+        for (TilemapRenderer tilemapRenderer : tilemapsToDestroy) {
+            tilemapRenderer.destroy();
         }
+        tilemapsToDestroy.clear();
+        for (ParticleRenderer particleRenderer : particlesToDestroy) {
+            particleRenderer.destroy();
+        }
+        particlesToDestroy.clear();
+
+        if (streamingBuffer == null) {
+            streamingBuffer = new StreamingBuffer(STREAMING_REGION_SIZE, STREAMING_REGION_COUNT);
+        }
+
+        drawList.clear();
+        streamingBuffer.beginFrame();
+        for (int i = 0; i < renderQueue.size(); i++) {
+            BatchRenderer batch = renderQueue.get(i);
+            batch.sync(streamingBuffer);
+            drawList.add(batch);
+        }
+        particleDrawList.clear();
+        for (ParticleRenderer particleRenderer : particlesPrepared) {
+            particleRenderer.sync(streamingBuffer);
+            particleDrawList.add(particleRenderer);
+        }
+        particleDrawList.sort(PARTICLE_ORDER);
+        streamingBuffer.endFrame();
+        renderQueue.clear();
+
+        // Tilemaps are merged into the batches by z-index when drawing
+        tilemapDrawList.clear();
+        for (TilemapRenderer tilemapRenderer : tilemapsPrepared) {
+            tilemapRenderer.sync();
+            tilemapDrawList.add(tilemapRenderer);
+        }
+        tilemapDrawList.sort(TILEMAP_ORDER);
+    }
+
+
+    /**
+     * Draws the batches captured by the last sync. Must run on the GL thread.
+     */
+    public void drawFrame() {
+        if (drawList.isEmpty() && tilemapDrawList.isEmpty() && particleDrawList.isEmpty()) {
+            return;
+        }
+
+        // Every sprite batch and tilemap of a pass uses the same shader, so it is bound once
+        Shader shader = getActiveShader();
+        shader.use();
+        shader.uploadIntArray("uTextures", TEXTURE_SLOTS);
+
+        // Tilemaps are drawn before the batches of their z-index, so sprites stand on top of the ground
+        int nextTilemap = 0;
+        BatchRenderer previousBatch = null;
+        for (BatchRenderer batch : drawList) {
+            while (nextTilemap < tilemapDrawList.size()
+                    && tilemapDrawList.get(nextTilemap).getZIndexToDraw() <= batch.getzIndex()) {
+                tilemapDrawList.get(nextTilemap++).draw();
+                // The tilemap replaced the texture of unit 1
+                previousBatch = null;
+            }
+            batch.draw(previousBatch);
+            previousBatch = batch;
+        }
+        while (nextTilemap < tilemapDrawList.size()) {
+            tilemapDrawList.get(nextTilemap++).draw();
+        }
+
+        if (previousBatch != null) {
+            previousBatch.unBindTextures();
+        }
+        glActiveTexture(GL_TEXTURE0);
+        shader.detach();
+
+        // Particles are effects drawn over the level, and never picked
+        if (shader != pickingShader && !particleDrawList.isEmpty()) {
+            particleShader.use();
+            for (ParticleRenderer particleRenderer : particleDrawList) {
+                particleRenderer.draw();
+            }
+            particleShader.detach();
+        }
+
+        // The streamed region can be reused once the GPU has finished these draws
+        streamingBuffer.fenceFrame();
+    }
+
+
+    /**
+     * First phase of a pass: packs the dirty sprites of every queued batch into the batches' staging
+     * memory. Each batch only writes its own memory, so large updates are spread over the common
+     * fork/join pool. The GL uploads and draws happen afterwards on this thread.
+     */
+    private void packVisibleBatches() {
+        int numDirtySlots = 0;
+        for (int i = 0; i < renderQueue.size(); i++) {
+            BatchRenderer batch = renderQueue.get(i);
+            if (batch.getNumDirtySlots() > 0) {
+                batchesToPack.add(batch);
+                numDirtySlots += batch.getNumDirtySlots();
+            }
+        }
+
+        if (batchesToPack.size() > 1 && numDirtySlots >= MIN_PARALLEL_PACK_SLOTS) {
+            ForkJoinPool.commonPool().invoke(new PackBatchesTask(batchesToPack, 0, batchesToPack.size()));
+        } else {
+            for (BatchRenderer batch : batchesToPack) {
+                batch.packDirtySlots();
+            }
+        }
+        batchesToPack.clear();
+    }
+
+
+    /**
+     * Packs a range of batches, splitting it in half until a single batch is left.
+     */
+    private static class PackBatchesTask extends RecursiveAction {
+        private final List<BatchRenderer> batches;
+        private final int start;
+        private final int end;
+
+        private PackBatchesTask(List<BatchRenderer> batches, int start, int end) {
+            this.batches = batches;
+            this.start = start;
+            this.end = end;
+        }
+
+        @Override
+        protected void compute() {
+            if (end - start == 1) {
+                batches.get(start).packDirtySlots();
+                return;
+            }
+            int middle = (start + end) >>> 1;
+            invokeAll(new PackBatchesTask(batches, start, middle), new PackBatchesTask(batches, middle, end));
+        }
+    }
+
+
+    /**
+     * Moves sprites whose z-index or texture no longer fit their batch. Only the dirty slots of each
+     * batch are inspected, and each move goes straight to the owning batch.
+     */
+    private void relocateMisplacedSprites() {
+        for (BatchRenderer batch : batchList) {
+            batch.collectMisplacedSprites(misplacedSprites);
+        }
+
+        for (Sprite sprite : misplacedSprites) {
+            removeSprite(sprite);
+            add(sprite);
+        }
+        misplacedSprites.clear();
     }
 
 
@@ -35,6 +338,14 @@ public class Renderer {
         if (sprite != null) {
             add(sprite);
         }
+        Tilemap tilemap = go.getComponent(Tilemap.class);
+        if (tilemap != null) {
+            tilemapRenderers.add(new TilemapRenderer(tilemap));
+        }
+        ParticleEmitter emitter = go.getComponent(ParticleEmitter.class);
+        if (emitter != null) {
+            particleRenderers.add(new ParticleRenderer(emitter));
+        }
     }
 
 
@@ -46,41 +357,207 @@ public class Renderer {
 
 
     private boolean addToExistingBatch(Sprite sprite) {
-        for (BatchRenderer batch : batchList) {
-            // Only add sprites of the same z-index onto the same batch
-            if (batch.getBatchHasRoom() && batch.getzIndex() == sprite.owningGameObject.getZIndex()) {
-                Texture tex = sprite.getSpriteTexture();
-                if (tex == null || (batch.hasTexture(tex) || batch.isTexSlotsFull())) {
-                    batch.addSpriteToBatch(sprite);
-                    return true;
-                }
+        List<BatchRenderer> bucket = batchBuckets.get(getBucketKey(sprite));
+        if (bucket == null) {
+            return false;
+        }
+
+        // Prefer a batch that already holds the texture, so no texture slot is spent on it
+        Texture tex = sprite.getSpriteTexture();
+        BatchRenderer batchWithFreeSlot = null;
+        for (BatchRenderer batch : bucket) {
+            if (!batch.getBatchHasRoom()) {
+                continue;
+            }
+            if (tex == null || batch.hasTexture(tex)) {
+                batch.addSpriteToBatch(sprite);
+                return true;
             }
+            if (batchWithFreeSlot == null && batch.hasFreeTextureSlot()) {
+                batchWithFreeSlot = batch;
+            }
+        }
+
+        if (batchWithFreeSlot != null) {
+            batchWithFreeSlot.addSpriteToBatch(sprite);
+            return true;
         }
         return false;
     }
 
 
-    public void removeSpriteFromRenderer(int spriteUID) {
-        // Iterate through the batches in reverse order to efficiently remove the sprite
-        for (int i = batchList.size() - 1; i >= 0; i--) {
-            BatchRenderer batch = batchList.get(i);
-            // Remove the sprite from the batch
-            batch.removeSpriteFromBatch(spriteUID);
-            // If the batch becomes empty after removing the sprite, remove the batch from the renderer
-            if (batch.getNumSprites() == 0) {
-                batchList.remove(i);
+    public void removeGameObject(GameObject go) {
+        Sprite sprite = go.getComponent(Sprite.class);
+        if (sprite != null) {
+            removeSprite(sprite);
+        }
+        Tilemap tilemap = go.getComponent(Tilemap.class);
+        for (int i = 0; tilemap != null && i < tilemapRenderers.size(); i++) {
+            if (tilemapRenderers.get(i).getTilemap() == tilemap) {
+                removedTilemaps.add(tilemapRenderers.remove(i));
+                break;
+            }
+        }
+        ParticleEmitter emitter = go.getComponent(ParticleEmitter.class);
+        for (int i = 0; emitter != null && i < particleRenderers.size(); i++) {
+            if (particleRenderers.get(i).getEmitter() == emitter) {
+                removedParticles.add(particleRenderers.remove(i));
+                break;
             }
         }
     }
 
 
+    /**
+     * Removes a sprite from the batch it lives in. Every sprite records its batch and slot, so this
+     * never searches the batch list.
+     */
+    public void removeSprite(Sprite sprite) {
+        BatchRenderer batch = sprite.getBatch();
+        if (batch == null) {
+            return;
+        }
+
+        batch.removeSprite(sprite);
+        // If the batch becomes empty after removing the sprite, remove the batch from the renderer
+        if (batch.getNumSprites() == 0) {
+            batchList.remove(batch);
+            long bucketKey = getBucketKey(batch.getzIndex(), batch.getChunkX(), batch.getChunkY(), batch.isStatic());
+            List<BatchRenderer> bucket = batchBuckets.get(bucketKey);
+            bucket.remove(batch);
+            if (bucket.isEmpty()) {
+                batchBuckets.remove(bucketKey);
+            }
+            emptiedBatches.add(batch);
+        }
+    }
+
+
+    /**
+     * Collects the sprites of every batch whose bounds contain a point, as candidates for picking.
+     * The batches only bound their sprites conservatively, so each candidate still has to be tested.
+     *
+     * @param candidates The list the sprites are added to.
+     */
+    public void collectSpritesAt(float x, float y, List<Sprite> candidates) {
+        for (BatchRenderer batch : batchList) {
+            batch.collectSpritesAt(x, y, candidates);
+        }
+    }
+
+
+    /**
+     * Collects the tilemaps with a chunk under a point, as candidates for picking. Each candidate still
+     * has to be tested for a tile at the point.
+     *
+     * @param candidates The list the tilemaps are added to, in the order they are drawn among equal z-indices.
+     */
+    public void collectTilemapsAt(float x, float y, List<Tilemap> candidates) {
+        for (TilemapRenderer tilemapRenderer : tilemapRenderers) {
+            if (tilemapRenderer.hasChunkAt(x, y)) {
+                candidates.add(tilemapRenderer.getTilemap());
+            }
+        }
+    }
+
+
+    /**
+     * Frees every batch owned by this renderer. Called when the level it belongs to is unloaded.
+     */
+    public void destroy() {
+        for (BatchRenderer batch : batchList) {
+            batch.destroy();
+        }
+        for (BatchRenderer batch : batchesToDestroy) {
+            batch.destroy();
+        }
+        for (BatchRenderer batch : emptiedBatches) {
+            batch.destroy();
+        }
+        for (TilemapRenderer tilemapRenderer : tilemapRenderers) {
+            tilemapRenderer.destroy();
+        }
+        for (TilemapRenderer tilemapRenderer : tilemapsToDestroy) {
+            tilemapRenderer.destroy();
+        }
+        for (TilemapRenderer tilemapRenderer : removedTilemaps) {
+            tilemapRenderer.destroy();
+        }
+        for (ParticleRenderer particleRenderer : particleRenderers) {
+            particleRenderer.destroy();
+        }
+        for (ParticleRenderer particleRenderer : particlesToDestroy) {
+            particleRenderer.destroy();
+        }
+        for (ParticleRenderer particleRenderer : removedParticles) {
+            particleRenderer.destroy();
+        }
+        if (streamingBuffer != null) {
+            streamingBuffer.destroy();
+            streamingBuffer = null;
+        }
+        batchList.clear();
+        batchBuckets.clear();
+        batchesToDestroy.clear();
+        emptiedBatches.clear();
+        drawList.clear();
+        tilemapRenderers.clear();
+        tilemapsPrepared.clear();
+        tilemapDrawList.clear();
+        tilemapsToDestroy.clear();
+        removedTilemaps.clear();
+        particleRenderers.clear();
+        particlesPrepared.clear();
+        particleDrawList.clear();
+        particlesToDestroy.clear();
+        removedParticles.clear();
+    }
+
+
     private void createNewBatch(Sprite sprite) {
-        BatchRenderer newBatch = new BatchRenderer(sprite.owningGameObject.getZIndex());
+        int zIndex = sprite.owningGameObject.getZIndex();
+        int chunkX = getChunk(sprite.getSpritePos().x);
+        int chunkY = getChunk(sprite.getSpritePos().y);
+        boolean bIsStatic = sprite.owningGameObject.isStatic();
+        BatchRenderer newBatch = bIsInstanced
+                ? new InstancedBatchRenderer(zIndex, chunkX, chunkY, bIsStatic)
+                : new BatchRenderer(zIndex, chunkX, chunkY, bIsStatic);
         newBatch.addSpriteToBatch(sprite);
         batchList.add(newBatch);
-        // Sorts the batches by their z index to ensure they are in the correct order
-        // Can also call .reverseOrder()
-        Collections.sort(batchList);
+        // Draw order is decided by the render queue every frame, so the list is not kept sorted
+        batchBuckets.computeIfAbsent(getBucketKey(zIndex, chunkX, chunkY, bIsStatic), key -> new ArrayList<>()).add(newBatch);
+    }
+
+
+    private static long getBucketKey(Sprite sprite) {
+        return getBucketKey(sprite.owningGameObject.getZIndex(), getChunk(sprite.getSpritePos().x),
+                getChunk(sprite.getSpritePos().y), sprite.owningGameObject.isStatic());
+    }
+
+
+    /**
+     * Packs the properties shared by all sprites of a batch into a single key: 16 bits z-index,
+     * 23 bits for each chunk coordinate and 1 bit for the static flag.
+     */
+    private static long getBucketKey(int zIndex, int chunkX, int chunkY, boolean bIsStatic) {
+        return ((long) (zIndex & 0xFFFF) << 47)
+                | ((long) (chunkX & 0x7FFFFF) << 24)
+                | ((long) (chunkY & 0x7FFFFF) << 1)
+                | (bIsStatic ? 1L : 0L);
+    }
+
+
+    /**
+     * Gets the culling chunk a world coordinate falls into. Sprites are only batched with sprites
+     * of the same chunk, so batches outside the camera's view can be skipped as a whole.
+     */
+    public static int getChunk(float worldCoordinate) {
+        return (int) Math.floor(worldCoordinate / CULLING_CHUNK_SIZE);
+    }
+
+
+    public int getNumCulledSprites() {
+        return numCulledSprites;
     }
 
 
@@ -13,10 +13,19 @@ import org.lwjgl.BufferUtils;
 
 import java.io.IOException;
 import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
 import java.nio.file.Files;
 import java.nio.file.Paths;
+import java.util.HashMap;
+import java.util.Map;
 
+import static engine.utils.engine.EConstants.CAMERA_UBO_BINDING;
 import static org.lwjgl.opengl.GL20.*;
+import static org.lwjgl.opengl.GL31.GL_INVALID_INDEX;
+import static org.lwjgl.opengl.GL31.glGetUniformBlockIndex;
+import static org.lwjgl.opengl.GL31.glUniformBlockBinding;
+import static org.lwjgl.opengl.GL41.GL_PROGRAM_BINARY_RETRIEVABLE_HINT;
+import static org.lwjgl.opengl.GL41.glProgramParameteri;
 
 /**
  * The Shader class represents a shader program in OpenGL.
@@ -38,6 +47,14 @@ public class Shader {
     // Flag to check if the shader is bound
     private boolean isShaderBound = false;
 
+    // Locations of the active uniforms, looked up once when the program links. Array uniforms are
+    // stored under their name without the "[0]" suffix
+    private final Map<String, Integer> uniformLocations = new HashMap<>();
+
+    // Reused for every matrix and array upload so uniform updates never allocate
+    private final FloatBuffer matrixBuffer = BufferUtils.createFloatBuffer(16);
+    private IntBuffer intArrayBuffer = BufferUtils.createIntBuffer(16);
+
     /**
      * Constructs a Shader object by initializing shaders from a specified file.
      *
@@ -103,11 +120,28 @@ public class Shader {
     }
 
     /**
-     * Call to to compile and link shader methods
+     * Call to to compile and link shader methods. The program is loaded from the {@link ShaderCache}
+     * when possible, and only linked once no matter how often this is called.
      */
     public void compileAndLinkShaders() {
-        compile();
-        link();
+        if (shaderProgramID != 0) {
+            return;
+        }
+
+        boolean bUseCache = ShaderCache.isSupported();
+        String cacheKey = null;
+        if (bUseCache) {
+            cacheKey = ShaderCache.getKey(vertexShaderSrc, fragmentShaderSrc);
+            shaderProgramID = ShaderCache.loadProgram(cacheKey);
+        }
+
+        if (shaderProgramID == 0) {
+            compile();
+            if (link(bUseCache) && bUseCache) {
+                ShaderCache.saveProgram(cacheKey, shaderProgramID);
+            }
+        }
+        onProgramLinked();
     }
 
     /**
@@ -129,8 +163,11 @@ public class Shader {
 
     /**
      * Link the shaders and create a shader program
+     *
+     * @param bRetrievable True if the program binary will be read back for the shader cache.
+     * @return True if the program linked.
      */
-    private void link() {
+    private boolean link(boolean bRetrievable) {
         // Create the shader program
         shaderProgramID = glCreateProgram();
 
@@ -138,19 +175,68 @@ public class Shader {
         glAttachShader(shaderProgramID, vertexShaderID);
         glAttachShader(shaderProgramID, fragmentShaderID);
 
+        // Some drivers only keep the binary around when asked to before linking
+        if (bRetrievable) {
+            glProgramParameteri(shaderProgramID, GL_PROGRAM_BINARY_RETRIEVABLE_HINT, GL_TRUE);
+        }
+
         // Link the shaders together and form the final shader program
         glLinkProgram(shaderProgramID);
 
         // Check for errors in linking
         int linkingSuccess = glGetProgrami(shaderProgramID, GL_LINK_STATUS);
         if (linkingSuccess == GL_FALSE) {
-            int len = glGetShaderi(shaderProgramID, GL_INFO_LOG_LENGTH);
+            int len = glGetProgrami(shaderProgramID, GL_INFO_LOG_LENGTH);
             System.out.println("ERROR: Linking of shaders failed");
-            System.out.println(glGetShaderInfoLog(shaderProgramID, len));
+            System.out.println(glGetProgramInfoLog(shaderProgramID, len));
             assert false : "";
         }
         // Preform cleanup on the shader objects
         cleanup();
+        return linkingSuccess != GL_FALSE;
+    }
+
+    /**
+     * Looks up what the program exposes, whether it was just linked or loaded from the cache.
+     */
+    private void onProgramLinked() {
+        cacheUniformLocations();
+
+        // Shaders declaring the Camera block read the matrices from the shared camera uniform buffer
+        int cameraBlockIndex = glGetUniformBlockIndex(shaderProgramID, "Camera");
+        if (cameraBlockIndex != GL_INVALID_INDEX) {
+            glUniformBlockBinding(shaderProgramID, cameraBlockIndex, CAMERA_UBO_BINDING);
+        }
+    }
+
+    /**
+     * Looks up the location of every active uniform of the linked program.
+     */
+    private void cacheUniformLocations() {
+        uniformLocations.clear();
+
+        IntBuffer size = BufferUtils.createIntBuffer(1);
+        IntBuffer type = BufferUtils.createIntBuffer(1);
+        int numUniforms = glGetProgrami(shaderProgramID, GL_ACTIVE_UNIFORMS);
+        for (int i = 0; i < numUniforms; i++) {
+            String name = glGetActiveUniform(shaderProgramID, i, size, type);
+            if (name.endsWith("[0]")) {
+                name = name.substring(0, name.length() - 3);
+            }
+            uniformLocations.put(name, glGetUniformLocation(shaderProgramID, name));
+        }
+    }
+
+    /**
+     * Gets the cached location of a uniform. The location can be kept and passed to the upload
+     * methods directly to skip the name lookup.
+     *
+     * @param uniformName The name of the uniform.
+     * @return The location, or -1 if the program has no active uniform with that name.
+     */
+    public int getUniformLocation(String uniformName) {
+        Integer location = uniformLocations.get(uniformName);
+        return location != null ? location : -1;
     }
 
     /**
@@ -164,56 +250,76 @@ public class Shader {
     }
 
     public void uploadVec4f(String uniformName, Vector4f vec) {
-        int uniformLocation = glGetUniformLocation(shaderProgramID, uniformName);
+        uploadVec4f(getUniformLocation(uniformName), vec);
+    }
+
+    public void uploadVec4f(int uniformLocation, Vector4f vec) {
         use();
         glUniform4f(uniformLocation, vec.x, vec.y, vec.z, vec.w);
     }
 
     public void uploadVec2f(String uniformName, Vector2f vec) {
-        int uniformLocation = glGetUniformLocation(shaderProgramID, uniformName);
+        uploadVec2f(getUniformLocation(uniformName), vec);
+    }
+
+    public void uploadVec2f(int uniformLocation, Vector2f vec) {
         use();
         glUniform2f(uniformLocation, vec.x, vec.y);
     }
 
     public void uploadVec3f(String uniformName, Vector3f vec) {
-        int uniformLocation = glGetUniformLocation(shaderProgramID, uniformName);
+        uploadVec3f(getUniformLocation(uniformName), vec);
+    }
+
+    public void uploadVec3f(int uniformLocation, Vector3f vec) {
         use();
         glUniform3f(uniformLocation, vec.x, vec.y, vec.z);
     }
 
     public void uploadInt(String uniformName, int intVal) {
-        int uniformLocation = glGetUniformLocation(shaderProgramID, uniformName);
+        uploadInt(getUniformLocation(uniformName), intVal);
+    }
+
+    public void uploadInt(int uniformLocation, int intVal) {
         use();
-        glGetUniformi(uniformLocation, intVal);
+        glUniform1i(uniformLocation, intVal);
     }
 
     /**
-     * Get the location of and upload a texture uniform variable
+     * Upload a texture uniform variable
      */
     public void uploadTexture(String varName, int slot) {
-        int varLocation = glGetUniformLocation(shaderProgramID, varName);
-        use();
-        glUniform1i(varLocation, slot);
+        uploadInt(getUniformLocation(varName), slot);
     }
 
     /**
-     * Get the location of and upload a Matrix4f uniform variable
+     * Upload a Matrix4f uniform variable
      */
     public void uploadMat4f(String varName, Matrix4f mat4) {
+        uploadMat4f(getUniformLocation(varName), mat4);
+    }
+
+    public void uploadMat4f(int varLocation, Matrix4f mat4) {
         use();
-        int varLocation = glGetUniformLocation(shaderProgramID, varName);
-        FloatBuffer matBuffer = BufferUtils.createFloatBuffer(16);
-        mat4.get(matBuffer);
-        glUniformMatrix4fv(varLocation, false, matBuffer);
+        mat4.get(matrixBuffer);
+        glUniformMatrix4fv(varLocation, false, matrixBuffer);
     }
 
     /**
-     * Get the location of and upload an array of ints as a uniform variable
+     * Upload an array of ints as a uniform variable
      */
     public void uploadIntArray(String varName, int[] intArray) {
+        uploadIntArray(getUniformLocation(varName), intArray);
+    }
+
+    public void uploadIntArray(int varLocation, int[] intArray) {
         use();
-        int varLocation = glGetUniformLocation(shaderProgramID, varName);
-        glUniform1iv(varLocation, intArray);
+        if (intArray.length > intArrayBuffer.capacity()) {
+            intArrayBuffer = BufferUtils.createIntBuffer(intArray.length);
+        }
+        intArrayBuffer.clear();
+        intArrayBuffer.put(intArray).flip();
+        glUniform1iv(varLocation, intArrayBuffer);
     }
 
 
@@ -0,0 +1,152 @@
+/*
+ Title: ShaderCache
+ Date: 2024-07-12
+ Author: Kyle St John
+ */
+package engine.graphics;
+
+import engine.debugging.info.Logger;
+import org.lwjgl.BufferUtils;
+import org.lwjgl.opengl.GL;
+import org.lwjgl.opengl.GLCapabilities;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+import static org.lwjgl.opengl.GL11.*;
+import static org.lwjgl.opengl.GL20.*;
+import static org.lwjgl.opengl.GL41.*;
+
+/**
+ * Stores linked shader programs on disk with glGetProgramBinary so later runs can skip compiling and
+ * linking. Entries are keyed by a hash of the shader source and the driver, so editing a shader or
+ * updating the driver simply misses the cache. Program binaries are core in GL 4.1 and available on
+ * GL 3.3 drivers through ARB_get_program_binary; without either the cache is never used.
+ */
+public class ShaderCache {
+
+    private static final String CACHE_DIRECTORY_PATH = "shadercache/";
+    private static final String CACHE_FILE_EXTENSION = ".bin";
+
+    // The binary format is stored in front of the program binary
+    private static final int HEADER_SIZE_IN_BYTES = Integer.BYTES;
+
+    /**
+     * Checks if the current context can save and load program binaries.
+     */
+    public static boolean isSupported() {
+        GLCapabilities capabilities = GL.getCapabilities();
+        if (!capabilities.OpenGL41 && !capabilities.GL_ARB_get_program_binary) {
+            return false;
+        }
+        return glGetInteger(GL_NUM_PROGRAM_BINARY_FORMATS) > 0;
+    }
+
+    /**
+     * Builds the key a program is cached under. Must run on the GL thread.
+     *
+     * @param vertexShaderSrc   The source of the vertex shader.
+     * @param fragmentShaderSrc The source of the fragment shader.
+     * @return A hex string that changes with the sources and with the driver.
+     */
+    public static String getKey(String vertexShaderSrc, String fragmentShaderSrc) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            digest.update(vertexShaderSrc.getBytes(StandardCharsets.UTF_8));
+            digest.update(fragmentShaderSrc.getBytes(StandardCharsets.UTF_8));
+            digest.update(String.valueOf(glGetString(GL_VENDOR)).getBytes(StandardCharsets.UTF_8));
+            digest.update(String.valueOf(glGetString(GL_RENDERER)).getBytes(StandardCharsets.UTF_8));
+            digest.update(String.valueOf(glGetString(GL_VERSION)).getBytes(StandardCharsets.UTF_8));
+
+            StringBuilder key = new StringBuilder();
+            for (byte b : digest.digest()) {
+                key.append(String.format("%02x", b));
+            }
+            return key.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+
+    /**
+     * Creates a program from a cached binary.
+     *
+     * @param key The key of the program, see {@link #getKey(String, String)}.
+     * @return The linked program, or 0 if there is no usable entry and the shader has to be compiled.
+     */
+    public static int loadProgram(String key) {
+        Path path = getCachePath(key);
+        if (!Files.exists(path)) {
+            return 0;
+        }
+
+        byte[] bytes;
+        try {
+            bytes = Files.readAllBytes(path);
+        } catch (IOException e) {
+            Logger.warning("Failed to read cached shader: " + path);
+            return 0;
+        }
+        if (bytes.length <= HEADER_SIZE_IN_BYTES) {
+            return 0;
+        }
+
+        ByteBuffer data = BufferUtils.createByteBuffer(bytes.length);
+        data.put(bytes).flip();
+        int binaryFormat = data.getInt();
+
+        int programID = glCreateProgram();
+        glProgramBinary(programID, binaryFormat, data);
+
+        // Drivers reject binaries from other versions or hardware, the source compile takes over then
+        if (glGetProgrami(programID, GL_LINK_STATUS) == GL_FALSE) {
+            glDeleteProgram(programID);
+            return 0;
+        }
+        return programID;
+    }
+
+    /**
+     * Writes a linked program to the cache. Failing to write only costs the next run a compile.
+     *
+     * @param key       The key of the program, see {@link #getKey(String, String)}.
+     * @param programID A program linked with GL_PROGRAM_BINARY_RETRIEVABLE_HINT set.
+     */
+    public static void saveProgram(String key, int programID) {
+        int binaryLength = glGetProgrami(programID, GL_PROGRAM_BINARY_LENGTH);
+        if (binaryLength <= 0) {
+            return;
+        }
+
+        ByteBuffer data = BufferUtils.createByteBuffer(HEADER_SIZE_IN_BYTES + binaryLength);
+        IntBuffer length = BufferUtils.createIntBuffer(1);
+        IntBuffer binaryFormat = BufferUtils.createIntBuffer(1);
+        data.position(HEADER_SIZE_IN_BYTES);
+        glGetProgramBinary(programID, length, binaryFormat, data);
+        data.putInt(0, binaryFormat.get(0));
+
+        byte[] bytes = new byte[HEADER_SIZE_IN_BYTES + length.get(0)];
+        data.position(0);
+        data.get(bytes);
+
+        Path path = getCachePath(key);
+        try {
+            Files.createDirectories(path.getParent());
+            Files.write(path, bytes);
+        } catch (IOException e) {
+            Logger.warning("Failed to write cached shader: " + path);
+        }
+    }
+
+    private static Path getCachePath(String key) {
+        return Paths.get(CACHE_DIRECTORY_PATH + key + CACHE_FILE_EXTENSION);
+    }
+}
+/*End of ShaderCache class*/
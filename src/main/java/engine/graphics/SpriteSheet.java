@@ -84,6 +84,10 @@ public class SpriteSheet {
         return spriteSheet.get(spriteIndex);
     }
 
+    public Texture getTexture() {
+        return spriteSheetTexture;
+    }
+
     public String getFilePathOfTexture() {
         return spriteSheetTexture.getFilePath();
     }
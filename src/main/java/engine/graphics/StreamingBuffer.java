@@ -0,0 +1,167 @@
+/*
+ Title: StreamingBuffer
+ Date: 2024-07-08
+ Author: Kyle St John
+ */
+package engine.graphics;
+
+import org.lwjgl.system.MemoryUtil;
+
+import java.nio.ByteBuffer;
+
+import static org.lwjgl.opengl.GL15.*;
+import static org.lwjgl.opengl.GL30.*;
+import static org.lwjgl.opengl.GL32.*;
+
+/**
+ * A ring of per-frame regions in one large vertex buffer, for geometry that is rewritten every frame.
+ * Each frame maps the next region unsynchronized and invalidated, so writing never waits on the driver.
+ * A fence placed after the frame's draws guards the region until the GPU is done reading it, and the
+ * frame that wraps around to it waits on that fence first. Only uses GL 3.3 features.
+ */
+public class StreamingBuffer {
+
+    private final int bufferID;
+    private final int regionSize;
+    private final long[] regionFences;
+
+    private int currentRegion = -1;
+    private long mappedAddress = MemoryUtil.NULL;
+    private int writeOffset = 0;
+
+    /**
+     * Creates the buffer. Must run on the GL thread.
+     *
+     * @param regionSize  The number of bytes one frame can write.
+     * @param regionCount The number of frames in flight, usually 3.
+     */
+    public StreamingBuffer(int regionSize, int regionCount) {
+        this.regionSize = regionSize;
+        this.regionFences = new long[regionCount];
+
+        bufferID = glGenBuffers();
+        glBindBuffer(GL_ARRAY_BUFFER, bufferID);
+        glBufferData(GL_ARRAY_BUFFER, (long) regionSize * regionCount, GL_STREAM_DRAW);
+        glBindBuffer(GL_ARRAY_BUFFER, 0);
+    }
+
+    /**
+     * Moves to the next region and maps it for writing, waiting for the GPU to release it if needed.
+     */
+    public void beginFrame() {
+        currentRegion = (currentRegion + 1) % regionFences.length;
+        waitForRegion(currentRegion);
+
+        glBindBuffer(GL_ARRAY_BUFFER, bufferID);
+        ByteBuffer mapped = glMapBufferRange(GL_ARRAY_BUFFER, (long) currentRegion * regionSize, regionSize,
+                GL_MAP_WRITE_BIT | GL_MAP_UNSYNCHRONIZED_BIT | GL_MAP_INVALIDATE_RANGE_BIT);
+        glBindBuffer(GL_ARRAY_BUFFER, 0);
+
+        mappedAddress = mapped != null ? MemoryUtil.memAddress(mapped) : MemoryUtil.NULL;
+        writeOffset = 0;
+    }
+
+    /**
+     * Reserves space in the current region.
+     *
+     * @param numBytes  The number of bytes to reserve.
+     * @param alignment The alignment of the reserved space, a power of two.
+     * @return The offset of the space within the buffer, or -1 if the region is full or not mapped.
+     */
+    public long reserve(int numBytes, int alignment) {
+        int alignedOffset = (writeOffset + alignment - 1) & -alignment;
+        if (mappedAddress == MemoryUtil.NULL || alignedOffset + numBytes > regionSize) {
+            return -1;
+        }
+        writeOffset = alignedOffset + numBytes;
+        return (long) currentRegion * regionSize + alignedOffset;
+    }
+
+    /**
+     * Copies memory into the current region.
+     *
+     * @param sourceAddress The address of the data.
+     * @param numBytes      The number of bytes to copy.
+     * @param alignment     The alignment of the copy, a power of two.
+     * @return The offset of the data within the buffer, or -1 if it did not fit.
+     */
+    public long write(long sourceAddress, int numBytes, int alignment) {
+        long offset = reserve(numBytes, alignment);
+        if (offset != -1) {
+            MemoryUtil.memCopy(sourceAddress, getAddress(offset), numBytes);
+        }
+        return offset;
+    }
+
+    /**
+     * Gets the address reserved space can be written through until the frame is ended.
+     *
+     * @param offset An offset returned by {@link #reserve(int, int)}.
+     */
+    public long getAddress(long offset) {
+        return mappedAddress + (offset - (long) currentRegion * regionSize);
+    }
+
+    /**
+     * Unmaps the current region. Must be called before drawing from it.
+     */
+    public void endFrame() {
+        if (mappedAddress == MemoryUtil.NULL) {
+            return;
+        }
+        glBindBuffer(GL_ARRAY_BUFFER, bufferID);
+        glUnmapBuffer(GL_ARRAY_BUFFER);
+        glBindBuffer(GL_ARRAY_BUFFER, 0);
+        mappedAddress = MemoryUtil.NULL;
+    }
+
+    /**
+     * Places a fence after the draws reading the current region, so it is not rewritten while in use.
+     */
+    public void fenceFrame() {
+        if (currentRegion == -1) {
+            return;
+        }
+        if (regionFences[currentRegion] != 0) {
+            glDeleteSync(regionFences[currentRegion]);
+        }
+        regionFences[currentRegion] = glFenceSync(GL_SYNC_GPU_COMMANDS_COMPLETE, 0);
+    }
+
+    private void waitForRegion(int region) {
+        long fence = regionFences[region];
+        if (fence == 0) {
+            return;
+        }
+        // Flush on the first wait so the fence is guaranteed to be signalled eventually
+        int waitFlags = GL_SYNC_FLUSH_COMMANDS_BIT;
+        while (true) {
+            int result = glClientWaitSync(fence, waitFlags, 1_000_000L);
+            if (result == GL_ALREADY_SIGNALED || result == GL_CONDITION_SATISFIED || result == GL_WAIT_FAILED) {
+                break;
+            }
+            waitFlags = 0;
+        }
+        glDeleteSync(fence);
+        regionFences[region] = 0;
+    }
+
+    public int getBufferID() {
+        return bufferID;
+    }
+
+    /**
+     * Deletes the buffer and any pending fences. Must run on the GL thread.
+     */
+    public void destroy() {
+        endFrame();
+        for (int i = 0; i < regionFences.length; i++) {
+            if (regionFences[i] != 0) {
+                glDeleteSync(regionFences[i]);
+                regionFences[i] = 0;
+            }
+        }
+        glDeleteBuffers(bufferID);
+    }
+}
+/*End of StreamingBuffer class*/
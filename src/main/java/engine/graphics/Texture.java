@@ -5,11 +5,14 @@
  */
 package engine.graphics;
 
+import engine.graphics.atlas.AtlasRegion;
+import engine.graphics.atlas.TextureAtlas;
 import engine.utils.engine.ResourceUtils;
 import org.lwjgl.BufferUtils;
 
 import java.nio.ByteBuffer;
 import java.nio.IntBuffer;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 import static org.lwjgl.opengl.GL11.*;
 import static org.lwjgl.stb.STBImage.*;
@@ -24,6 +27,26 @@ public class Texture {
     private int textureWidth;
     private int textureHeight;
 
+    // Cached atlas lookup, refreshed whenever a new atlas is built. Batches are packed in parallel, so the
+    // region is written before the volatile version and read after it
+    private transient AtlasRegion atlasRegion;
+    private transient volatile int atlasVersion;
+
+    // False while an asynchronously loaded texture still shows its placeholder
+    private transient volatile boolean bIsLoaded = false;
+    // GL texture an image is uploaded into strip by strip, swapped in once complete. 0 when none
+    private transient int stripTextureID = 0;
+
+    // Residency, see TextureResidency. Only textures loaded from a file can be evicted and reloaded
+    private transient boolean bIsReloadable = false;
+    // Set when TextureResidency chooses the texture for eviction, cleared by the next use
+    private final transient AtomicBoolean bIsEvicted = new AtomicBoolean();
+    // Live sprites and last use, shared by every texture of the same file. Resolved on first use
+    private transient TextureResidency.FileUsage fileUsage;
+
+    // Opaque grey pixel shown until the real image is uploaded
+    private static final byte[] PLACEHOLDER_PIXEL = {(byte) 128, (byte) 128, (byte) 128, (byte) 255};
+
     /**
      * Constructs a Texture object with the specified file path.
      *
@@ -50,23 +73,328 @@ public class Texture {
 
         // Defines a 2D texture with RGBA Channels and generates the image
         glTexImage2D(GL_TEXTURE_2D, 0, GL_RGBA, width, height, 0, GL_RGB, GL_UNSIGNED_BYTE, 0);
+        bIsLoaded = true;
+    }
+
+    private Texture() {
+    }
+
+    /**
+     * Creates an empty RGBA texture with clamped edges, used as a page of the texture atlas.
+     *
+     * @param width    The width of the texture.
+     * @param height   The height of the texture.
+     * @param filePath The name used to identify the texture.
+     * @return The created texture.
+     */
+    public static Texture createBlank(int width, int height, String filePath) {
+        Texture texture = new Texture(width, height);
+        texture.filePath = filePath;
+        texture.textureWidth = width;
+        texture.textureHeight = height;
+
+        glTexParameteri(GL_TEXTURE_2D, GL_TEXTURE_WRAP_S, GL_CLAMP_TO_EDGE);
+        glTexParameteri(GL_TEXTURE_2D, GL_TEXTURE_WRAP_T, GL_CLAMP_TO_EDGE);
+        glTexParameteri(GL_TEXTURE_2D, GL_TEXTURE_MIN_FILTER, GL_NEAREST);
+        glTexParameteri(GL_TEXTURE_2D, GL_TEXTURE_MAG_FILTER, GL_NEAREST);
+        glTexImage2D(GL_TEXTURE_2D, 0, GL_RGBA, width, height, 0, GL_RGBA, GL_UNSIGNED_BYTE, 0);
+        glBindTexture(GL_TEXTURE_2D, 0);
+        return texture;
+    }
+
+    /**
+     * Creates a texture whose pixels are decoded elsewhere, see {@link TextureLoader}. The size is read
+     * from the file header right away and a placeholder is shown until the loader's last strip is uploaded.
+     *
+     * @param filePath The file path of the texture.
+     * @return The texture, bound to GL_TEXTURE_2D.
+     */
+    static Texture createPending(String filePath) {
+        if (!ResourceUtils.isValidFilePath(filePath)) {
+            throw new UnsupportedOperationException("Error: Invalid file path provided: '" + filePath + "'");
+        }
+
+        Texture texture = new Texture();
+        texture.filePath = filePath;
+        texture.bIsReloadable = true;
+        texture.getFileUsage().claimOwner(texture);
+
+        IntBuffer width = BufferUtils.createIntBuffer(1);
+        IntBuffer height = BufferUtils.createIntBuffer(1);
+        IntBuffer channels = BufferUtils.createIntBuffer(1);
+        if (stbi_info(filePath, width, height, channels)) {
+            texture.textureWidth = width.get(0);
+            texture.textureHeight = height.get(0);
+        }
+
+        texture.createPlaceholder();
+        return texture;
+    }
+
+    /**
+     * Generates the GL texture and fills it with the placeholder pixel. Leaves it bound to GL_TEXTURE_2D.
+     */
+    void createPlaceholder() {
+        textureID = glGenTextures();
+        glBindTexture(GL_TEXTURE_2D, textureID);
+
+        setTextureParameters();
+        ByteBuffer placeholder = BufferUtils.createByteBuffer(PLACEHOLDER_PIXEL.length);
+        placeholder.put(PLACEHOLDER_PIXEL).flip();
+        glTexImage2D(GL_TEXTURE_2D, 0, GL_RGBA, 1, 1, 0, GL_RGBA, GL_UNSIGNED_BYTE, placeholder);
+        bIsLoaded = false;
     }
 
     /**
      * Initializes the texture, generating and binding it for use.
      */
     private void init() {
+        bIsReloadable = true;
+
         // Generate and bind the texture
         textureID = glGenTextures();
         glBindTexture(GL_TEXTURE_2D, textureID);
 
+        setTextureParameters();
+        loadTextureFromFile();
+    }
+
+    /**
+     * Sets the filtering and wrapping of the bound texture.
+     */
+    private void setTextureParameters() {
         // Texture parameters (filtering/wrapping)
         glTexParameteri(GL_TEXTURE_2D, GL_TEXTURE_WRAP_S, GL_REPEAT); // wrap in the x direction
         glTexParameteri(GL_TEXTURE_2D, GL_TEXTURE_WRAP_T, GL_REPEAT); // wrap in the y direction
         glTexParameteri(GL_TEXTURE_2D, GL_TEXTURE_MIN_FILTER, GL_NEAREST); // when minifying
         glTexParameteri(GL_TEXTURE_2D, GL_TEXTURE_MAG_FILTER, GL_NEAREST); // when magnifying
+    }
 
-        loadTextureFromFile();
+    /**
+     * Replaces the pixels of the texture with a decoded image. Must run on the GL thread.
+     *
+     * @param image    The decoded pixels.
+     * @param width    The width of the image.
+     * @param height   The height of the image.
+     * @param channels The number of channels of the image, 3 or 4.
+     */
+    void uploadImage(ByteBuffer image, int width, int height, int channels) {
+        if (bIsReloadable) {
+            TextureResidency.onDeleted(this);
+        }
+        textureWidth = width;
+        textureHeight = height;
+
+        glBindTexture(GL_TEXTURE_2D, textureID);
+        // Rows of 3 channel images are not always 4 byte aligned
+        glPixelStorei(GL_UNPACK_ALIGNMENT, 1);
+        // Check the number of channels and define the texture accordingly
+        if (channels == 3) {
+            glTexImage2D(GL_TEXTURE_2D, 0, GL_RGB, width, height, 0, GL_RGB, GL_UNSIGNED_BYTE, image);
+        } else if (channels == 4) {
+            glTexImage2D(GL_TEXTURE_2D, 0, GL_RGBA, width, height, 0, GL_RGBA, GL_UNSIGNED_BYTE, image);
+        } else {
+            assert false : "Error: Texture has " + channels + " channels";
+        }
+        glPixelStorei(GL_UNPACK_ALIGNMENT, 4);
+        bIsLoaded = true;
+
+        if (bIsReloadable) {
+            TextureResidency.onUploaded(this);
+        }
+    }
+
+    /**
+     * Starts replacing the pixels of the texture with a decoded image that is uploaded in strips of rows,
+     * see {@link TextureLoader}. The strips go into a new GL texture, so the current pixels (usually the
+     * placeholder) stay visible until {@link #finishStripUpload} swaps it in. Must run on the GL thread.
+     *
+     * @param channels The number of channels of the image, 3 or 4.
+     */
+    void beginStripUpload(int width, int height, int channels) {
+        assert channels == 3 || channels == 4 : "Error: Texture has " + channels + " channels";
+        int format = channels == 3 ? GL_RGB : GL_RGBA;
+
+        stripTextureID = glGenTextures();
+        glBindTexture(GL_TEXTURE_2D, stripTextureID);
+        setTextureParameters();
+        // Only allocates the storage, the rows are filled in by uploadStrip()
+        glTexImage2D(GL_TEXTURE_2D, 0, format, width, height, 0, format, GL_UNSIGNED_BYTE, 0);
+        glBindTexture(GL_TEXTURE_2D, 0);
+    }
+
+    /**
+     * Uploads rows of the image started by {@link #beginStripUpload}. Must run on the GL thread.
+     *
+     * @param image    The whole decoded image.
+     * @param firstRow The first row to upload.
+     * @param numRows  The number of rows to upload.
+     */
+    void uploadStrip(ByteBuffer image, int width, int channels, int firstRow, int numRows) {
+        int format = channels == 3 ? GL_RGB : GL_RGBA;
+        int rowSizeInBytes = width * channels;
+
+        glBindTexture(GL_TEXTURE_2D, stripTextureID);
+        // Rows of 3 channel images are not always 4 byte aligned
+        glPixelStorei(GL_UNPACK_ALIGNMENT, 1);
+        glTexSubImage2D(GL_TEXTURE_2D, 0, 0, firstRow, width, numRows, format, GL_UNSIGNED_BYTE,
+                image.slice(firstRow * rowSizeInBytes, numRows * rowSizeInBytes));
+        glPixelStorei(GL_UNPACK_ALIGNMENT, 4);
+        glBindTexture(GL_TEXTURE_2D, 0);
+    }
+
+    /**
+     * Replaces the texture's pixels with the fully uploaded strips. Must run on the GL thread.
+     */
+    void finishStripUpload(int width, int height) {
+        if (bIsReloadable) {
+            TextureResidency.onDeleted(this);
+        }
+        glDeleteTextures(textureID);
+        textureID = stripTextureID;
+        stripTextureID = 0;
+        textureWidth = width;
+        textureHeight = height;
+        bIsLoaded = true;
+
+        if (bIsReloadable) {
+            TextureResidency.onUploaded(this);
+        }
+    }
+
+    /**
+     * Checks if an image started by {@link #beginStripUpload} is still being uploaded. Deleting the
+     * texture cancels the upload.
+     */
+    boolean isUploadingStrips() {
+        return stripTextureID != 0;
+    }
+
+    /**
+     * Deletes the texture from the GPU. The texture must not be bound or drawn afterwards.
+     */
+    public void delete() {
+        releaseGLTexture();
+        bIsEvicted.set(false);
+        if (bIsReloadable) {
+            getFileUsage().releaseOwner(this);
+        }
+    }
+
+    /**
+     * Marks the texture as evicted, see {@link TextureResidency}. Its pixels stay on the GPU until
+     * {@link #deleteEvictedPixels()} runs, and using the texture before then cancels the eviction.
+     * Using it afterwards reloads it from its file.
+     */
+    void markEvicted() {
+        bIsEvicted.set(true);
+    }
+
+    boolean isMarkedEvicted() {
+        return bIsEvicted.get();
+    }
+
+    /**
+     * Deletes the pixels from the GPU but keeps the texture usable, unless it was used since it was
+     * marked evicted. Must run on the GL thread.
+     */
+    void deleteEvictedPixels() {
+        if (bIsEvicted.get()) {
+            releaseGLTexture();
+        }
+    }
+
+    /**
+     * Checks if the texture has a GL texture, which evicted textures lose until they are reloaded.
+     */
+    boolean hasGLTexture() {
+        return textureID != 0;
+    }
+
+    private void releaseGLTexture() {
+        TextureResidency.onDeleted(this);
+        glDeleteTextures(textureID);
+        textureID = 0;
+        if (stripTextureID != 0) {
+            glDeleteTextures(stripTextureID);
+            stripTextureID = 0;
+        }
+        bIsLoaded = false;
+    }
+
+    /**
+     * Records that the file of the texture was used this frame, and has the texture holding its pixels
+     * reloaded if it was evicted. May be called from any thread.
+     */
+    private void markUsed() {
+        TextureResidency.FileUsage usage = getFileUsage();
+        usage.lastUsedFrame = TextureResidency.getCurrentFrame();
+
+        // Only the thread that clears the flag requests the reload, so no use of the texture is lost
+        Texture pixels = getPixelSource(usage);
+        if (pixels.bIsEvicted.compareAndSet(true, false)) {
+            TextureResidency.requestReload(pixels);
+        }
+    }
+
+    /**
+     * Gets the usage of the texture's file. Textures without a file, such as atlas pages and framebuffer
+     * attachments, keep a usage of their own.
+     */
+    TextureResidency.FileUsage getFileUsage() {
+        TextureResidency.FileUsage usage = fileUsage;
+        if (usage == null) {
+            usage = filePath != null ? TextureResidency.getFileUsage(filePath) : new TextureResidency.FileUsage();
+            fileUsage = usage;
+        }
+        return usage;
+    }
+
+    /**
+     * Gets the texture whose GL texture is drawn for this one. Gson builds a copy of the texture for every
+     * sprite read from a level file, and the copies draw the pixels of the texture loaded from the file,
+     * which get a new GL ID whenever they are evicted and reloaded.
+     */
+    private Texture getPixelSource(TextureResidency.FileUsage usage) {
+        if (bIsReloadable) {
+            return this;
+        }
+        Texture owner = usage.owner;
+        return owner != null ? owner : this;
+    }
+
+    /**
+     * Counts a sprite that a batch draws with this texture. Called by the batches. Sprites of a texture
+     * packed into the atlas draw the atlas page, so they do not bring back the texture's own pixels.
+     */
+    void retainForSprite() {
+        if (getFileUsage().numLiveSprites++ == 0 && getAtlasRegion() == null) {
+            markUsed();
+        }
+    }
+
+    /**
+     * Stops counting a sprite that a batch no longer draws with this texture. Called by the batches.
+     */
+    void releaseForSprite() {
+        if (--getFileUsage().numLiveSprites == 0 && getAtlasRegion() == null) {
+            markUsed();
+        }
+    }
+
+    int getNumLiveSprites() {
+        return getFileUsage().numLiveSprites;
+    }
+
+    int getLastUsedFrame() {
+        return getFileUsage().lastUsedFrame;
+    }
+
+    /**
+     * Gets the GPU memory held by the pixels of the texture, assuming drivers store RGB as RGBA.
+     */
+    long getSizeInBytes() {
+        return (long) textureWidth * textureHeight * 4;
     }
 
     /**
@@ -85,17 +413,7 @@ public class Texture {
 
         // Check if the image was loaded successfully
         if (image != null) {
-            textureWidth = width.get(0);
-            textureHeight = height.get(0);
-
-            // Check the number of channels and define the texture accordingly
-            if (channels.get(0) == 3) {
-                glTexImage2D(GL_TEXTURE_2D, 0, GL_RGB, textureWidth, textureHeight, 0, GL_RGB, GL_UNSIGNED_BYTE, image);
-            } else if (channels.get(0) == 4) {
-                glTexImage2D(GL_TEXTURE_2D, 0, GL_RGBA, textureWidth, textureHeight, 0, GL_RGBA, GL_UNSIGNED_BYTE, image);
-            } else {
-                assert false : "Error: Texture has " + channels.get(0) + " channels";
-            }
+            uploadImage(image, width.get(0), height.get(0), channels.get(0));
             // Free the image data after texture creation
             stbi_image_free(image);
         } else {
@@ -110,7 +428,7 @@ public class Texture {
      * Binds the texture for use.
      */
     public void bind() {
-        glBindTexture(GL_TEXTURE_2D, textureID);
+        glBindTexture(GL_TEXTURE_2D, getPixelSource(getFileUsage()).textureID);
     }
 
     /**
@@ -121,12 +439,57 @@ public class Texture {
     }
 
     /**
-     * Gets the ID of the texture.
+     * Gets the region of the texture atlas holding this texture.
+     *
+     * @return The atlas region, or null if the texture is not part of the atlas.
+     */
+    public AtlasRegion getAtlasRegion() {
+        TextureAtlas atlas = ResourceUtils.getTextureAtlas();
+        if (atlas == null) {
+            return null;
+        }
+        if (atlasVersion != atlas.getVersion()) {
+            AtlasRegion region = atlas.findRegion(filePath);
+            atlasRegion = region;
+            atlasVersion = atlas.getVersion();
+            return region;
+        }
+        return atlasRegion;
+    }
+
+    /**
+     * Gets the texture that is bound when drawing this texture: the atlas page holding it, or itself.
+     *
+     * @return The texture to bind.
+     */
+    public Texture getRenderTexture() {
+        AtlasRegion region = getAtlasRegion();
+        return region != null ? region.getPage() : this;
+    }
+
+    /**
+     * Checks if the pixels of the texture have been uploaded. Only asynchronously loaded textures
+     * are ever not loaded, see {@link TextureLoader}.
+     */
+    public boolean isLoaded() {
+        return bIsLoaded;
+    }
+
+    /**
+     * Gets the ID of the texture. Counts as a use of the texture, see {@link TextureResidency}.
      *
      * @return The texture ID.
      */
     public int getTextureID() {
-        return textureID;
+        markUsed();
+        return getPixelSource(getFileUsage()).textureID;
+    }
+
+    /**
+     * Gets the ID of the texture without counting as a use, for bookkeeping such as sorting.
+     */
+    int peekTextureID() {
+        return getPixelSource(getFileUsage()).textureID;
     }
 
     /**
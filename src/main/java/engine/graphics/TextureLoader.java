@@ -0,0 +1,176 @@
+/*
+ Title: TextureLoader
+ Date: 2024-07-15
+ Author: Kyle St John
+ */
+package engine.graphics;
+
+import engine.debugging.info.Logger;
+import org.lwjgl.BufferUtils;
+
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static engine.utils.engine.EConstants.TEXTURE_DECODE_THREADS;
+import static engine.utils.engine.EConstants.TEXTURE_UPLOAD_BUDGET_BYTES;
+import static engine.utils.engine.EConstants.TEXTURE_UPLOAD_QUEUE_SIZE;
+import static org.lwjgl.opengl.GL11.GL_TEXTURE_2D;
+import static org.lwjgl.opengl.GL11.glBindTexture;
+import static org.lwjgl.stb.STBImage.stbi_failure_reason;
+import static org.lwjgl.stb.STBImage.stbi_image_free;
+import static org.lwjgl.stb.STBImage.stbi_load;
+import static org.lwjgl.stb.STBImage.stbi_set_flip_vertically_on_load;
+
+/**
+ * Loads textures without blocking the GL thread. Image files are decoded by a pool of worker threads
+ * and the decoded pixels are queued for the GL thread, which uploads a limited number of bytes per
+ * frame in {@link #processUploads()}. Images larger than what is left of a frame's budget are uploaded
+ * in strips of rows over several frames. Until all of its pixels arrive a texture shows a placeholder.
+ */
+public class TextureLoader {
+
+    private static final ExecutorService DECODERS = Executors.newFixedThreadPool(TEXTURE_DECODE_THREADS, runnable -> {
+        Thread thread = new Thread(runnable, "TextureDecoder");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private static final BlockingQueue<DecodedImage> DECODED_IMAGES = new ArrayBlockingQueue<>(TEXTURE_UPLOAD_QUEUE_SIZE);
+
+    // Textures still decoding or waiting to be uploaded
+    private static final AtomicInteger NUM_PENDING = new AtomicInteger();
+
+    // Image being uploaded strip by strip, and the first of its rows still to upload. Only touched on the GL thread
+    private static DecodedImage Current_Upload = null;
+    private static int Next_Row = 0;
+
+    /**
+     * Creates a texture and starts decoding its file in the background. Must run on the GL thread.
+     *
+     * @param filePath The file path of the texture.
+     * @return The texture. Its size is known right away, its pixels are uploaded by a later frame.
+     */
+    public static Texture load(String filePath) {
+        Texture texture = Texture.createPending(filePath);
+
+        // The flag is global to stb, so it is set before the decoder can read it
+        stbi_set_flip_vertically_on_load(true);
+        NUM_PENDING.incrementAndGet();
+        DECODERS.execute(() -> decode(texture));
+        return texture;
+    }
+
+    /**
+     * Starts reloading the pixels of an evicted texture, showing the placeholder until they arrive.
+     * Must run on the GL thread.
+     *
+     * @param texture A texture loaded from a file.
+     */
+    static void reload(Texture texture) {
+        texture.createPlaceholder();
+        glBindTexture(GL_TEXTURE_2D, 0);
+
+        stbi_set_flip_vertically_on_load(true);
+        NUM_PENDING.incrementAndGet();
+        DECODERS.execute(() -> decode(texture));
+    }
+
+    /**
+     * Uploads rows of decoded images until the frame's upload budget is spent. Must run on the GL thread
+     * once per frame, and never at the same time as a frame is prepared, since finished textures swap
+     * their ID and size.
+     */
+    public static void processUploads() {
+        long budgetLeft = TEXTURE_UPLOAD_BUDGET_BYTES;
+        while (budgetLeft > 0) {
+            if (Current_Upload == null) {
+                Current_Upload = DECODED_IMAGES.poll();
+                if (Current_Upload == null) {
+                    return;
+                }
+                Current_Upload.texture.beginStripUpload(Current_Upload.width, Current_Upload.height, Current_Upload.channels);
+                Next_Row = 0;
+            }
+
+            DecodedImage image = Current_Upload;
+            if (!image.texture.isUploadingStrips()) {
+                // The texture was deleted while its strips were uploading
+                finishUpload(image);
+                continue;
+            }
+
+            // Count the rows that fit the budget before uploading. A frame uploads at least one row, so
+            // images wider than the whole budget still make progress
+            long rowSizeInBytes = (long) image.width * image.channels;
+            int numRows = (int) Math.min(image.height - Next_Row, Math.max(1, budgetLeft / rowSizeInBytes));
+            image.texture.uploadStrip(image.pixels, image.width, image.channels, Next_Row, numRows);
+            Next_Row += numRows;
+            budgetLeft -= numRows * rowSizeInBytes;
+
+            if (Next_Row == image.height) {
+                image.texture.finishStripUpload(image.width, image.height);
+                finishUpload(image);
+            }
+        }
+    }
+
+    private static void finishUpload(DecodedImage image) {
+        stbi_image_free(image.pixels);
+        NUM_PENDING.decrementAndGet();
+        Current_Upload = null;
+    }
+
+    /**
+     * Gets the number of textures that still show their placeholder because they are decoding or
+     * waiting to be uploaded.
+     */
+    public static int getNumPending() {
+        return NUM_PENDING.get();
+    }
+
+    private static void decode(Texture texture) {
+        IntBuffer width = BufferUtils.createIntBuffer(1);
+        IntBuffer height = BufferUtils.createIntBuffer(1);
+        IntBuffer channels = BufferUtils.createIntBuffer(1);
+        ByteBuffer pixels = stbi_load(texture.getFilePath(), width, height, channels, 0);
+        if (pixels == null) {
+            Logger.error("Could not load texture with path: '" + texture.getFilePath() + "': " + stbi_failure_reason());
+            NUM_PENDING.decrementAndGet();
+            return;
+        }
+
+        try {
+            // Blocks while the GL thread is behind, so decoded images never pile up
+            DECODED_IMAGES.put(new DecodedImage(texture, pixels, width.get(0), height.get(0), channels.get(0)));
+        } catch (InterruptedException e) {
+            stbi_image_free(pixels);
+            NUM_PENDING.decrementAndGet();
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Decoded image waiting to be uploaded into its texture.
+     */
+    private static class DecodedImage {
+        private final Texture texture;
+        private final ByteBuffer pixels;
+        private final int width;
+        private final int height;
+        private final int channels;
+
+        private DecodedImage(Texture texture, ByteBuffer pixels, int width, int height, int channels) {
+            this.texture = texture;
+            this.pixels = pixels;
+            this.width = width;
+            this.height = height;
+            this.channels = channels;
+        }
+    }
+}
+/*End of TextureLoader class*/
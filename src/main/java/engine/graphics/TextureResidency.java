@@ -0,0 +1,212 @@
+/*
+ Title: TextureResidency
+ Date: 2024-07-18
+ Author: Kyle St John
+ */
+package engine.graphics;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static engine.utils.engine.EConstants.TEXTURE_EVICTION_IDLE_FRAMES;
+import static engine.utils.engine.EConstants.TEXTURE_MEMORY_BUDGET_BYTES;
+
+/**
+ * Keeps the GPU memory used by file textures under a budget. Every texture loaded from a file reports
+ * its size here once its pixels are uploaded. When the total exceeds the budget, the least recently used
+ * textures that no sprite in a batch draws are deleted from the GPU. An evicted texture keeps its file
+ * path and size, and is reloaded through the {@link TextureLoader} as soon as a sprite or the UI uses it again.
+ * <p>
+ * Live sprites and last use are counted per file rather than per texture, since every texture read from a
+ * level file is a separate copy of the one loaded from the file. Textures packed into the texture atlas are
+ * drawn from the atlas page, so their own pixels are released once nothing has used them for a while.
+ * <p>
+ * Which textures to evict is decided by {@link #selectEvictions()} on the simulation thread, the thread
+ * that counts the live sprites, and the pixels are deleted by the next {@link #processFrame()} on the GL
+ * thread. A texture used again in between is not deleted.
+ */
+public class TextureResidency {
+
+    // Textures whose pixels are on the GPU. Only touched while no frame is prepared or synced concurrently
+    private static final List<Texture> RESIDENT_TEXTURES = new ArrayList<>();
+    private static final List<Texture> EVICTION_CANDIDATES = new ArrayList<>();
+    // Textures chosen by selectEvictions(), deleted by the next processFrame()
+    private static final List<Texture> PENDING_EVICTIONS = new ArrayList<>();
+    // Resident textures that are also packed into the texture atlas
+    private static final List<Texture> PACKED_TEXTURES = new ArrayList<>();
+
+    // Usage of every file a texture was loaded from or read with, keyed by absolute file path
+    private static final Map<String, FileUsage> FILE_USAGES = new ConcurrentHashMap<>();
+
+    // Evicted textures used again since the last frame, reloaded on the GL thread
+    private static final List<Texture> RELOAD_REQUESTS = new ArrayList<>();
+
+    private static long Memory_Budget = TEXTURE_MEMORY_BUDGET_BYTES;
+    private static long Resident_Bytes = 0;
+    private static volatile int Current_Frame = 0;
+
+    /**
+     * Chooses the textures to evict: packed textures nothing has used for a while, then the least recently
+     * used textures no sprite draws until the budget is met. Must run on the thread that ticks the level,
+     * before the frame is prepared and never at the same time as {@link #processFrame()}.
+     */
+    public static void selectEvictions() {
+        long residentBytes = Resident_Bytes;
+        for (Texture texture : PACKED_TEXTURES) {
+            if (!texture.isMarkedEvicted() && Current_Frame - texture.getLastUsedFrame() > TEXTURE_EVICTION_IDLE_FRAMES) {
+                residentBytes -= chooseForEviction(texture);
+            }
+        }
+        if (residentBytes <= Memory_Budget) {
+            return;
+        }
+
+        // Textures still drawn by a sprite, or used by the UI in the last frames, always stay resident
+        for (Texture texture : RESIDENT_TEXTURES) {
+            if (!texture.isMarkedEvicted() && texture.getNumLiveSprites() == 0
+                    && Current_Frame - texture.getLastUsedFrame() > TEXTURE_EVICTION_IDLE_FRAMES) {
+                EVICTION_CANDIDATES.add(texture);
+            }
+        }
+        EVICTION_CANDIDATES.sort(Comparator.comparingInt(Texture::getLastUsedFrame));
+
+        for (Texture texture : EVICTION_CANDIDATES) {
+            if (residentBytes <= Memory_Budget) {
+                break;
+            }
+            residentBytes -= chooseForEviction(texture);
+        }
+        EVICTION_CANDIDATES.clear();
+    }
+
+    private static long chooseForEviction(Texture texture) {
+        texture.markEvicted();
+        PENDING_EVICTIONS.add(texture);
+        return texture.getSizeInBytes();
+    }
+
+    /**
+     * Deletes the pixels of the textures chosen for eviction and reloads the textures used again. Must run
+     * on the GL thread once per frame, and never at the same time as a frame is prepared.
+     */
+    public static void processFrame() {
+        Current_Frame++;
+
+        for (Texture texture : PENDING_EVICTIONS) {
+            texture.deleteEvictedPixels();
+        }
+        PENDING_EVICTIONS.clear();
+
+        synchronized (RELOAD_REQUESTS) {
+            for (Texture texture : RELOAD_REQUESTS) {
+                // A texture used again before its pixels were deleted still has them
+                if (!texture.hasGLTexture()) {
+                    TextureLoader.reload(texture);
+                }
+            }
+            RELOAD_REQUESTS.clear();
+        }
+    }
+
+    /**
+     * Starts counting a texture whose pixels were just uploaded.
+     */
+    static void onUploaded(Texture texture) {
+        RESIDENT_TEXTURES.add(texture);
+        Resident_Bytes += texture.getSizeInBytes();
+        if (texture.getAtlasRegion() != null) {
+            PACKED_TEXTURES.add(texture);
+        }
+    }
+
+    /**
+     * Stops counting a texture that was deleted or evicted.
+     */
+    static void onDeleted(Texture texture) {
+        if (RESIDENT_TEXTURES.remove(texture)) {
+            Resident_Bytes -= texture.getSizeInBytes();
+            PACKED_TEXTURES.remove(texture);
+        }
+    }
+
+    /**
+     * Finds the resident textures packed into a newly built texture atlas, to be released once idle.
+     * Must run on the GL thread.
+     */
+    public static void onAtlasBuilt() {
+        PACKED_TEXTURES.clear();
+        for (Texture texture : RESIDENT_TEXTURES) {
+            if (texture.getAtlasRegion() != null) {
+                PACKED_TEXTURES.add(texture);
+            }
+        }
+    }
+
+    /**
+     * Queues an evicted texture to be reloaded by the next frame. May be called from any thread.
+     */
+    static void requestReload(Texture texture) {
+        synchronized (RELOAD_REQUESTS) {
+            if (!RELOAD_REQUESTS.contains(texture)) {
+                RELOAD_REQUESTS.add(texture);
+            }
+        }
+    }
+
+    /**
+     * Gets the usage shared by every texture of a file. May be called from any thread.
+     */
+    static FileUsage getFileUsage(String filePath) {
+        return FILE_USAGES.computeIfAbsent(new File(filePath).getAbsolutePath(), path -> new FileUsage());
+    }
+
+    static int getCurrentFrame() {
+        return Current_Frame;
+    }
+
+    public static long getResidentBytes() {
+        return Resident_Bytes;
+    }
+
+    public static long getMemoryBudget() {
+        return Memory_Budget;
+    }
+
+    /**
+     * Sets the number of bytes file textures may use on the GPU. Takes effect on the next frame.
+     */
+    public static void setMemoryBudget(long memoryBudget) {
+        Memory_Budget = memoryBudget;
+    }
+
+    /**
+     * Live sprites and last use of a file, shared by the texture loaded from it and every copy of that
+     * texture read from a level file.
+     */
+    static final class FileUsage {
+
+        // Sprites in batches drawing the file. Counted on the thread that ticks the level, which is also
+        // the thread that reads it in selectEvictions()
+        int numLiveSprites = 0;
+        volatile int lastUsedFrame = 0;
+        // First texture loaded from the file. Copies draw its pixels, see Texture#getTextureID()
+        volatile Texture owner;
+
+        synchronized void claimOwner(Texture texture) {
+            if (owner == null) {
+                owner = texture;
+            }
+        }
+
+        synchronized void releaseOwner(Texture texture) {
+            if (owner == texture) {
+                owner = null;
+            }
+        }
+    }
+}
+/*End of TextureResidency class*/
@@ -0,0 +1,389 @@
+/*
+ Title: TilemapRenderer
+ Date: 2024-07-29
+ Author: Kyle St John
+ */
+package engine.graphics;
+
+import engine.graphics.atlas.AtlasRegion;
+import engine.world.components.Tilemap;
+import org.joml.Vector2f;
+import org.lwjgl.system.MemoryUtil;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static engine.graphics.BatchRenderer.COLOR_OFFSET;
+import static engine.graphics.BatchRenderer.ENTITY_ID_OFFSET;
+import static engine.graphics.BatchRenderer.TEXTURE_ID_OFFSET;
+import static engine.graphics.BatchRenderer.UV_OFFSET;
+import static engine.graphics.BatchRenderer.VERTEX_SIZE_IN_BYTES;
+import static engine.utils.engine.EConstants.EMPTY_TILE;
+import static engine.utils.engine.EConstants.TILE_CHUNK_SIZE;
+import static org.lwjgl.opengl.GL15.*;
+import static org.lwjgl.opengl.GL20.glEnableVertexAttribArray;
+import static org.lwjgl.opengl.GL30.glBindVertexArray;
+import static org.lwjgl.opengl.GL30.glDeleteVertexArrays;
+import static org.lwjgl.opengl.GL30.glGenVertexArrays;
+
+/**
+ * Draws a {@link Tilemap} as one static mesh per chunk, in the packed vertex layout of {@link BatchRenderer}
+ * so the sprite and picking shaders draw it unchanged. A chunk's mesh is built the first time the chunk is
+ * in view and afterwards only when one of its tiles changes, and every visible chunk is a single draw.
+ * <p>
+ * Follows the renderer's phases: {@link #prepare} builds meshes without touching GL, {@link #sync} uploads
+ * them and {@link #draw} draws what the last sync captured.
+ */
+public class TilemapRenderer {
+
+    private static final int MAX_TILES_PER_CHUNK = TILE_CHUNK_SIZE * TILE_CHUNK_SIZE;
+
+    // Tilemaps use a single texture, bound to the first unit available to sprites
+    private static final int TEXTURE_UNIT = 1;
+
+    // Opaque white in any byte order
+    private static final int WHITE = 0xFFFFFFFF;
+
+    static {
+        // The indices of a chunk are unsigned shorts
+        assert 4 * MAX_TILES_PER_CHUNK <= 65536 : "Error: TILE_CHUNK_SIZE is too large for 16 bit indices";
+    }
+
+    private final Tilemap tilemap;
+
+    private final Map<Tilemap.Chunk, ChunkMesh> meshes = new IdentityHashMap<>();
+
+    // Meshes built by the last prepare, uploaded by the next sync
+    private final List<ChunkMesh> meshesToUpload = new ArrayList<>();
+
+    // Visible meshes captured when the frame was prepared, and what the last sync handed to the draw
+    private final List<ChunkMesh> meshesPrepared = new ArrayList<>();
+    private final List<ChunkMesh> meshesToDraw = new ArrayList<>();
+    private Texture texturePrepared;
+    private Texture textureToDraw;
+    private int zIndexPrepared;
+    private int zIndexToDraw;
+
+    // Layout revision and atlas region the meshes were built with. Either changing rebuilds every mesh
+    private int builtLayoutRevision = -1;
+    private AtlasRegion builtAtlasRegion = null;
+
+    // Sprite sheet texture counted as live while the tilemap is rendered, see TextureResidency
+    private final Texture retainedTexture;
+
+    // Indices shared by every chunk, created on the first sync
+    private int eboID = 0;
+
+    public TilemapRenderer(Tilemap tilemap) {
+        this.tilemap = tilemap;
+        this.retainedTexture = tilemap.getSpriteSheet() != null ? tilemap.getSpriteSheet().getTexture() : null;
+        if (retainedTexture != null) {
+            retainedTexture.retainForSprite();
+        }
+    }
+
+    /**
+     * Collects the chunks overlapping a view rectangle and builds the meshes of those that changed. Makes no GL calls.
+     *
+     * @return True if any chunk is in view.
+     */
+    public boolean prepare(float viewMinX, float viewMinY, float viewMaxX, float viewMaxY) {
+        meshesPrepared.clear();
+        SpriteSheet spriteSheet = tilemap.getSpriteSheet();
+        if (spriteSheet == null || tilemap.getTileWidth() <= 0 || tilemap.getTileHeight() <= 0) {
+            return false;
+        }
+
+        // Moving the tilemap or rebuilding the texture atlas invalidates every mesh
+        AtlasRegion atlasRegion = spriteSheet.getTexture().getAtlasRegion();
+        if (tilemap.getLayoutRevision() != builtLayoutRevision || atlasRegion != builtAtlasRegion) {
+            for (ChunkMesh mesh : meshes.values()) {
+                mesh.builtRevision = -1;
+            }
+            builtLayoutRevision = tilemap.getLayoutRevision();
+            builtAtlasRegion = atlasRegion;
+        }
+
+        Vector2f origin = tilemap.getTransform().getPosition();
+        float chunkWidth = TILE_CHUNK_SIZE * tilemap.getTileWidth();
+        float chunkHeight = TILE_CHUNK_SIZE * tilemap.getTileHeight();
+        int minChunkX = (int) Math.floor((viewMinX - origin.x) / chunkWidth);
+        int minChunkY = (int) Math.floor((viewMinY - origin.y) / chunkHeight);
+        int maxChunkX = (int) Math.floor((viewMaxX - origin.x) / chunkWidth);
+        int maxChunkY = (int) Math.floor((viewMaxY - origin.y) / chunkHeight);
+
+        // Look up the chunks in view, or test every chunk when zoomed out further than the map has chunks
+        long numChunksInView = (long) (maxChunkX - minChunkX + 1) * (maxChunkY - minChunkY + 1);
+        List<Tilemap.Chunk> chunks = tilemap.getChunks();
+        if (numChunksInView <= chunks.size()) {
+            for (int chunkY = minChunkY; chunkY <= maxChunkY; chunkY++) {
+                for (int chunkX = minChunkX; chunkX <= maxChunkX; chunkX++) {
+                    Tilemap.Chunk chunk = tilemap.getChunk(chunkX, chunkY);
+                    if (chunk != null) {
+                        prepareChunk(chunk, spriteSheet, atlasRegion, origin);
+                    }
+                }
+            }
+        } else {
+            for (Tilemap.Chunk chunk : chunks) {
+                if (chunk.getChunkX() >= minChunkX && chunk.getChunkX() <= maxChunkX
+                        && chunk.getChunkY() >= minChunkY && chunk.getChunkY() <= maxChunkY) {
+                    prepareChunk(chunk, spriteSheet, atlasRegion, origin);
+                }
+            }
+        }
+
+        texturePrepared = spriteSheet.getTexture().getRenderTexture();
+        zIndexPrepared = tilemap.getTransform().getzIndex();
+        return !meshesPrepared.isEmpty();
+    }
+
+    private void prepareChunk(Tilemap.Chunk chunk, SpriteSheet spriteSheet, AtlasRegion atlasRegion, Vector2f origin) {
+        ChunkMesh mesh = meshes.get(chunk);
+        if (mesh == null) {
+            mesh = new ChunkMesh(chunk);
+            meshes.put(chunk, mesh);
+        }
+        if (mesh.builtRevision != chunk.getRevision()) {
+            buildMesh(mesh, spriteSheet, atlasRegion, origin);
+        }
+        meshesPrepared.add(mesh);
+    }
+
+    /**
+     * Writes a quad for every tile of a chunk into off-heap staging memory, freed again once it is uploaded.
+     */
+    private void buildMesh(ChunkMesh mesh, SpriteSheet spriteSheet, AtlasRegion atlasRegion, Vector2f origin) {
+        Tilemap.Chunk chunk = mesh.chunk;
+        short[] tiles = chunk.getTiles();
+        int numSprites = spriteSheet.numOfSprites();
+
+        int numQuads = 0;
+        for (short tile : tiles) {
+            if (tile != EMPTY_TILE && tile < numSprites) {
+                numQuads++;
+            }
+        }
+
+        // A mesh built twice before a sync reuses its staging memory
+        if (mesh.staging != null) {
+            MemoryUtil.memFree(mesh.staging);
+            mesh.staging = null;
+        }
+        if (numQuads > 0) {
+            mesh.staging = MemoryUtil.memAlloc(numQuads * 4 * VERTEX_SIZE_IN_BYTES);
+        }
+
+        float tileWidth = tilemap.getTileWidth();
+        float tileHeight = tilemap.getTileHeight();
+        int entityID = tilemap.getOwningGameObject().getUID() + 1;
+        int firstTileX = chunk.getChunkX() * TILE_CHUNK_SIZE;
+        int firstTileY = chunk.getChunkY() * TILE_CHUNK_SIZE;
+
+        int offset = 0;
+        for (int i = 0; i < tiles.length; i++) {
+            short tile = tiles[i];
+            if (tile == EMPTY_TILE || tile >= numSprites) {
+                continue;
+            }
+            float x0 = origin.x + (firstTileX + i % TILE_CHUNK_SIZE) * tileWidth;
+            float y0 = origin.y + (firstTileY + i / TILE_CHUNK_SIZE) * tileHeight;
+            float x1 = x0 + tileWidth;
+            float y1 = y0 + tileHeight;
+            Vector2f[] uvCoordinates = spriteSheet.getSprite(tile).getUvCoordinates();
+
+            // Same corner order as the sprites of a batch
+            for (int corner = 0; corner < 4; corner++) {
+                mesh.staging.putFloat(offset, (corner == 0 || corner == 1) ? x0 : x1);
+                mesh.staging.putFloat(offset + 4, (corner == 0 || corner == 3) ? y0 : y1);
+
+                float u = uvCoordinates[corner].x;
+                float v = uvCoordinates[corner].y;
+                if (atlasRegion != null) {
+                    u = atlasRegion.mapU(u);
+                    v = atlasRegion.mapV(v);
+                }
+                mesh.staging.putShort(offset + UV_OFFSET, BatchRenderer.toUnorm16(u));
+                mesh.staging.putShort(offset + UV_OFFSET + 2, BatchRenderer.toUnorm16(v));
+                mesh.staging.putInt(offset + COLOR_OFFSET, WHITE);
+                mesh.staging.putInt(offset + TEXTURE_ID_OFFSET, TEXTURE_UNIT);
+                mesh.staging.putInt(offset + ENTITY_ID_OFFSET, entityID);
+                offset += VERTEX_SIZE_IN_BYTES;
+            }
+        }
+
+        mesh.numQuadsBuilt = numQuads;
+        mesh.builtRevision = chunk.getRevision();
+        if (!mesh.bIsPendingUpload) {
+            mesh.bIsPendingUpload = true;
+            meshesToUpload.add(mesh);
+        }
+    }
+
+    /**
+     * Uploads the meshes built by the last prepare and hands the visible chunks to the next draw. Must run
+     * on the GL thread, and must not overlap with preparing a frame.
+     */
+    public void sync() {
+        if (eboID == 0) {
+            createIndices();
+        }
+
+        for (ChunkMesh mesh : meshesToUpload) {
+            mesh.upload(eboID);
+        }
+        meshesToUpload.clear();
+
+        meshesToDraw.clear();
+        meshesToDraw.addAll(meshesPrepared);
+        textureToDraw = texturePrepared;
+        zIndexToDraw = zIndexPrepared;
+    }
+
+    /**
+     * Draws the chunks captured by the last sync. The renderer binds the shader and texture slot uniform.
+     * Leaves another texture bound to unit 1, so the next batch has to rebind its textures.
+     */
+    public void draw() {
+        if (meshesToDraw.isEmpty()) {
+            return;
+        }
+        glActiveTexture(GL_TEXTURE0 + TEXTURE_UNIT);
+        textureToDraw.bind();
+
+        for (ChunkMesh mesh : meshesToDraw) {
+            if (mesh.numQuadsToDraw > 0) {
+                glBindVertexArray(mesh.vaoID);
+                glDrawElements(GL_TRIANGLES, mesh.numQuadsToDraw * 6, GL_UNSIGNED_SHORT, 0);
+            }
+        }
+        glBindVertexArray(0);
+    }
+
+    private void createIndices() {
+        short[] indices = new short[6 * MAX_TILES_PER_CHUNK];
+        for (int i = 0; i < MAX_TILES_PER_CHUNK; i++) {
+            int vertex = 4 * i;
+            // Same winding as the sprites of a batch: 3, 2, 0, 0, 2, 1
+            indices[6 * i] = (short) (vertex + 3);
+            indices[6 * i + 1] = (short) (vertex + 2);
+            indices[6 * i + 2] = (short) vertex;
+            indices[6 * i + 3] = (short) vertex;
+            indices[6 * i + 4] = (short) (vertex + 2);
+            indices[6 * i + 5] = (short) (vertex + 1);
+        }
+        eboID = glGenBuffers();
+        glBindBuffer(GL_ELEMENT_ARRAY_BUFFER, eboID);
+        glBufferData(GL_ELEMENT_ARRAY_BUFFER, indices, GL_STATIC_DRAW);
+        glBindBuffer(GL_ELEMENT_ARRAY_BUFFER, 0);
+    }
+
+    /**
+     * Deletes the GL objects of every chunk mesh. The renderer must not be drawn after this call.
+     */
+    public void destroy() {
+        for (ChunkMesh mesh : meshes.values()) {
+            mesh.destroy();
+        }
+        meshes.clear();
+        meshesToUpload.clear();
+        meshesPrepared.clear();
+        meshesToDraw.clear();
+        if (eboID != 0) {
+            glDeleteBuffers(eboID);
+            eboID = 0;
+        }
+        if (retainedTexture != null) {
+            retainedTexture.releaseForSprite();
+        }
+    }
+
+    public Tilemap getTilemap() {
+        return tilemap;
+    }
+
+    /**
+     * Checks if a point lies within a chunk of the tilemap that holds tiles, as a cheap test before
+     * looking up the tile itself.
+     */
+    public boolean hasChunkAt(float x, float y) {
+        if (tilemap.getSpriteSheet() == null || tilemap.getTileWidth() <= 0 || tilemap.getTileHeight() <= 0) {
+            return false;
+        }
+        Vector2f origin = tilemap.getTransform().getPosition();
+        int chunkX = (int) Math.floor((x - origin.x) / (TILE_CHUNK_SIZE * tilemap.getTileWidth()));
+        int chunkY = (int) Math.floor((y - origin.y) / (TILE_CHUNK_SIZE * tilemap.getTileHeight()));
+        return tilemap.getChunk(chunkX, chunkY) != null;
+    }
+
+    /**
+     * Gets the z-index captured by the last sync.
+     */
+    public int getZIndexToDraw() {
+        return zIndexToDraw;
+    }
+
+
+    /**
+     * The static mesh of a single chunk.
+     */
+    private static class ChunkMesh {
+        private final Tilemap.Chunk chunk;
+
+        // Chunk revision the mesh was last built from, -1 to rebuild it the next time it is in view
+        private int builtRevision = -1;
+
+        // Built by prepare, only touched by the GL thread during a sync
+        private ByteBuffer staging = null;
+        private int numQuadsBuilt = 0;
+        private boolean bIsPendingUpload = false;
+
+        // Only touched on the GL thread
+        private int vaoID = 0;
+        private int vboID = 0;
+        private int numQuadsToDraw = 0;
+
+        private ChunkMesh(Tilemap.Chunk chunk) {
+            this.chunk = chunk;
+        }
+
+        private void upload(int eboID) {
+            if (vaoID == 0) {
+                vaoID = glGenVertexArrays();
+                glBindVertexArray(vaoID);
+                vboID = glGenBuffers();
+                glBindBuffer(GL_ARRAY_BUFFER, vboID);
+                glBindBuffer(GL_ELEMENT_ARRAY_BUFFER, eboID);
+                BatchRenderer.setPackedVertexPointers(0);
+                for (int i = 0; i < 5; i++) {
+                    glEnableVertexAttribArray(i);
+                }
+                glBindVertexArray(0);
+            }
+
+            glBindBuffer(GL_ARRAY_BUFFER, vboID);
+            if (staging != null) {
+                glBufferData(GL_ARRAY_BUFFER, staging, GL_STATIC_DRAW);
+                MemoryUtil.memFree(staging);
+                staging = null;
+            }
+            numQuadsToDraw = numQuadsBuilt;
+            bIsPendingUpload = false;
+        }
+
+        private void destroy() {
+            if (staging != null) {
+                MemoryUtil.memFree(staging);
+                staging = null;
+            }
+            if (vaoID != 0) {
+                glDeleteBuffers(vboID);
+                glDeleteVertexArrays(vaoID);
+            }
+        }
+    }
+}
+/*End of TilemapRenderer class*/
@@ -0,0 +1,59 @@
+/*
+ Title: AtlasRegion
+ Date: 2024-06-05
+ Author: Kyle St John
+ */
+package engine.graphics.atlas;
+
+import engine.graphics.Texture;
+
+/**
+ * The area of an atlas page that holds one source texture. Maps the source texture's UV coordinates
+ * to UV coordinates on the page.
+ */
+public class AtlasRegion {
+
+    private final Texture page;
+    private final float uOffset;
+    private final float vOffset;
+    private final float uScale;
+    private final float vScale;
+
+    /**
+     * Constructs a region from a pixel rectangle on a page.
+     *
+     * @param page       The atlas page texture, may be null when only the mapping is needed.
+     * @param x          The left edge of the region in pixels.
+     * @param y          The bottom edge of the region in pixels.
+     * @param width      The width of the source texture.
+     * @param height     The height of the source texture.
+     * @param pageWidth  The width of the page.
+     * @param pageHeight The height of the page.
+     */
+    public AtlasRegion(Texture page, int x, int y, int width, int height, int pageWidth, int pageHeight) {
+        this.page = page;
+        this.uOffset = (float) x / pageWidth;
+        this.vOffset = (float) y / pageHeight;
+        this.uScale = (float) width / pageWidth;
+        this.vScale = (float) height / pageHeight;
+    }
+
+    /**
+     * Maps a horizontal texture coordinate of the source texture onto the page.
+     */
+    public float mapU(float u) {
+        return uOffset + u * uScale;
+    }
+
+    /**
+     * Maps a vertical texture coordinate of the source texture onto the page.
+     */
+    public float mapV(float v) {
+        return vOffset + v * vScale;
+    }
+
+    public Texture getPage() {
+        return page;
+    }
+}
+/*End of AtlasRegion class*/
@@ -0,0 +1,167 @@
+/*
+ Title: SkylinePacker
+ Date: 2024-06-05
+ Author: Kyle St John
+ */
+package engine.graphics.atlas;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Packs rectangles into a fixed size page using the bottom-left skyline algorithm.
+ * The packer only deals with sizes and positions, so it has no dependency on OpenGL.
+ */
+public class SkylinePacker {
+
+    private final int pageWidth;
+    private final int pageHeight;
+    private final int padding;
+
+    // The skyline is a list of horizontal segments ordered by x, covering the full page width
+    private final List<Segment> skyline = new ArrayList<>();
+
+    /**
+     * Constructs a packer for an empty page.
+     *
+     * @param pageWidth  The width of the page in pixels.
+     * @param pageHeight The height of the page in pixels.
+     * @param padding    The number of empty pixels kept to the right of and above every rectangle.
+     */
+    public SkylinePacker(int pageWidth, int pageHeight, int padding) {
+        this.pageWidth = pageWidth;
+        this.pageHeight = pageHeight;
+        this.padding = padding;
+        skyline.add(new Segment(0, 0, pageWidth));
+    }
+
+    /**
+     * Finds room for a rectangle and reserves it.
+     *
+     * @param width    The width of the rectangle.
+     * @param height   The height of the rectangle.
+     * @param position Receives the bottom-left x and y of the placed rectangle.
+     * @return False if the rectangle does not fit in the remaining space.
+     */
+    public boolean pack(int width, int height, int[] position) {
+        int paddedWidth = width + padding;
+        int paddedHeight = height + padding;
+
+        int bestIndex = -1;
+        int bestTop = Integer.MAX_VALUE;
+        int bestSegmentWidth = Integer.MAX_VALUE;
+        int bestY = 0;
+
+        for (int i = 0; i < skyline.size(); i++) {
+            int y = fitAt(i, paddedWidth, paddedHeight);
+            if (y == -1) {
+                continue;
+            }
+            int top = y + paddedHeight;
+            Segment segment = skyline.get(i);
+            // Prefer the lowest resulting top edge, then the narrowest segment to reduce waste
+            if (top < bestTop || (top == bestTop && segment.width < bestSegmentWidth)) {
+                bestIndex = i;
+                bestTop = top;
+                bestSegmentWidth = segment.width;
+                bestY = y;
+            }
+        }
+
+        if (bestIndex == -1) {
+            return false;
+        }
+
+        int x = skyline.get(bestIndex).x;
+        addSkylineLevel(bestIndex, x, bestY + paddedHeight, paddedWidth);
+        position[0] = x;
+        position[1] = bestY;
+        return true;
+    }
+
+    /**
+     * Returns the y at which a rectangle would rest when its left edge is placed at a segment,
+     * or -1 if it would leave the page.
+     */
+    private int fitAt(int index, int width, int height) {
+        int x = skyline.get(index).x;
+        if (x + width > pageWidth) {
+            return -1;
+        }
+
+        int widthLeft = width;
+        int y = 0;
+        int i = index;
+        while (widthLeft > 0) {
+            Segment segment = skyline.get(i);
+            y = Math.max(y, segment.y);
+            if (y + height > pageHeight) {
+                return -1;
+            }
+            widthLeft -= segment.width;
+            i++;
+        }
+        return y;
+    }
+
+    private void addSkylineLevel(int index, int x, int y, int width) {
+        skyline.add(index, new Segment(x, y, width));
+
+        // Shrink or remove the segments now covered by the new one
+        for (int i = index + 1; i < skyline.size(); i++) {
+            Segment previous = skyline.get(i - 1);
+            Segment segment = skyline.get(i);
+            int previousEnd = previous.x + previous.width;
+            if (segment.x >= previousEnd) {
+                break;
+            }
+
+            int shrink = previousEnd - segment.x;
+            segment.x += shrink;
+            segment.width -= shrink;
+            if (segment.width > 0) {
+                break;
+            }
+            skyline.remove(i);
+            i--;
+        }
+
+        mergeSegments();
+    }
+
+    private void mergeSegments() {
+        for (int i = 0; i < skyline.size() - 1; i++) {
+            Segment segment = skyline.get(i);
+            Segment next = skyline.get(i + 1);
+            if (segment.y == next.y) {
+                segment.width += next.width;
+                skyline.remove(i + 1);
+                i--;
+            }
+        }
+    }
+
+    public int getPageWidth() {
+        return pageWidth;
+    }
+
+    public int getPageHeight() {
+        return pageHeight;
+    }
+
+    /**
+     * A horizontal span of the skyline.
+     */
+    private static class Segment {
+        private int x;
+        private final int y;
+        private int width;
+
+        private Segment(int x, int y, int width) {
+            this.x = x;
+            this.y = y;
+            this.width = width;
+        }
+    }
+}
+/*End of SkylinePacker class*/
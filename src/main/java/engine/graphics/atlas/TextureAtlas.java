@@ -0,0 +1,160 @@
+/*
+ Title: TextureAtlas
+ Date: 2024-06-05
+ Author: Kyle St John
+ */
+package engine.graphics.atlas;
+
+import engine.debugging.info.Logger;
+import engine.graphics.Texture;
+import engine.utils.engine.ResourceUtils;
+import org.lwjgl.BufferUtils;
+
+import java.io.File;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+
+import static engine.utils.engine.EConstants.ATLAS_PADDING;
+import static engine.utils.engine.EConstants.MAX_ATLAS_PAGE_SIZE;
+import static org.lwjgl.opengl.GL11.*;
+import static org.lwjgl.stb.STBImage.*;
+
+/**
+ * Packs sprite sheets and loose textures into a small number of large atlas pages, so sprites using
+ * different source textures can be drawn with the same texture bind. Sprites keep referencing their
+ * source texture; batches look up the region at packing time and remap the UV coordinates onto the page.
+ */
+public class TextureAtlas {
+
+    // Incremented for every built atlas so textures know when their cached region is stale
+    private static int Atlas_Version_Counter = 0;
+
+    private final int version;
+    private final List<Texture> pages = new ArrayList<>();
+    private final Map<String, AtlasRegion> regions = new HashMap<>();
+
+    private TextureAtlas() {
+        this.version = ++Atlas_Version_Counter;
+    }
+
+    /**
+     * Builds an atlas from image files. Files that cannot be loaded or are larger than a page keep
+     * rendering from their own texture.
+     *
+     * @param filePaths The paths of the images to pack.
+     * @return The built atlas.
+     */
+    public static TextureAtlas build(Collection<String> filePaths) {
+        TextureAtlas atlas = new TextureAtlas();
+        int pageSize = Math.min(MAX_ATLAS_PAGE_SIZE, glGetInteger(GL_MAX_TEXTURE_SIZE));
+
+        // Decode every image up front so they can be packed tallest first, which packs tighter
+        List<AtlasImage> images = new ArrayList<>();
+        for (String filePath : new LinkedHashSet<>(filePaths)) {
+            AtlasImage image = AtlasImage.load(filePath);
+            if (image == null) {
+                continue;
+            }
+            if (image.width + ATLAS_PADDING > pageSize || image.height + ATLAS_PADDING > pageSize) {
+                stbi_image_free(image.pixels);
+                continue;
+            }
+            images.add(image);
+        }
+        images.sort((a, b) -> Integer.compare(b.height, a.height));
+
+        List<SkylinePacker> packers = new ArrayList<>();
+        int[] position = new int[2];
+        for (AtlasImage image : images) {
+            int pageIndex = 0;
+            while (pageIndex < packers.size() && !packers.get(pageIndex).pack(image.width, image.height, position)) {
+                pageIndex++;
+            }
+            if (pageIndex == packers.size()) {
+                SkylinePacker packer = new SkylinePacker(pageSize, pageSize, ATLAS_PADDING);
+                packer.pack(image.width, image.height, position);
+                packers.add(packer);
+                atlas.pages.add(Texture.createBlank(pageSize, pageSize, "atlas_page_" + pageIndex));
+            }
+
+            Texture page = atlas.pages.get(pageIndex);
+            page.bind();
+            glPixelStorei(GL_UNPACK_ALIGNMENT, 1);
+            glTexSubImage2D(GL_TEXTURE_2D, 0, position[0], position[1], image.width, image.height,
+                    GL_RGBA, GL_UNSIGNED_BYTE, image.pixels);
+            page.unbind();
+            stbi_image_free(image.pixels);
+
+            atlas.regions.put(image.key, new AtlasRegion(page, position[0], position[1],
+                    image.width, image.height, pageSize, pageSize));
+        }
+        glPixelStorei(GL_UNPACK_ALIGNMENT, 4);
+
+        Logger.info("Packed " + atlas.regions.size() + " textures into " + atlas.pages.size() + " atlas page(s)");
+        return atlas;
+    }
+
+    /**
+     * Finds the region of a source texture.
+     *
+     * @param filePath The path of the source texture.
+     * @return The region, or null if the texture was not packed.
+     */
+    public AtlasRegion findRegion(String filePath) {
+        if (filePath == null) {
+            return null;
+        }
+        return regions.get(new File(filePath).getAbsolutePath());
+    }
+
+    public int getVersion() {
+        return version;
+    }
+
+    public List<Texture> getPages() {
+        return pages;
+    }
+
+    /**
+     * Decoded RGBA pixels of a source image.
+     */
+    private static class AtlasImage {
+        private final String key;
+        private final ByteBuffer pixels;
+        private final int width;
+        private final int height;
+
+        private AtlasImage(String key, ByteBuffer pixels, int width, int height) {
+            this.key = key;
+            this.pixels = pixels;
+            this.width = width;
+            this.height = height;
+        }
+
+        private static AtlasImage load(String filePath) {
+            if (filePath == null || !ResourceUtils.isValidFilePath(filePath)) {
+                return null;
+            }
+
+            IntBuffer width = BufferUtils.createIntBuffer(1);
+            IntBuffer height = BufferUtils.createIntBuffer(1);
+            IntBuffer channels = BufferUtils.createIntBuffer(1);
+
+            // Match the orientation used by Texture so the source UV coordinates stay valid
+            stbi_set_flip_vertically_on_load(true);
+            ByteBuffer pixels = stbi_load(filePath, width, height, channels, 4);
+            if (pixels == null) {
+                Logger.warning("Could not add '" + filePath + "' to the texture atlas: " + stbi_failure_reason());
+                return null;
+            }
+            return new AtlasImage(new File(filePath).getAbsolutePath(), pixels, width.get(0), height.get(0));
+        }
+    }
+}
+/*End of TextureAtlas class*/
@@ -9,6 +9,7 @@ import com.google.gson.Gson;
 import com.google.gson.GsonBuilder;
 import engine.debugging.info.Logger;
 import engine.world.components.Component;
+import engine.world.components.Tilemap;
 import engine.world.levels.Level;
 import engine.world.objects.GameObject;
 
@@ -27,6 +28,7 @@ public class LevelSerializer {
                 .setPrettyPrinting()
                 .registerTypeAdapter(Component.class, new ComponentAdapter())
                 .registerTypeAdapter(GameObject.class, new ObjectAdapter())
+                .registerTypeAdapter(Tilemap.Chunk.class, new TileChunkAdapter())
                 .create();
 
         try {
@@ -53,6 +55,7 @@ public class LevelSerializer {
                 .setPrettyPrinting()
                 .registerTypeAdapter(Component.class, new ComponentAdapter())
                 .registerTypeAdapter(GameObject.class, new ObjectAdapter())
+                .registerTypeAdapter(Tilemap.Chunk.class, new TileChunkAdapter())
                 .create();
 
         String inFile = "";
@@ -7,7 +7,9 @@ package engine.serialization;
 
 import com.google.gson.*;
 import engine.world.components.Component;
+import engine.world.components.ParticleEmitter;
 import engine.world.components.Sprite;
+import engine.world.components.Tilemap;
 import engine.world.objects.GameObject;
 
 import java.lang.reflect.Type;
@@ -26,7 +28,19 @@ public class ObjectAdapter implements JsonDeserializer<GameObject>  {
                 gameObject.addComponent(c);
             }
             gameObject.setName(name);
-            gameObject.setTransform(gameObject.getComponent(Sprite.class).getTransform());
+            if (jsonObject.has("isStatic")) {
+                gameObject.setStatic(jsonObject.get("isStatic").getAsBoolean());
+            }
+            // The transform is saved with the sprite, or with the tilemap or particle emitter of objects without one
+            Sprite sprite = gameObject.getComponent(Sprite.class);
+            Tilemap tilemap = gameObject.getComponent(Tilemap.class);
+            if (sprite != null) {
+                gameObject.setTransform(sprite.getTransform());
+            } else if (tilemap != null) {
+                gameObject.setTransform(tilemap.getTransform());
+            } else {
+                gameObject.setTransform(gameObject.getComponent(ParticleEmitter.class).getTransform());
+            }
             return gameObject;
         }
     }
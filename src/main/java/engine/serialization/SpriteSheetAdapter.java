@@ -7,7 +7,7 @@ package engine.serialization;
 
 import com.google.gson.*;
 import engine.graphics.SpriteSheet;
-import engine.graphics.Texture;
+import engine.graphics.TextureLoader;
 
 import java.lang.reflect.Type;
 
@@ -41,7 +41,7 @@ public class SpriteSheetAdapter implements JsonSerializer<SpriteSheet>, JsonDese
         String assetType = jsonObject.get("AssetType").getAsString();
         int spacing = jsonObject.get("SpriteSpacing").getAsInt();
 
-        return new SpriteSheet(new Texture(filePath),
+        return new SpriteSheet(TextureLoader.load(filePath),
                 spriteWidth,
                 spriteHeight,
                 spacing,
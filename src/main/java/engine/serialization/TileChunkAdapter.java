@@ -0,0 +1,47 @@
+/*
+ Title: TileChunkAdapter
+ Date: 2024-07-29
+ Author: Kyle St John
+ */
+package engine.serialization;
+
+import com.google.gson.*;
+import engine.world.components.Tilemap;
+
+import java.lang.reflect.Type;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Base64;
+
+/**
+ * Saves the tiles of a tilemap chunk as a single Base64 string of little endian shorts, instead of one
+ * pretty printed line per tile.
+ */
+public class TileChunkAdapter implements JsonSerializer<Tilemap.Chunk>, JsonDeserializer<Tilemap.Chunk> {
+
+    @Override
+    public JsonElement serialize(Tilemap.Chunk chunk, Type type, JsonSerializationContext context) {
+        short[] tiles = chunk.getTiles();
+        ByteBuffer bytes = ByteBuffer.allocate(tiles.length * Short.BYTES).order(ByteOrder.LITTLE_ENDIAN);
+        bytes.asShortBuffer().put(tiles);
+
+        JsonObject jsonObject = new JsonObject();
+        jsonObject.add("ChunkX", new JsonPrimitive(chunk.getChunkX()));
+        jsonObject.add("ChunkY", new JsonPrimitive(chunk.getChunkY()));
+        jsonObject.add("Tiles", new JsonPrimitive(Base64.getEncoder().encodeToString(bytes.array())));
+        return jsonObject;
+    }
+
+    @Override
+    public Tilemap.Chunk deserialize(JsonElement json, Type typeOfT, JsonDeserializationContext context) throws JsonParseException {
+        JsonObject jsonObject = json.getAsJsonObject();
+        int chunkX = jsonObject.get("ChunkX").getAsInt();
+        int chunkY = jsonObject.get("ChunkY").getAsInt();
+        byte[] bytes = Base64.getDecoder().decode(jsonObject.get("Tiles").getAsString());
+
+        short[] tiles = new short[bytes.length / Short.BYTES];
+        ByteBuffer.wrap(bytes).order(ByteOrder.LITTLE_ENDIAN).asShortBuffer().get(tiles);
+        return new Tilemap.Chunk(chunkX, chunkY, tiles);
+    }
+}
+/*End of TileChunkAdapter class*/
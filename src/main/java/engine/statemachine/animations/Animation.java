@@ -0,0 +1,90 @@
+/*
+ Title: Animation
+ Date: 2024-08-12
+ Author: Kyle St John
+ */
+package engine.statemachine.animations;
+
+import engine.debugging.info.Logger;
+import engine.graphics.Texture;
+import engine.world.components.Sprite;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * An animation being edited in the animation editor. Frames are kept as sprites so they can be previewed
+ * and reordered, and the finished animation is turned into a shared {@link AnimationClip} to be played.
+ */
+public class Animation {
+
+    private final List<Sprite> frames = new ArrayList<>();
+
+    // Milliseconds each frame is shown
+    private float frameDuration = 100.0f;
+    private boolean bIsLooping = true;
+
+    private int currentFrameIndex = 0;
+
+    public void addFrame(Sprite frame) {
+        frames.add(frame);
+    }
+
+    public void removeFrame(int frameIndex) {
+        frames.remove(frameIndex);
+        currentFrameIndex = Math.min(currentFrameIndex, Math.max(0, frames.size() - 1));
+    }
+
+    /**
+     * Builds a clip from the frames. Every frame must use the same texture.
+     *
+     * @return The clip, or null if the animation has no frames or mixes textures.
+     */
+    public AnimationClip toClip(String name) {
+        if (frames.isEmpty()) {
+            Logger.error("Animation '" + name + "' has no frames");
+            return null;
+        }
+
+        Texture texture = frames.get(0).getSpriteTexture();
+        float[] uvTable = new float[frames.size() * 8];
+        for (int frame = 0; frame < frames.size(); frame++) {
+            Sprite sprite = frames.get(frame);
+            if (sprite.getSpriteTexture() != texture) {
+                Logger.error("Animation '" + name + "' uses more than one texture");
+                return null;
+            }
+            AnimationClip.writeFrame(uvTable, frame, sprite.getUvCoordinates());
+        }
+        return new AnimationClip(name, texture, uvTable, Math.max(1.0f, frameDuration) / 1000.0f, bIsLooping);
+    }
+
+    public List<Sprite> getFrames() {
+        return frames;
+    }
+
+    public float getFrameDuration() {
+        return frameDuration;
+    }
+
+    public void setFrameDuration(float frameDuration) {
+        this.frameDuration = frameDuration;
+    }
+
+    public void shouldLoop(boolean bIsLooping) {
+        this.bIsLooping = bIsLooping;
+    }
+
+    public boolean isLooping() {
+        return bIsLooping;
+    }
+
+    public int getCurrentFrameIndex() {
+        return currentFrameIndex;
+    }
+
+    public void setCurrentFrameIndex(int currentFrameIndex) {
+        this.currentFrameIndex = Math.max(0, Math.min(currentFrameIndex, frames.size() - 1));
+    }
+}
+/*End of Animation class*/
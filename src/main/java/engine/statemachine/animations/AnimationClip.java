@@ -0,0 +1,126 @@
+/*
+ Title: AnimationClip
+ Date: 2024-08-12
+ Author: Kyle St John
+ */
+package engine.statemachine.animations;
+
+import engine.graphics.SpriteSheet;
+import engine.graphics.Texture;
+import org.joml.Vector2f;
+
+/**
+ * An immutable flipbook: a table of UV rectangles into a single texture, played at a fixed frame duration.
+ * Clips hold no playback state, so a single clip is shared by every sprite that plays it, see
+ * {@link engine.world.components.SpriteAnimator}.
+ * <p>
+ * The four corners of each frame are stored in the same order as {@link engine.world.components.Sprite}'s
+ * UV coordinates.
+ */
+public final class AnimationClip {
+
+    private static final int FLOATS_PER_FRAME = 8;
+
+    private final String name;
+    private final Texture texture;
+
+    // u, v of the four corners of every frame, frame by frame
+    private final float[] uvTable;
+    private final int numFrames;
+
+    // Seconds each frame is shown
+    private final float frameDuration;
+    private final boolean bIsLooping;
+
+    /**
+     * Creates a clip from a table of UVs.
+     *
+     * @param uvTable       The u, v of the four corners of every frame, frame by frame. The table is copied.
+     * @param frameDuration The seconds each frame is shown.
+     */
+    public AnimationClip(String name, Texture texture, float[] uvTable, float frameDuration, boolean bIsLooping) {
+        assert uvTable.length > 0 && uvTable.length % FLOATS_PER_FRAME == 0 : "Error: Invalid UV table for clip " + name;
+        assert frameDuration > 0.0f : "Error: Clip " + name + " needs a frame duration above zero";
+        this.name = name;
+        this.texture = texture;
+        this.uvTable = uvTable.clone();
+        this.numFrames = uvTable.length / FLOATS_PER_FRAME;
+        this.frameDuration = frameDuration;
+        this.bIsLooping = bIsLooping;
+    }
+
+    /**
+     * Slices consecutive sprites of a sprite sheet into a clip.
+     *
+     * @param firstSprite   The index of the first frame's sprite in the sheet.
+     * @param numFrames     The number of frames, taken in sheet order.
+     * @param frameDuration The seconds each frame is shown.
+     */
+    public static AnimationClip fromSpriteSheet(String name, SpriteSheet spriteSheet, int firstSprite, int numFrames,
+                                                float frameDuration, boolean bIsLooping) {
+        assert firstSprite >= 0 && firstSprite + numFrames <= spriteSheet.numOfSprites()
+                : "Error: Clip " + name + " reaches past the end of its sprite sheet";
+
+        float[] uvTable = new float[numFrames * FLOATS_PER_FRAME];
+        for (int frame = 0; frame < numFrames; frame++) {
+            writeFrame(uvTable, frame, spriteSheet.getSprite(firstSprite + frame).getUvCoordinates());
+        }
+        return new AnimationClip(name, spriteSheet.getTexture(), uvTable, frameDuration, bIsLooping);
+    }
+
+    static void writeFrame(float[] uvTable, int frame, Vector2f[] uvCoordinates) {
+        int offset = frame * FLOATS_PER_FRAME;
+        for (int corner = 0; corner < 4; corner++) {
+            uvTable[offset + 2 * corner] = uvCoordinates[corner].x;
+            uvTable[offset + 2 * corner + 1] = uvCoordinates[corner].y;
+        }
+    }
+
+    /**
+     * Gets the frame shown after playing for a number of seconds. Looping clips wrap around, other clips
+     * hold their last frame.
+     */
+    public int getFrameAt(float time) {
+        int frame = (int) (Math.max(0.0f, time) / frameDuration);
+        if (bIsLooping) {
+            return frame % numFrames;
+        }
+        return Math.min(frame, numFrames - 1);
+    }
+
+    public float getU(int frame, int corner) {
+        return uvTable[frame * FLOATS_PER_FRAME + 2 * corner];
+    }
+
+    public float getV(int frame, int corner) {
+        return uvTable[frame * FLOATS_PER_FRAME + 2 * corner + 1];
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public Texture getTexture() {
+        return texture;
+    }
+
+    public int getNumFrames() {
+        return numFrames;
+    }
+
+    public float getFrameDuration() {
+        return frameDuration;
+    }
+
+    /**
+     * Gets the seconds it takes to play every frame once.
+     */
+    public float getDuration() {
+        return numFrames * frameDuration;
+    }
+
+    public boolean isLooping() {
+        return bIsLooping;
+    }
+}
+/*End of AnimationClip class*/
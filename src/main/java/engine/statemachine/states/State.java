@@ -0,0 +1,45 @@
+/*
+ Title: State
+ Date: 2024-08-12
+ Author: Kyle St John
+ */
+package engine.statemachine.states;
+
+/**
+ * A named state with callbacks run when it is entered, exited and updated.
+ */
+public class State {
+
+    private String name;
+    private final Runnable onEnter;
+    private final Runnable onExit;
+    private final Runnable onUpdate;
+
+    public State(String name, Runnable onEnter, Runnable onExit, Runnable onUpdate) {
+        this.name = name;
+        this.onEnter = onEnter;
+        this.onExit = onExit;
+        this.onUpdate = onUpdate;
+    }
+
+    public void enter() {
+        onEnter.run();
+    }
+
+    public void exit() {
+        onExit.run();
+    }
+
+    public void update() {
+        onUpdate.run();
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public void setName(String name) {
+        this.name = name;
+    }
+}
+/*End of State class*/
@@ -0,0 +1,170 @@
+/*
+ Title: IntIntHashMap
+ Date: 2024-06-03
+ Author: Kyle St John
+ */
+package engine.utils.collections;
+
+import java.util.Arrays;
+
+/**
+ * An open addressing hash map from int keys to int values. Keys and values are stored in primitive arrays,
+ * so lookups, insertions and removals never box or allocate (except when the table grows).
+ * Any int, including negative numbers, can be used as a key.
+ */
+public class IntIntHashMap {
+
+    private static final float LOAD_FACTOR = 0.5f;
+
+    private int[] keys;
+    private int[] values;
+    private boolean[] occupied;
+    private int mask;
+    private int size = 0;
+
+    /**
+     * Constructs a map that can hold the expected number of entries without growing.
+     *
+     * @param expectedSize The number of entries the map is expected to hold.
+     */
+    public IntIntHashMap(int expectedSize) {
+        int capacity = Integer.highestOneBit(Math.max(2, (int) (expectedSize / LOAD_FACTOR)) - 1) << 1;
+        allocate(capacity);
+    }
+
+    /**
+     * Gets the value mapped to a key.
+     *
+     * @param key          The key to look up.
+     * @param defaultValue The value returned when the key is not present.
+     * @return The mapped value, or the default value.
+     */
+    public int get(int key, int defaultValue) {
+        int index = findIndex(key);
+        return index == -1 ? defaultValue : values[index];
+    }
+
+    /**
+     * Checks if a key is present in the map.
+     *
+     * @param key The key to look up.
+     * @return True if the key is mapped to a value.
+     */
+    public boolean containsKey(int key) {
+        return findIndex(key) != -1;
+    }
+
+    /**
+     * Maps a key to a value, replacing any previous value.
+     *
+     * @param key   The key.
+     * @param value The value.
+     */
+    public void put(int key, int value) {
+        int index = hash(key);
+        while (occupied[index]) {
+            if (keys[index] == key) {
+                values[index] = value;
+                return;
+            }
+            index = (index + 1) & mask;
+        }
+
+        occupied[index] = true;
+        keys[index] = key;
+        values[index] = value;
+        size++;
+
+        if (size > keys.length * LOAD_FACTOR) {
+            grow();
+        }
+    }
+
+    /**
+     * Removes a key from the map.
+     *
+     * @param key The key to remove.
+     * @return True if the key was present.
+     */
+    public boolean remove(int key) {
+        int index = findIndex(key);
+        if (index == -1) {
+            return false;
+        }
+
+        // Shift the following entries of the probe chain back so no tombstones are needed
+        int gap = index;
+        int next = (gap + 1) & mask;
+        while (occupied[next]) {
+            int home = hash(keys[next]);
+            // Move the entry if its home slot is not cyclically between the gap and its current slot
+            if (((next - home) & mask) >= ((next - gap) & mask)) {
+                keys[gap] = keys[next];
+                values[gap] = values[next];
+                gap = next;
+            }
+            next = (next + 1) & mask;
+        }
+        occupied[gap] = false;
+        size--;
+        return true;
+    }
+
+    /**
+     * Removes every entry without shrinking the table.
+     */
+    public void clear() {
+        Arrays.fill(occupied, false);
+        size = 0;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    private int findIndex(int key) {
+        int index = hash(key);
+        while (occupied[index]) {
+            if (keys[index] == key) {
+                return index;
+            }
+            index = (index + 1) & mask;
+        }
+        return -1;
+    }
+
+    /**
+     * Gets the slot a key is first probed at. Package-private so tests can build probe chains.
+     */
+    int hash(int key) {
+        // Fibonacci hashing spreads sequential UIDs across the table
+        int h = key * 0x9E3779B9;
+        return (h ^ (h >>> 16)) & mask;
+    }
+
+    int getCapacity() {
+        return keys.length;
+    }
+
+    private void allocate(int capacity) {
+        keys = new int[capacity];
+        values = new int[capacity];
+        occupied = new boolean[capacity];
+        mask = capacity - 1;
+    }
+
+    private void grow() {
+        int[] oldKeys = keys;
+        int[] oldValues = values;
+        boolean[] oldOccupied = occupied;
+
+        allocate(oldKeys.length << 1);
+        size = 0;
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldOccupied[i]) {
+                put(oldKeys[i], oldValues[i]);
+            }
+        }
+    }
+}
+/*End of IntIntHashMap class*/
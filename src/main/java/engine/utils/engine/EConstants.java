@@ -59,6 +59,12 @@ public interface EConstants {
         LaunchMode
     }
 
+    // Sprite render mode, chosen at startup
+    enum RenderMode {
+        Batched,
+        Instanced
+    }
+
     // Window
     float DEFAULT_ASPECT_RATIO = 16.0f / 9.0f;
 
@@ -72,9 +78,43 @@ public interface EConstants {
     // Rendering
     int MAX_BATCH_SIZE = 1000;
     int MAX_DEBUG_LINES = 10000;
+    // Below this many dirty sprites in a frame, packing on the render thread beats handing work to other threads
+    int MIN_PARALLEL_PACK_SLOTS = 512;
 
     float DEBUG_LINE_WIDTH = 3.0f;
 
+    // Streaming vertex buffer, one region per frame in flight
+    int STREAMING_REGION_SIZE = 4 * 1024 * 1024;
+    int STREAMING_REGION_COUNT = 3;
+
+    // Uniform buffer binding point of the Camera block declared by the shaders
+    int CAMERA_UBO_BINDING = 0;
+
+    // World units covered by one culling chunk along each axis
+    float CULLING_CHUNK_SIZE = 512.0f;
+
+    // Tilemaps, stored and drawn in square chunks of TILE_CHUNK_SIZE x TILE_CHUNK_SIZE tiles
+    int TILE_CHUNK_SIZE = 32;
+    short EMPTY_TILE = -1;
+
+    // Particle emitters with at least this many live particles simulate on the common fork/join pool
+    int MIN_PARALLEL_PARTICLES = 16384;
+
+    // Texture atlas
+    int MAX_ATLAS_PAGE_SIZE = 2048;
+    int ATLAS_PADDING = 2;
+
+    // Asynchronous texture loading
+    int TEXTURE_DECODE_THREADS = Math.max(1, Runtime.getRuntime().availableProcessors() / 2);
+    // Decoded images waiting for the GL thread. Decoders block when it is full, bounding the memory held
+    int TEXTURE_UPLOAD_QUEUE_SIZE = 8;
+    // Pixel bytes uploaded per frame. Larger images go up in strips of rows over several frames
+    int TEXTURE_UPLOAD_BUDGET_BYTES = 8 * 1024 * 1024;
+
+    // Texture residency. Textures no sprite draws are evicted past the budget once idle this many frames
+    long TEXTURE_MEMORY_BUDGET_BYTES = 512L * 1024 * 1024;
+    int TEXTURE_EVICTION_IDLE_FRAMES = 120;
+
     // ANSI escape codes for colors
     String RESET = "\u001B[0m";
     String BLACK = "\u001B[30m";
@@ -10,12 +10,18 @@ import engine.io.Audio;
 import engine.graphics.Shader;
 import engine.graphics.SpriteSheet;
 import engine.graphics.Texture;
+import engine.graphics.TextureLoader;
+import engine.graphics.TextureResidency;
+import engine.graphics.atlas.TextureAtlas;
+import engine.statemachine.animations.AnimationClip;
 
 import java.io.File;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
 /** ResourceManager class for managing shaders, textures, sprite sheets, and audio resources. */
@@ -25,26 +31,36 @@ public class ResourceUtils {
     private static final Map<String, Texture> textureMap = new HashMap<>();
     private static final Map<String, SpriteSheet> spriteSheetMap = new HashMap<>();
     private static final Map<String, Audio> audioMap = new HashMap<>();
+    private static final Map<String, AnimationClip> animationClipMap = new HashMap<>();
+    private static TextureAtlas textureAtlas;
 
+    /**
+     * Gets the shader program of a file, compiling and linking it (or loading it from the shader cache)
+     * the first time it is requested. Every caller shares the one program.
+     */
     public static Shader getOrCreateShader(String shaderID) {
-        File file = new File(shaderID);
-        if (!shaderMap.containsKey(shaderID)) {
-            Shader newShader = new Shader(shaderID);
-            newShader.compileAndLinkShaders();
-            shaderMap.put(file.getAbsolutePath(), newShader);
-            return newShader;
+        String key = new File(shaderID).getAbsolutePath();
+        Shader shader = shaderMap.get(key);
+        if (shader == null) {
+            shader = new Shader(shaderID);
+            shader.compileAndLinkShaders();
+            shaderMap.put(key, shader);
         }
-        return shaderMap.get(file.getAbsolutePath());
+        return shader;
     }
 
+    /**
+     * Gets the texture of a file, loading it through the {@link TextureLoader} the first time it is
+     * requested. The texture shows a placeholder until its pixels are uploaded. Must run on the GL thread.
+     */
     public static Texture getOrCreateTexture(String textureID) {
-        File file = new File(textureID);
-        if (!textureMap.containsKey(textureID)) {
-            Texture texture = new Texture(textureID);
-            textureMap.put(file.getAbsolutePath(), texture);
-            return texture;
+        String key = new File(textureID).getAbsolutePath();
+        Texture texture = textureMap.get(key);
+        if (texture == null) {
+            texture = TextureLoader.load(textureID);
+            textureMap.put(key, texture);
         }
-        return textureMap.get(file.getAbsolutePath());
+        return texture;
     }
 
     public static void addSpriteSheet(String resourceName, SpriteSheet spriteSheet) {
@@ -64,6 +80,38 @@ public class ResourceUtils {
         return spriteSheetMap;
     }
 
+    /**
+     * Registers a clip under its name. Clips are immutable, so every animator playing the name shares it.
+     */
+    public static void addAnimationClip(AnimationClip clip) {
+        if (!animationClipMap.containsKey(clip.getName())) {
+            animationClipMap.put(clip.getName(), clip);
+        }
+    }
+
+    public static AnimationClip getAnimationClip(String clipName) {
+        return animationClipMap.get(clipName);
+    }
+
+    /**
+     * Packs every loaded sprite sheet and texture into the texture atlas, replacing the previous atlas.
+     * Sprites pick up the new atlas the next time their batch packs them, and the packed textures release
+     * their own pixels once idle, see {@link TextureResidency}.
+     */
+    public static void buildTextureAtlas() {
+        List<String> filePaths = new ArrayList<>();
+        for (SpriteSheet spriteSheet : spriteSheetMap.values()) {
+            filePaths.add(new File(spriteSheet.getFilePathOfTexture()).getAbsolutePath());
+        }
+        filePaths.addAll(textureMap.keySet());
+        textureAtlas = TextureAtlas.build(filePaths);
+        TextureResidency.onAtlasBuilt();
+    }
+
+    public static TextureAtlas getTextureAtlas() {
+        return textureAtlas;
+    }
+
     public static void deleteFile(String path) {
         File fileToDelete = new File(path);
 
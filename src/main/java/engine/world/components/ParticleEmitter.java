@@ -0,0 +1,301 @@
+/*
+ Title: ParticleEmitter
+ Date: 2024-08-05
+ Author: Kyle St John
+ */
+package engine.world.components;
+
+import engine.graphics.BatchRenderer;
+import org.joml.Vector2f;
+import org.joml.Vector4f;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+
+import static engine.utils.engine.EConstants.MIN_PARALLEL_PARTICLES;
+
+/**
+ * Emits particles from the owning game object's position. Particles are not game objects: every property
+ * lives in a primitive array indexed by particle, the live particles are kept packed at the front of the
+ * arrays, and spawning and killing only write array elements. Nothing is allocated after init(), so
+ * emitters can hold hundreds of thousands of particles without creating garbage.
+ * <p>
+ * The renderer draws each emitter with a single instanced draw, see {@link engine.graphics.ParticleRenderer}.
+ */
+public class ParticleEmitter extends Component {
+
+    private int maxParticles = 10000;
+    // Particles spawned per second while emitting
+    private float emissionRate = 500.0f;
+    private boolean bIsEmitting = true;
+
+    // Seconds a particle lives, +/- the variance
+    private float lifetime = 1.5f;
+    private float lifetimeVariance = 0.5f;
+
+    // Initial velocity, in world units per second, spread around a direction in degrees
+    private float speed = 120.0f;
+    private float speedVariance = 40.0f;
+    private float direction = 90.0f;
+    private float spread = 60.0f;
+
+    // Width and height of a particle in world units
+    private float size = 8.0f;
+    private float sizeVariance = 4.0f;
+
+    // Acceleration applied to every particle, in world units per second squared
+    private final Vector2f gravity = new Vector2f(0.0f, -98.0f);
+    private final Vector4f color = new Vector4f(1.0f, 0.6f, 0.2f, 1.0f);
+
+    // Transform of the emitter, serialized like the transform of a sprite
+    private Transform transform;
+
+    // Particle pools, the first numAlive entries are live
+    private transient float[] positionX, positionY;
+    private transient float[] velocityX, velocityY;
+    private transient float[] life, inverseLifetime;
+    private transient float[] sizes;
+    private transient int[] colors;
+    private transient int numAlive = 0;
+
+    private transient float emissionAccumulator = 0.0f;
+    private transient long randomState;
+
+    // World space bounds of the live particles after the last tick, used for culling
+    private transient float boundsMinX, boundsMinY, boundsMaxX, boundsMaxY;
+
+    // One slice of the particles per thread of the common pool, reused every tick
+    private transient IntegrateTask[] integrateTasks;
+
+    @Override
+    public void init() {
+        super.init();
+        this.transform = owningGameObject.getTransform().copy();
+
+        positionX = new float[maxParticles];
+        positionY = new float[maxParticles];
+        velocityX = new float[maxParticles];
+        velocityY = new float[maxParticles];
+        life = new float[maxParticles];
+        inverseLifetime = new float[maxParticles];
+        sizes = new float[maxParticles];
+        colors = new int[maxParticles];
+        numAlive = 0;
+        randomState = System.nanoTime() | 1L;
+
+        integrateTasks = new IntegrateTask[ForkJoinPool.getCommonPoolParallelism() + 1];
+        for (int i = 0; i < integrateTasks.length; i++) {
+            integrateTasks[i] = new IntegrateTask(this);
+        }
+    }
+
+    @Override
+    public void tick(float deltaTime) {
+        super.tick(deltaTime);
+        if (!this.transform.equals(this.owningGameObject.getTransform())) {
+            this.transform.copy(this.owningGameObject.getTransform());
+        }
+
+        if (bIsEmitting) {
+            emissionAccumulator += emissionRate * deltaTime;
+            int numToSpawn = (int) emissionAccumulator;
+            emissionAccumulator -= numToSpawn;
+            // Spawning stops early once the pools are full
+            for (int i = 0; i < numToSpawn; i++) {
+                if (!spawn()) {
+                    break;
+                }
+            }
+        }
+
+        simulate(deltaTime);
+    }
+
+    /**
+     * Spawns a single particle at the emitter's position.
+     *
+     * @return False if every particle of the pools is live.
+     */
+    public boolean spawn() {
+        if (numAlive == maxParticles) {
+            return false;
+        }
+        int i = numAlive++;
+
+        float angle = (float) Math.toRadians(direction + (nextRandom() - 0.5f) * spread);
+        float particleSpeed = speed + (nextRandom() * 2.0f - 1.0f) * speedVariance;
+        float particleLifetime = Math.max(0.01f, lifetime + (nextRandom() * 2.0f - 1.0f) * lifetimeVariance);
+
+        positionX[i] = transform.getPosition().x;
+        positionY[i] = transform.getPosition().y;
+        velocityX[i] = (float) Math.cos(angle) * particleSpeed;
+        velocityY[i] = (float) Math.sin(angle) * particleSpeed;
+        life[i] = particleLifetime;
+        inverseLifetime[i] = 1.0f / particleLifetime;
+        sizes[i] = Math.max(0.0f, size + (nextRandom() * 2.0f - 1.0f) * sizeVariance);
+        colors[i] = BatchRenderer.packColor(color);
+        return true;
+    }
+
+    /**
+     * Kills a particle by moving the last live particle into its slot.
+     */
+    private void kill(int index) {
+        int last = --numAlive;
+        positionX[index] = positionX[last];
+        positionY[index] = positionY[last];
+        velocityX[index] = velocityX[last];
+        velocityY[index] = velocityY[last];
+        life[index] = life[last];
+        inverseLifetime[index] = inverseLifetime[last];
+        sizes[index] = sizes[last];
+        colors[index] = colors[last];
+    }
+
+    /**
+     * Moves every live particle, then kills the expired ones and recomputes the bounds. Moving is split
+     * over the common fork/join pool for large emitters, killing reorders the pools so it stays on this thread.
+     */
+    private void simulate(float deltaTime) {
+        if (numAlive >= MIN_PARALLEL_PARTICLES) {
+            int sliceSize = (numAlive + integrateTasks.length - 1) / integrateTasks.length;
+            for (int i = 0; i < integrateTasks.length; i++) {
+                IntegrateTask task = integrateTasks[i];
+                task.reinitialize();
+                task.from = Math.min(i * sliceSize, numAlive);
+                task.to = Math.min(task.from + sliceSize, numAlive);
+                task.deltaTime = deltaTime;
+            }
+            ForkJoinTask.invokeAll(integrateTasks);
+        } else {
+            integrate(0, numAlive, deltaTime);
+        }
+
+        boundsMinX = Float.POSITIVE_INFINITY;
+        boundsMinY = Float.POSITIVE_INFINITY;
+        boundsMaxX = Float.NEGATIVE_INFINITY;
+        boundsMaxY = Float.NEGATIVE_INFINITY;
+        int i = 0;
+        while (i < numAlive) {
+            if (life[i] <= 0.0f) {
+                // The last particle moved into this slot and is checked next
+                kill(i);
+                continue;
+            }
+            float halfSize = sizes[i] * 0.5f;
+            boundsMinX = Math.min(boundsMinX, positionX[i] - halfSize);
+            boundsMinY = Math.min(boundsMinY, positionY[i] - halfSize);
+            boundsMaxX = Math.max(boundsMaxX, positionX[i] + halfSize);
+            boundsMaxY = Math.max(boundsMaxY, positionY[i] + halfSize);
+            i++;
+        }
+    }
+
+    private void integrate(int from, int to, float deltaTime) {
+        float deltaVelocityX = gravity.x * deltaTime;
+        float deltaVelocityY = gravity.y * deltaTime;
+        for (int i = from; i < to; i++) {
+            velocityX[i] += deltaVelocityX;
+            velocityY[i] += deltaVelocityY;
+            positionX[i] += velocityX[i] * deltaTime;
+            positionY[i] += velocityY[i] * deltaTime;
+            life[i] -= deltaTime;
+        }
+    }
+
+    /**
+     * Xorshift random number in [0, 1). Each emitter has its own state, so spawning never contends on a shared generator.
+     */
+    private float nextRandom() {
+        randomState ^= randomState << 13;
+        randomState ^= randomState >>> 7;
+        randomState ^= randomState << 17;
+        return (randomState >>> 40) * 0x1.0p-24f;
+    }
+
+    /**
+     * Checks if any live particle can overlap a view rectangle.
+     */
+    public boolean isInView(float viewMinX, float viewMinY, float viewMaxX, float viewMaxY) {
+        return numAlive > 0 && boundsMinX <= viewMaxX && boundsMaxX >= viewMinX
+                && boundsMinY <= viewMaxY && boundsMaxY >= viewMinY;
+    }
+
+    /**
+     * Kills every live particle.
+     */
+    public void clear() {
+        numAlive = 0;
+        emissionAccumulator = 0.0f;
+    }
+
+    public void setEmitting(boolean bIsEmitting) {
+        this.bIsEmitting = bIsEmitting;
+    }
+
+    public boolean isEmitting() {
+        return bIsEmitting;
+    }
+
+    public void setEmissionRate(float emissionRate) {
+        this.emissionRate = emissionRate;
+    }
+
+    public int getNumAlive() {
+        return numAlive;
+    }
+
+    public int getMaxParticles() {
+        return maxParticles;
+    }
+
+    public Transform getTransform() {
+        return transform;
+    }
+
+    public float[] getPositionX() {
+        return positionX;
+    }
+
+    public float[] getPositionY() {
+        return positionY;
+    }
+
+    public float[] getSizes() {
+        return sizes;
+    }
+
+    public int[] getColors() {
+        return colors;
+    }
+
+    public float[] getLife() {
+        return life;
+    }
+
+    public float[] getInverseLifetime() {
+        return inverseLifetime;
+    }
+
+
+    /**
+     * Moves one slice of the particles.
+     */
+    private static class IntegrateTask extends RecursiveAction {
+        private final ParticleEmitter emitter;
+        private int from;
+        private int to;
+        private float deltaTime;
+
+        private IntegrateTask(ParticleEmitter emitter) {
+            this.emitter = emitter;
+        }
+
+        @Override
+        protected void compute() {
+            emitter.integrate(from, to, deltaTime);
+        }
+    }
+}
+/*End of ParticleEmitter class*/
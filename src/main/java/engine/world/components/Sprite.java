@@ -5,7 +5,11 @@
  */
 package engine.world.components;
 
+import engine.graphics.BatchRenderer;
+import engine.graphics.EngineWindow;
 import engine.graphics.Texture;
+import engine.statemachine.animations.AnimationClip;
+import engine.utils.engine.EConstants;
 import org.joml.Vector2f;
 import org.joml.Vector4f;
 
@@ -24,6 +28,14 @@ public class Sprite extends Component {
     private Transform transform;
     private transient boolean bisModified = false;
 
+    // Batch and slot this sprite currently occupies, used to queue itself when it changes
+    private transient BatchRenderer batch = null;
+    private transient int batchSlot = -1;
+
+    // Clip and frame the UVs are read from while a SpriteAnimator plays, instead of uvCoordinates
+    private transient AnimationClip animationClip = null;
+    private transient int animationFrame = 0;
+
     public Sprite() {
         this.uvCoordinates  = new Vector2f[]{
                 new Vector2f(1, 1),
@@ -43,6 +55,10 @@ public class Sprite extends Component {
     @Override
     public void tick(float deltaTime) {
         super.tick(deltaTime);
+        // Static objects only move while being edited, so skip the per-frame transform compare otherwise
+        if (owningGameObject.isStatic() && EngineWindow.Enabled_Engine_Mode != EConstants.EngineMode.EditorMode) {
+            return;
+        }
         updateTransform();
     }
 
@@ -50,7 +66,7 @@ public class Sprite extends Component {
     private void updateTransform() {
         if (!this.transform.equals(this.owningGameObject.getTransform())) {
             this.transform.copy(this.owningGameObject.getTransform());
-            bisModified = true;
+            setModified(true);
         }
     }
 
@@ -66,6 +82,20 @@ public class Sprite extends Component {
         return uvCoordinates;
     }
 
+    /**
+     * Gets the u of a corner as drawn, which is the animation frame's while a clip plays.
+     */
+    public float getU(int corner) {
+        return animationClip != null ? animationClip.getU(animationFrame, corner) : uvCoordinates[corner].x;
+    }
+
+    /**
+     * Gets the v of a corner as drawn, which is the animation frame's while a clip plays.
+     */
+    public float getV(int corner) {
+        return animationClip != null ? animationClip.getV(animationFrame, corner) : uvCoordinates[corner].y;
+    }
+
     public Vector2f getSpriteSize() {
         return this.getOwningGameObject().getTransform().getScale();
     }
@@ -82,10 +112,52 @@ public class Sprite extends Component {
         return bisModified;
     }
 
+    /**
+     * Flags the sprite as modified. Marking it modified pushes its slot onto the owning batch's dirty list
+     * so that only the changed sprites are re-packed and uploaded.
+     */
     public void setModified(boolean isModified) {
+        if (isModified && batch != null) {
+            batch.markSlotDirty(batchSlot);
+        }
         bisModified = isModified;
     }
 
+    /**
+     * Called by the batch renderer whenever this sprite is placed into, moved within or removed from a batch.
+     */
+    public void setBatch(BatchRenderer batch, int batchSlot) {
+        this.batch = batch;
+        this.batchSlot = batchSlot;
+    }
+
+    public BatchRenderer getBatch() {
+        return batch;
+    }
+
+    public int getBatchSlot() {
+        return batchSlot;
+    }
+
+    /**
+     * Shows a frame of a clip instead of the sprite's own UVs. Only the UVs of the sprite's batch slot
+     * are queued to be re-packed.
+     *
+     * @param clip  The clip, or null to go back to the sprite's own UVs.
+     * @param frame The frame of the clip to show.
+     */
+    public void setAnimationFrame(AnimationClip clip, int frame) {
+        this.animationClip = clip;
+        this.animationFrame = frame;
+        if (batch != null) {
+            batch.markSlotUVsDirty(batchSlot);
+        }
+    }
+
+    public AnimationClip getAnimationClip() {
+        return animationClip;
+    }
+
     public int getTextureID() {
         return spriteTexture == null ? -1 : spriteTexture.getTextureID();
     }
@@ -96,17 +168,19 @@ public class Sprite extends Component {
 
     public void setTexture(Texture texture) {
         spriteTexture = texture;
+        setModified(true);
     }
 
     public void setUvCoordinates(Vector2f[] uvCoordinates) {
         this.uvCoordinates = uvCoordinates;
+        setModified(true);
     }
 
 
     public void setColor(Vector4f color) {
         if (!this.color.equals(color)) {
-            this.bisModified = true;
             this.color.set(color);
+            setModified(true);
         }
     }
 }
@@ -0,0 +1,136 @@
+/*
+ Title: SpriteAnimator
+ Date: 2024-08-12
+ Author: Kyle St John
+ */
+package engine.world.components;
+
+import engine.debugging.info.Logger;
+import engine.statemachine.animations.AnimationClip;
+import engine.utils.engine.ResourceUtils;
+
+/**
+ * Plays a shared {@link AnimationClip} on the owning game object's sprite. The animator only keeps a clip
+ * reference, a play time and the frame shown. When the frame changes the sprite reads its UVs from the
+ * clip and its batch slot is queued for a UV only update, so the rest of the slot's vertices are left alone.
+ */
+public class SpriteAnimator extends Component {
+
+    // Name of the clip in ResourceUtils, played as soon as the animator is initialized
+    private String clipName;
+    private float playbackSpeed = 1.0f;
+
+    private transient AnimationClip clip;
+    private transient Sprite sprite;
+    private transient float time = 0.0f;
+    private transient int frameIndex = -1;
+    private transient boolean bIsPlaying = false;
+
+    public SpriteAnimator() {
+    }
+
+    public SpriteAnimator(String clipName) {
+        this.clipName = clipName;
+    }
+
+    @Override
+    public void init() {
+        super.init();
+        sprite = owningGameObject.getComponent(Sprite.class);
+        if (sprite == null) {
+            Logger.error("Sprite animator of '" + owningGameObject.getName() + "' has no sprite to animate");
+            return;
+        }
+
+        if (clipName != null) {
+            AnimationClip savedClip = ResourceUtils.getAnimationClip(clipName);
+            if (savedClip == null) {
+                Logger.error("Sprite animator of '" + owningGameObject.getName() + "' uses a clip that is not loaded: '"
+                        + clipName + "'");
+                return;
+            }
+            play(savedClip);
+        }
+    }
+
+    @Override
+    public void tick(float deltaTime) {
+        super.tick(deltaTime);
+        if (!bIsPlaying) {
+            return;
+        }
+
+        time += deltaTime * playbackSpeed;
+        if (clip.isLooping()) {
+            // Keep the time small so it never loses precision
+            time %= clip.getDuration();
+        } else if (time >= clip.getDuration()) {
+            bIsPlaying = false;
+        }
+        showFrame(clip.getFrameAt(time));
+    }
+
+    /**
+     * Plays a clip from its first frame.
+     */
+    public void play(AnimationClip clip) {
+        if (sprite == null) {
+            return;
+        }
+        this.clip = clip;
+        this.clipName = clip.getName();
+        this.time = 0.0f;
+        this.frameIndex = -1;
+        this.bIsPlaying = true;
+
+        // Changing texture needs a full re-pack, every later frame only touches the UVs
+        if (sprite.getSpriteTexture() != clip.getTexture()) {
+            sprite.setTexture(clip.getTexture());
+        }
+        showFrame(0);
+    }
+
+    /**
+     * Stops the clip and gives the sprite back its own UVs.
+     */
+    public void stop() {
+        bIsPlaying = false;
+        clip = null;
+        frameIndex = -1;
+        if (sprite != null) {
+            sprite.setAnimationFrame(null, 0);
+        }
+    }
+
+    public void pause() {
+        bIsPlaying = false;
+    }
+
+    public void resume() {
+        bIsPlaying = clip != null;
+    }
+
+    private void showFrame(int frame) {
+        if (frame != frameIndex) {
+            frameIndex = frame;
+            sprite.setAnimationFrame(clip, frame);
+        }
+    }
+
+    public AnimationClip getClip() {
+        return clip;
+    }
+
+    public int getFrameIndex() {
+        return frameIndex;
+    }
+
+    public boolean isPlaying() {
+        return bIsPlaying;
+    }
+
+    public void setPlaybackSpeed(float playbackSpeed) {
+        this.playbackSpeed = playbackSpeed;
+    }
+}
+/*End of SpriteAnimator class*/
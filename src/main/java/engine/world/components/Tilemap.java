@@ -0,0 +1,231 @@
+/*
+ Title: Tilemap
+ Date: 2024-07-29
+ Author: Kyle St John
+ */
+package engine.world.components;
+
+import engine.debugging.info.Logger;
+import engine.graphics.SpriteSheet;
+import engine.utils.engine.ResourceUtils;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static engine.utils.engine.EConstants.EMPTY_TILE;
+import static engine.utils.engine.EConstants.TILE_CHUNK_SIZE;
+
+/**
+ * A grid of tiles drawn from a single sprite sheet. Each tile is a short index into the sheet, stored in
+ * square chunks of TILE_CHUNK_SIZE tiles per side that are only created once a tile is placed in them.
+ * The renderer draws every chunk as one prebuilt static mesh, rebuilt only when a tile of the chunk changes.
+ * <p>
+ * Tile (0, 0) has its bottom left corner at the owning game object's position. Tilemaps are axis aligned,
+ * the rotation and scale of the transform are ignored.
+ */
+public class Tilemap extends Component {
+
+    // File path of the sprite sheet's texture, which is also its key in ResourceUtils
+    private String spriteSheetPath;
+
+    // Size of a tile in world units
+    private float tileWidth;
+    private float tileHeight;
+
+    // Transform of the tilemap, serialized like the transform of a sprite
+    private Transform transform;
+
+    private final List<Chunk> chunks = new ArrayList<>();
+
+    private transient SpriteSheet spriteSheet;
+    private transient Map<Long, Chunk> chunkMap = new HashMap<>();
+
+    // Bumped whenever every chunk mesh has to be rebuilt, e.g. when the tilemap moves
+    private transient int layoutRevision = 0;
+
+    public Tilemap() {
+    }
+
+    public Tilemap(SpriteSheet spriteSheet) {
+        this.spriteSheet = spriteSheet;
+        this.spriteSheetPath = spriteSheet.getFilePathOfTexture();
+        this.tileWidth = spriteSheet.getSpriteWidth();
+        this.tileHeight = spriteSheet.getSpriteHeight();
+    }
+
+    @Override
+    public void init() {
+        super.init();
+        this.transform = owningGameObject.getTransform().copy();
+
+        if (spriteSheet == null) {
+            spriteSheet = ResourceUtils.getSpriteSheet(spriteSheetPath);
+            if (spriteSheet == null) {
+                Logger.error("Tilemap of '" + owningGameObject.getName() + "' uses a sprite sheet that is not loaded: '"
+                        + spriteSheetPath + "'");
+            }
+        }
+
+        // Deserialized tilemaps only have the chunk list
+        chunkMap = new HashMap<>();
+        for (Chunk chunk : chunks) {
+            chunkMap.put(getChunkKey(chunk.chunkX, chunk.chunkY), chunk);
+        }
+    }
+
+    @Override
+    public void tick(float deltaTime) {
+        super.tick(deltaTime);
+        if (!this.transform.equals(this.owningGameObject.getTransform())) {
+            this.transform.copy(this.owningGameObject.getTransform());
+            layoutRevision++;
+        }
+    }
+
+    /**
+     * Places a tile, creating its chunk if needed.
+     *
+     * @param x           The column of the tile, may be negative.
+     * @param y           The row of the tile, may be negative.
+     * @param spriteIndex The index of the tile's sprite in the sprite sheet, or EMPTY_TILE to clear it.
+     */
+    public void setTile(int x, int y, int spriteIndex) {
+        assert spriteIndex >= EMPTY_TILE && spriteIndex <= Short.MAX_VALUE : "Error: Tile index out of range: " + spriteIndex;
+
+        int chunkX = Math.floorDiv(x, TILE_CHUNK_SIZE);
+        int chunkY = Math.floorDiv(y, TILE_CHUNK_SIZE);
+        Chunk chunk = chunkMap.get(getChunkKey(chunkX, chunkY));
+        if (chunk == null) {
+            if (spriteIndex == EMPTY_TILE) {
+                return;
+            }
+            chunk = new Chunk(chunkX, chunkY);
+            chunks.add(chunk);
+            chunkMap.put(getChunkKey(chunkX, chunkY), chunk);
+        }
+        chunk.setTile(Math.floorMod(x, TILE_CHUNK_SIZE), Math.floorMod(y, TILE_CHUNK_SIZE), (short) spriteIndex);
+    }
+
+    public void clearTile(int x, int y) {
+        setTile(x, y, EMPTY_TILE);
+    }
+
+    /**
+     * Gets the sprite sheet index of a tile, or EMPTY_TILE if there is none.
+     */
+    public int getTile(int x, int y) {
+        Chunk chunk = getChunk(Math.floorDiv(x, TILE_CHUNK_SIZE), Math.floorDiv(y, TILE_CHUNK_SIZE));
+        if (chunk == null) {
+            return EMPTY_TILE;
+        }
+        return chunk.getTile(Math.floorMod(x, TILE_CHUNK_SIZE), Math.floorMod(y, TILE_CHUNK_SIZE));
+    }
+
+    /**
+     * Gets a chunk by its chunk coordinates, or null if no tile was ever placed in it.
+     */
+    public Chunk getChunk(int chunkX, int chunkY) {
+        return chunkMap.get(getChunkKey(chunkX, chunkY));
+    }
+
+    public List<Chunk> getChunks() {
+        return chunks;
+    }
+
+    public SpriteSheet getSpriteSheet() {
+        return spriteSheet;
+    }
+
+    public float getTileWidth() {
+        return tileWidth;
+    }
+
+    public float getTileHeight() {
+        return tileHeight;
+    }
+
+    public void setTileSize(float tileWidth, float tileHeight) {
+        this.tileWidth = tileWidth;
+        this.tileHeight = tileHeight;
+        layoutRevision++;
+    }
+
+    public Transform getTransform() {
+        return transform;
+    }
+
+    public int getLayoutRevision() {
+        return layoutRevision;
+    }
+
+    private static long getChunkKey(int chunkX, int chunkY) {
+        return ((long) chunkX << 32) | (chunkY & 0xFFFFFFFFL);
+    }
+
+
+    /**
+     * TILE_CHUNK_SIZE x TILE_CHUNK_SIZE tiles, row by row starting at the bottom left.
+     */
+    public static class Chunk {
+        private final int chunkX;
+        private final int chunkY;
+        private final short[] tiles;
+
+        // Bumped on every change, the renderer rebuilds the chunk's mesh when it differs from the built one
+        private transient int revision = 0;
+
+        Chunk(int chunkX, int chunkY) {
+            this.chunkX = chunkX;
+            this.chunkY = chunkY;
+            this.tiles = new short[TILE_CHUNK_SIZE * TILE_CHUNK_SIZE];
+            Arrays.fill(tiles, EMPTY_TILE);
+        }
+
+        /**
+         * Creates a chunk from saved tiles.
+         *
+         * @param tiles TILE_CHUNK_SIZE x TILE_CHUNK_SIZE sprite sheet indices, row by row.
+         */
+        public Chunk(int chunkX, int chunkY, short[] tiles) {
+            assert tiles.length == TILE_CHUNK_SIZE * TILE_CHUNK_SIZE : "Error: Tile chunk has " + tiles.length + " tiles";
+            this.chunkX = chunkX;
+            this.chunkY = chunkY;
+            this.tiles = tiles;
+        }
+
+        private void setTile(int localX, int localY, short spriteIndex) {
+            int index = localY * TILE_CHUNK_SIZE + localX;
+            if (tiles[index] != spriteIndex) {
+                tiles[index] = spriteIndex;
+                revision++;
+            }
+        }
+
+        public short getTile(int localX, int localY) {
+            return tiles[localY * TILE_CHUNK_SIZE + localX];
+        }
+
+        /**
+         * Gets the tiles of the chunk, row by row. Must not be modified.
+         */
+        public short[] getTiles() {
+            return tiles;
+        }
+
+        public int getChunkX() {
+            return chunkX;
+        }
+
+        public int getChunkY() {
+            return chunkY;
+        }
+
+        public int getRevision() {
+            return revision;
+        }
+    }
+}
+/*End of Tilemap class*/
@@ -51,10 +51,11 @@ public class Level {
             // If not active, simply add the game object to the list
             gameObjects.add(gameObject);
         } else {
-            // If active, add the game object, initialize it, and add it to the renderer
+            // If active, add the game object, initialize it, and add it to the renderer.
+            // It is initialized first so the renderer indexes it under its final UID
             gameObjects.add(gameObject);
-            this.renderer.addGameObject(gameObject);
             gameObject.init();
+            this.renderer.addGameObject(gameObject);
         }
     }
 
@@ -66,7 +67,7 @@ public class Level {
             GameObject gameObject = iterator.next();
             if (gameObject.getUID() == gameObjectUID) {
                 // Remove the sprite from the renderer
-                renderer.removeSpriteFromRenderer(gameObjectUID);
+                renderer.removeGameObject(gameObject);
 
                 // If the GameObject has a RigidBody component, destroy its physics body
                 if (gameObject.getComponent(RigidBody.class) != null)  physics.destroyPhysicsBody(gameObject);
@@ -90,7 +91,12 @@ public class Level {
     }
 
     public void cleanup() {
-        // TODO: Implement scene cleanup
+        // TODO: Implement the remaining scene cleanup
+        renderer.destroy();
+    }
+
+    public Renderer getRenderer() {
+        return renderer;
     }
 
     public OrthoCamera getOrthoCamera() {
@@ -5,7 +5,10 @@
  */
 package engine.world.objects;
 
+import engine.graphics.SpriteSheet;
+import engine.world.components.ParticleEmitter;
 import engine.world.components.Sprite;
+import engine.world.components.Tilemap;
 import engine.world.components.Transform;
 import org.joml.Vector2f;
 
@@ -25,5 +28,21 @@ public class GameObjFactory {
         object.addComponent(sprite);
         return object;
     }
+
+    public static GameObject generateTilemap(String name, SpriteSheet spriteSheet, Transform transform) {
+        GameObject object = new GameObject();
+        object.setName(object.getName() + name);
+        object.setTransform(transform);
+        object.addComponent(new Tilemap(spriteSheet));
+        return object;
+    }
+
+    public static GameObject generateParticleEmitter(String name, Transform transform) {
+        GameObject object = new GameObject();
+        object.setName(object.getName() + name);
+        object.setTransform(transform);
+        object.addComponent(new ParticleEmitter());
+        return object;
+    }
 }
 /*End of GameObjectFactory class*/
@@ -1,6 +1,7 @@
 package engine.world.objects;
 
 import engine.world.components.Component;
+import engine.world.components.Sprite;
 import engine.world.components.Transform;
 
 import java.util.ArrayList;
@@ -12,6 +13,8 @@ public class GameObject {
     private transient Transform transform;
     private static int GLOBAL_OBJECT_ID_COUNTER = -1;
     protected int objectUID;
+    // Static objects never move outside the editor. Their sprites are baked into static batches
+    private boolean isStatic = false;
 
 
     public void init() {
@@ -103,6 +106,19 @@ public class GameObject {
         return this.transform.getzIndex();
     }
 
+    public boolean isStatic() {
+        return isStatic;
+    }
+
+    public void setStatic(boolean isStatic) {
+        this.isStatic = isStatic;
+        // Queue the sprite so the renderer moves it into a batch of the matching kind
+        Sprite sprite = getComponent(Sprite.class);
+        if (sprite != null) {
+            sprite.setModified(true);
+        }
+    }
+
     public int setUID(int newUID) {
         return this.objectUID = newUID;
     }
@@ -0,0 +1,282 @@
+/*
+ Title: SpritePickerTest
+ Date: 2024-08-19
+ Author: Kyle St John
+ */
+package engine.editor.controls;
+
+import com.google.gson.Gson;
+import engine.graphics.BatchRenderer;
+import engine.graphics.SpriteSheet;
+import engine.graphics.Texture;
+import engine.graphics.TilemapRenderer;
+import engine.statemachine.animations.AnimationClip;
+import engine.world.components.Sprite;
+import engine.world.components.Tilemap;
+import engine.world.components.Transform;
+import engine.world.objects.GameObject;
+import org.joml.Vector2f;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SpritePickerTest {
+
+    @TempDir
+    Path tempDir;
+
+    private final SpritePicker picker = new SpritePicker();
+    private final List<BatchRenderer> createdBatches = new ArrayList<>();
+    private final List<Sprite> candidates = new ArrayList<>();
+    private final List<Tilemap> tilemaps = new ArrayList<>();
+
+    @AfterEach
+    void destroyBatches() {
+        for (BatchRenderer batch : createdBatches) {
+            batch.destroy();
+        }
+    }
+
+    @Test
+    void hitsFollowTheRotatedRectangle() {
+        // A wide sprite turned upright
+        GameObject object = createObject(0, 0, 4, 1, 90.0f);
+        addToNewBatch(0, null, object);
+
+        assertSame(object, picker.pick(candidates, tilemaps, 0.0f, 1.5f));
+        assertSame(object, picker.pick(candidates, tilemaps, 0.2f, -1.8f));
+        assertNull(picker.pick(candidates, tilemaps, 1.5f, 0.0f));
+        assertNull(picker.pick(candidates, tilemaps, 0.6f, 0.0f));
+    }
+
+    @Test
+    void diagonalSpritesMissTheCornersOfTheirBounds() {
+        GameObject object = createObject(10, 10, 2, 2, 45.0f);
+        addToNewBatch(0, null, object);
+
+        assertSame(object, picker.pick(candidates, tilemaps, 10.0f, 11.3f));
+        // Inside the unrotated square, outside the diamond
+        assertNull(picker.pick(candidates, tilemaps, 10.9f, 10.9f));
+    }
+
+    @Test
+    void higherZIndicesWinWhateverTheSubmissionOrder() {
+        GameObject top = createObject(0, 0, 2, 2, 0.0f);
+        GameObject bottom = createObject(0, 0, 2, 2, 0.0f);
+        addToNewBatch(3, null, top);
+        addToNewBatch(-2, null, bottom);
+
+        assertSame(top, picker.pick(candidates, tilemaps, 0.5f, 0.5f));
+    }
+
+    @Test
+    void equalZIndicesAreOrderedByTextureIdLikeTheRenderQueue() {
+        GameObject highTexture = createObject(0, 0, 2, 2, 0.0f);
+        GameObject lowTexture = createObject(0, 0, 2, 2, 0.0f);
+        // Submitted first, but its batch sorts after the other one and is drawn on top
+        addToNewBatch(1, readTexture("high.png", 9), highTexture);
+        addToNewBatch(1, readTexture("low.png", 4), lowTexture);
+
+        assertSame(highTexture, picker.pick(candidates, tilemaps, 0.0f, 0.0f));
+    }
+
+    @Test
+    void equalKeysAreOrderedBySubmission() {
+        Texture texture = readTexture("shared.png", 6);
+        GameObject first = createObject(0, 0, 2, 2, 0.0f);
+        GameObject second = createObject(0, 0, 2, 2, 0.0f);
+        GameObject third = createObject(0, 0, 2, 2, 0.0f);
+        addToNewBatch(0, texture, first, second);
+        addToNewBatch(0, texture, third);
+
+        assertSame(third, picker.pick(candidates, tilemaps, 0.0f, 0.0f));
+        candidates.remove(2);
+        assertSame(second, picker.pick(candidates, tilemaps, 0.0f, 0.0f));
+    }
+
+    @Test
+    void clicksOnTransparentTexelsFallThrough() throws IOException {
+        GameObject ground = createObject(0, 0, 2, 2, 0.0f);
+        GameObject cutout = createObject(0, 0, 2, 2, 0.0f);
+        addToNewBatch(0, createTexture("ground.png", 0xFF00FF00, 0xFF00FF00), ground);
+        // Only the left half of the cutout is drawn, see createTexture()
+        addToNewBatch(1, createTexture("cutout.png", 0x00000000, 0xFFFF0000), cutout);
+
+        assertSame(cutout, picker.pick(candidates, tilemaps, -0.5f, 0.0f));
+        assertSame(ground, picker.pick(candidates, tilemaps, 0.5f, 0.0f));
+
+        picker.setUseAlphaMasks(false);
+        assertSame(cutout, picker.pick(candidates, tilemaps, 0.5f, 0.0f));
+    }
+
+    @Test
+    void fullyTransparentSpritesArePickedThroughToNothing() throws IOException {
+        GameObject ghost = createObject(0, 0, 2, 2, 0.0f);
+        addToNewBatch(0, createTexture("ghost.png", 0x00000000, 0x00000000), ghost);
+
+        assertNull(picker.pick(candidates, tilemaps, 0.0f, 0.0f));
+    }
+
+    @Test
+    void animatedSpritesAreTestedAgainstTheFrameShown() throws IOException {
+        GameObject object = createObject(0, 0, 2, 2, 0.0f);
+        Texture texture = createTexture("frames.png", 0x00000000, 0xFFFF0000);
+        addToNewBatch(0, texture, object);
+        Sprite sprite = object.getComponent(Sprite.class);
+        // Frame 0 shows only the opaque right texel, frame 1 only the transparent left texel
+        AnimationClip clip = new AnimationClip("blink", texture, new float[]{
+                1.0f, 1.0f, 1.0f, 0.0f, 0.5f, 0.0f, 0.5f, 1.0f,
+                0.5f, 1.0f, 0.5f, 0.0f, 0.0f, 0.0f, 0.0f, 1.0f
+        }, 0.1f, true);
+
+        sprite.setAnimationFrame(clip, 0);
+        assertSame(object, picker.pick(candidates, tilemaps, -0.5f, 0.0f));
+        assertSame(object, picker.pick(candidates, tilemaps, 0.5f, 0.0f));
+
+        sprite.setAnimationFrame(clip, 1);
+        assertNull(picker.pick(candidates, tilemaps, -0.5f, 0.0f));
+        assertNull(picker.pick(candidates, tilemaps, 0.5f, 0.0f));
+    }
+
+    @Test
+    void tilemapsAreHitWhereTheyHoldATile() {
+        Tilemap tilemap = createTilemap(10, 20, 0);
+        tilemap.setTile(0, 0, 1);
+        tilemap.setTile(-1, 2, 0);
+        // The sheet only has four tiles, so this one is never drawn
+        tilemap.setTile(3, 0, 9);
+        tilemaps.add(tilemap);
+
+        assertSame(tilemap.getOwningGameObject(), picker.pick(candidates, tilemaps, 12.0f, 22.0f));
+        assertSame(tilemap.getOwningGameObject(), picker.pick(candidates, tilemaps, 2.0f, 60.0f));
+        assertNull(picker.pick(candidates, tilemaps, 30.0f, 22.0f));
+        assertNull(picker.pick(candidates, tilemaps, 60.0f, 22.0f));
+        assertNull(picker.pick(candidates, tilemaps, 9.0f, 22.0f));
+    }
+
+    @Test
+    void chunkBoundsOnlyFindChunksHoldingTiles() {
+        Tilemap tilemap = createTilemap(0, 0, 0);
+        tilemap.setTile(40, 0, 1);
+        TilemapRenderer tilemapRenderer = new TilemapRenderer(tilemap);
+
+        // Tile 40 is in the second chunk of 32 tiles
+        assertTrue(tilemapRenderer.hasChunkAt(32 * 16 + 1.0f, 1.0f));
+        assertTrue(tilemapRenderer.hasChunkAt(64 * 16 - 1.0f, 31 * 16.0f));
+        assertFalse(tilemapRenderer.hasChunkAt(1.0f, 1.0f));
+        assertFalse(tilemapRenderer.hasChunkAt(32 * 16 + 1.0f, -1.0f));
+        tilemapRenderer.destroy();
+    }
+
+    @Test
+    void spritesAtTheTilemapsZIndexStandOnTopOfIt() {
+        Tilemap tilemap = createTilemap(0, 0, 1);
+        tilemap.setTile(0, 0, 0);
+        tilemaps.add(tilemap);
+        GameObject sameZ = createObject(8, 8, 4, 4, 0.0f);
+        addToNewBatch(1, null, sameZ);
+
+        assertSame(sameZ, picker.pick(candidates, tilemaps, 8.0f, 8.0f));
+        // Next to the sprite the tile is hit
+        assertSame(tilemap.getOwningGameObject(), picker.pick(candidates, tilemaps, 2.0f, 2.0f));
+    }
+
+    @Test
+    void tilemapsAboveASpriteCoverIt() {
+        Tilemap tilemap = createTilemap(0, 0, 2);
+        tilemap.setTile(0, 0, 0);
+        tilemaps.add(tilemap);
+        GameObject below = createObject(8, 8, 4, 4, 0.0f);
+        addToNewBatch(1, null, below);
+
+        assertSame(tilemap.getOwningGameObject(), picker.pick(candidates, tilemaps, 8.0f, 8.0f));
+    }
+
+    @Test
+    void higherTilemapsWinAndLaterOnesWinTies() {
+        Tilemap ground = createTilemap(0, 0, 0);
+        Tilemap walls = createTilemap(0, 0, 3);
+        Tilemap decals = createTilemap(0, 0, 3);
+        for (Tilemap tilemap : new Tilemap[]{walls, decals, ground}) {
+            tilemap.setTile(0, 0, 0);
+            tilemaps.add(tilemap);
+        }
+
+        assertSame(decals.getOwningGameObject(), picker.pick(candidates, tilemaps, 4.0f, 4.0f));
+        decals.clearTile(0, 0);
+        assertSame(walls.getOwningGameObject(), picker.pick(candidates, tilemaps, 4.0f, 4.0f));
+        walls.clearTile(0, 0);
+        assertSame(ground.getOwningGameObject(), picker.pick(candidates, tilemaps, 4.0f, 4.0f));
+    }
+
+    private static GameObject createObject(float x, float y, float width, float height, float rotation) {
+        GameObject object = new GameObject();
+        Transform transform = new Transform(new Vector2f(x, y), new Vector2f(width, height));
+        transform.setRotation(rotation);
+        object.setTransform(transform);
+        object.addComponent(new Sprite());
+        return object;
+    }
+
+    /**
+     * Adds the sprites of game objects to a new batch, and to the candidates in submission order.
+     */
+    private void addToNewBatch(int zIndex, Texture texture, GameObject... objects) {
+        BatchRenderer batch = new BatchRenderer(zIndex, 0, 0, false);
+        createdBatches.add(batch);
+        for (GameObject object : objects) {
+            object.setZIndex(zIndex);
+            Sprite sprite = object.getComponent(Sprite.class);
+            sprite.setTexture(texture);
+            batch.addSpriteToBatch(sprite);
+            candidates.add(sprite);
+        }
+    }
+
+    /**
+     * Creates a tilemap of 16 by 16 tiles from a sheet of four tiles.
+     */
+    private Tilemap createTilemap(float x, float y, int zIndex) {
+        String json = "{\"textureWidth\":32,\"textureHeight\":32,\"filePath\":"
+                + new Gson().toJson(tempDir.resolve("tiles.png").toString()) + "}";
+        SpriteSheet spriteSheet = new SpriteSheet(new Gson().fromJson(json, Texture.class), 16, 16, 0, "Tiles");
+
+        GameObject object = new GameObject();
+        object.setTransform(new Transform(new Vector2f(x, y), new Vector2f(1, 1), zIndex));
+        Tilemap tilemap = new Tilemap(spriteSheet);
+        object.addComponent(tilemap);
+        tilemap.init();
+        return tilemap;
+    }
+
+    /**
+     * Reads a texture the way level files do, which needs no GL context.
+     */
+    private Texture readTexture(String fileName, int textureID) {
+        String filePath = tempDir.resolve(fileName).toString();
+        String json = "{\"textureID\":" + textureID + ",\"filePath\":" + new Gson().toJson(filePath) + "}";
+        return new Gson().fromJson(json, Texture.class);
+    }
+
+    /**
+     * Writes a two texel wide image and reads it as a texture. A sprite with the default UVs draws the
+     * right texel on its left half, so the left half of the sprite shows the second colour.
+     */
+    private Texture createTexture(String fileName, int leftTexel, int rightTexel) throws IOException {
+        BufferedImage image = new BufferedImage(2, 1, BufferedImage.TYPE_INT_ARGB);
+        image.setRGB(0, 0, leftTexel);
+        image.setRGB(1, 0, rightTexel);
+        ImageIO.write(image, "png", tempDir.resolve(fileName).toFile());
+        return readTexture(fileName, fileName.hashCode() & 0xFFFF);
+    }
+}
+/*End of SpritePickerTest class*/
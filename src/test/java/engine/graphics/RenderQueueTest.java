@@ -0,0 +1,131 @@
+/*
+ Title: RenderQueueTest
+ Date: 2024-08-19
+ Author: Kyle St John
+ */
+package engine.graphics;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RenderQueueTest {
+
+    private final RenderQueue queue = new RenderQueue();
+    private final List<BatchRenderer> createdBatches = new ArrayList<>();
+
+    @AfterEach
+    void destroyBatches() {
+        for (BatchRenderer batch : createdBatches) {
+            batch.destroy();
+        }
+    }
+
+    @Test
+    void sortsByLayerThenTexture() {
+        BatchRenderer top = submit(2, 1);
+        BatchRenderer bottomSecondTexture = submit(0, 5);
+        BatchRenderer bottomFirstTexture = submit(0, 2);
+        BatchRenderer middle = submit(1, 0);
+
+        queue.sort();
+
+        assertOrder(bottomFirstTexture, bottomSecondTexture, middle, top);
+    }
+
+    @Test
+    void negativeLayersSortBelowPositiveLayers() {
+        BatchRenderer three = submit(3, 0);
+        BatchRenderer minusOne = submit(-1, 0);
+        BatchRenderer zero = submit(0, 0);
+        BatchRenderer minusThreeHundred = submit(-300, 0);
+        BatchRenderer highest = submit(Short.MAX_VALUE, 0);
+        BatchRenderer lowest = submit(Short.MIN_VALUE, 0);
+
+        queue.sort();
+
+        assertOrder(lowest, minusThreeHundred, minusOne, zero, three, highest);
+    }
+
+    @Test
+    void layersOutsideTheKeyRangeAreClamped() {
+        BatchRenderer aboveRange = submit(100000, 0);
+        BatchRenderer atMax = submit(Short.MAX_VALUE, 0);
+        BatchRenderer belowRange = submit(-100000, 0);
+        BatchRenderer atMin = submit(Short.MIN_VALUE, 0);
+
+        queue.sort();
+
+        // Clamped layers tie with the range limits, so submission order decides
+        assertOrder(belowRange, atMin, aboveRange, atMax);
+    }
+
+    @Test
+    void texturesDifferingInTheirHighBytesSortCorrectly() {
+        BatchRenderer large = submit(0, 0x01000000);
+        BatchRenderer small = submit(0, 2);
+        BatchRenderer medium = submit(0, 0x00010000);
+
+        queue.sort();
+
+        assertOrder(small, medium, large);
+    }
+
+    @Test
+    void equalKeysKeepSubmissionOrderAcrossBothOrderBytes() {
+        // Past 256 submissions the submission order spans two radix passes
+        List<BatchRenderer> first = new ArrayList<>();
+        List<BatchRenderer> second = new ArrayList<>();
+        for (int i = 0; i < 300; i++) {
+            if (i % 2 == 0) {
+                second.add(submit(-1, 7));
+            } else {
+                first.add(submit(-2, 7));
+            }
+        }
+
+        queue.sort();
+
+        assertEquals(300, queue.size());
+        for (int i = 0; i < first.size(); i++) {
+            assertSame(first.get(i), queue.get(i), "position " + i);
+        }
+        for (int i = 0; i < second.size(); i++) {
+            assertSame(second.get(i), queue.get(first.size() + i), "position " + (first.size() + i));
+        }
+    }
+
+    @Test
+    void sortingAnEmptyOrClearedQueueIsANoOp() {
+        queue.sort();
+        assertEquals(0, queue.size());
+
+        submit(1, 1);
+        queue.clear();
+        queue.sort();
+        assertEquals(0, queue.size());
+
+        BatchRenderer batch = submit(0, 0);
+        queue.sort();
+        assertOrder(batch);
+    }
+
+    private BatchRenderer submit(int layer, int textureID) {
+        BatchRenderer batch = new BatchRenderer(layer, 0, 0, false);
+        createdBatches.add(batch);
+        queue.submit(batch, RenderQueue.makeKey(layer, textureID));
+        return batch;
+    }
+
+    private void assertOrder(BatchRenderer... expected) {
+        assertEquals(expected.length, queue.size());
+        for (int i = 0; i < expected.length; i++) {
+            assertSame(expected[i], queue.get(i), "position " + i);
+        }
+    }
+}
+/*End of RenderQueueTest class*/
@@ -0,0 +1,167 @@
+/*
+ Title: TextureResidencyTest
+ Date: 2024-08-19
+ Author: Kyle St John
+ */
+package engine.graphics;
+
+import com.google.gson.Gson;
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+
+import static engine.utils.engine.EConstants.TEXTURE_EVICTION_IDLE_FRAMES;
+import static engine.utils.engine.EConstants.TEXTURE_MEMORY_BUDGET_BYTES;
+import static org.junit.jupiter.api.Assertions.*;
+
+class TextureResidencyTest {
+
+    @Test
+    void copiesReadFromALevelFileShareTheLiveSpritesOfTheirFile() {
+        Texture first = readCopy("assets/residency/shared.png", 7);
+        Texture second = readCopy("assets/residency/shared.png", 7);
+
+        first.retainForSprite();
+        second.retainForSprite();
+        assertEquals(2, first.getNumLiveSprites());
+        assertEquals(2, second.getNumLiveSprites());
+
+        first.releaseForSprite();
+        assertEquals(1, second.getNumLiveSprites());
+        second.releaseForSprite();
+        assertEquals(0, first.getNumLiveSprites());
+    }
+
+    @Test
+    void relativeAndAbsolutePathsOfAFileShareItsUsage() {
+        Texture relative = readCopy("assets/residency/paths.png", 3);
+        Texture absolute = readCopy(new File("assets/residency/paths.png").getAbsolutePath(), 3);
+
+        assertSame(relative.getFileUsage(), absolute.getFileUsage());
+    }
+
+    @Test
+    void differentFilesAreCountedSeparately() {
+        Texture grass = readCopy("assets/residency/grass.png", 4);
+        Texture stone = readCopy("assets/residency/stone.png", 5);
+
+        grass.retainForSprite();
+        assertEquals(1, grass.getNumLiveSprites());
+        assertEquals(0, stone.getNumLiveSprites());
+        grass.releaseForSprite();
+    }
+
+    @Test
+    void usingACopyMarksItsFileAsUsed() {
+        Texture copy = readCopy("assets/residency/used.png", 9);
+        Texture other = readCopy("assets/residency/used.png", 9);
+        assertEquals(0, other.getLastUsedFrame());
+
+        for (int i = 0; i < 3; i++) {
+            TextureResidency.processFrame();
+        }
+        copy.getTextureID();
+
+        assertEquals(TextureResidency.getCurrentFrame(), other.getLastUsedFrame());
+    }
+
+    @Test
+    void texturesDrawnBySpritesAreNotChosenForEviction() {
+        Texture drawn = makeResident("assets/residency/drawn.png", 11);
+        Texture idle = makeResident("assets/residency/idle.png", 12);
+        drawn.retainForSprite();
+        try {
+            idleAndOverBudget();
+            TextureResidency.selectEvictions();
+
+            assertFalse(drawn.isMarkedEvicted());
+            assertTrue(idle.isMarkedEvicted());
+            // Nothing is deleted until the GL thread processes the frame
+            assertTrue(idle.hasGLTexture());
+
+            TextureResidency.processFrame();
+            assertTrue(drawn.hasGLTexture());
+            assertFalse(idle.hasGLTexture());
+        } finally {
+            drawn.releaseForSprite();
+            cleanUp(drawn, idle);
+        }
+    }
+
+    @Test
+    void usingAChosenTextureBeforeTheNextFrameKeepsItsPixels() {
+        Texture texture = makeResident("assets/residency/rescued.png", 13);
+        try {
+            idleAndOverBudget();
+            TextureResidency.selectEvictions();
+            assertTrue(texture.isMarkedEvicted());
+
+            // A sprite added by the tick that runs while the render thread syncs
+            texture.retainForSprite();
+            TextureResidency.processFrame();
+
+            assertFalse(texture.isMarkedEvicted());
+            assertTrue(texture.hasGLTexture());
+            texture.releaseForSprite();
+        } finally {
+            cleanUp(texture);
+        }
+    }
+
+    @Test
+    void evictionStopsOnceTheBudgetIsMet() {
+        Texture older = makeResident("assets/residency/older.png", 14);
+        Texture newer = makeResident("assets/residency/newer.png", 15);
+        try {
+            older.getTextureID();
+            TextureResidency.processFrame();
+            newer.getTextureID();
+            for (int i = 0; i <= TEXTURE_EVICTION_IDLE_FRAMES + 1; i++) {
+                TextureResidency.processFrame();
+            }
+            // Evicting one of the two 16 x 16 textures is enough
+            TextureResidency.setMemoryBudget(TextureResidency.getResidentBytes() - 1);
+            TextureResidency.selectEvictions();
+
+            assertTrue(older.isMarkedEvicted());
+            assertFalse(newer.isMarkedEvicted());
+            TextureResidency.processFrame();
+        } finally {
+            cleanUp(older, newer);
+        }
+    }
+
+    /**
+     * Registers a 16 x 16 texture as having its pixels on the GPU.
+     */
+    private static Texture makeResident(String filePath, int textureID) {
+        String json = "{\"textureID\":" + textureID + ",\"textureWidth\":16,\"textureHeight\":16,\"filePath\":"
+                + new Gson().toJson(filePath) + "}";
+        Texture texture = new Gson().fromJson(json, Texture.class);
+        TextureResidency.onUploaded(texture);
+        return texture;
+    }
+
+    private static void idleAndOverBudget() {
+        for (int i = 0; i <= TEXTURE_EVICTION_IDLE_FRAMES + 1; i++) {
+            TextureResidency.processFrame();
+        }
+        TextureResidency.setMemoryBudget(0);
+    }
+
+    private static void cleanUp(Texture... textures) {
+        for (Texture texture : textures) {
+            TextureResidency.onDeleted(texture);
+        }
+        TextureResidency.setMemoryBudget(TEXTURE_MEMORY_BUDGET_BYTES);
+    }
+
+    /**
+     * Reads a texture the way level files do, which builds a new object with the saved path and GL ID.
+     */
+    private static Texture readCopy(String filePath, int textureID) {
+        String json = "{\"textureID\":" + textureID + ",\"filePath\":" + new Gson().toJson(filePath) + "}";
+        return new Gson().fromJson(json, Texture.class);
+    }
+}
+/*End of TextureResidencyTest class*/
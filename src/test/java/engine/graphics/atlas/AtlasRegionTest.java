@@ -0,0 +1,53 @@
+/*
+ Title: AtlasRegionTest
+ Date: 2024-08-19
+ Author: Kyle St John
+ */
+package engine.graphics.atlas;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class AtlasRegionTest {
+
+    private static final float EPSILON = 1e-6f;
+
+    @Test
+    void sourceEdgesMapToTheRegionEdges() {
+        // A 32 x 16 image at (16, 32) on a 128 x 64 page
+        AtlasRegion region = new AtlasRegion(null, 16, 32, 32, 16, 128, 64);
+
+        assertEquals(16.0f / 128.0f, region.mapU(0.0f), EPSILON);
+        assertEquals(48.0f / 128.0f, region.mapU(1.0f), EPSILON);
+        assertEquals(32.0f / 64.0f, region.mapV(0.0f), EPSILON);
+        assertEquals(48.0f / 64.0f, region.mapV(1.0f), EPSILON);
+    }
+
+    @Test
+    void coordinatesInsideTheSourceMapLinearly() {
+        AtlasRegion region = new AtlasRegion(null, 16, 32, 32, 16, 128, 64);
+
+        assertEquals(32.0f / 128.0f, region.mapU(0.5f), EPSILON);
+        assertEquals(36.0f / 64.0f, region.mapV(0.25f), EPSILON);
+    }
+
+    @Test
+    void regionAtTheTopRightCornerReachesThePageEdge() {
+        AtlasRegion region = new AtlasRegion(null, 96, 48, 32, 16, 128, 64);
+
+        assertEquals(1.0f, region.mapU(1.0f), EPSILON);
+        assertEquals(1.0f, region.mapV(1.0f), EPSILON);
+    }
+
+    @Test
+    void regionCoveringThePageIsTheIdentity() {
+        AtlasRegion region = new AtlasRegion(null, 0, 0, 64, 64, 64, 64);
+
+        assertEquals(0.0f, region.mapU(0.0f), EPSILON);
+        assertEquals(1.0f, region.mapU(1.0f), EPSILON);
+        assertEquals(0.0f, region.mapV(0.0f), EPSILON);
+        assertEquals(0.3f, region.mapV(0.3f), EPSILON);
+    }
+}
+/*End of AtlasRegionTest class*/
@@ -0,0 +1,111 @@
+/*
+ Title: SkylinePackerTest
+ Date: 2024-08-19
+ Author: Kyle St John
+ */
+package engine.graphics.atlas;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SkylinePackerTest {
+
+    private final int[] position = new int[2];
+
+    @Test
+    void firstRectangleGoesInTheBottomLeftCorner() {
+        SkylinePacker packer = new SkylinePacker(64, 64, 0);
+
+        assertTrue(packer.pack(10, 20, position));
+        assertPosition(0, 0);
+    }
+
+    @Test
+    void rectanglesFillTheLowestRowBeforeStackingUp() {
+        SkylinePacker packer = new SkylinePacker(64, 64, 0);
+
+        assertTrue(packer.pack(32, 16, position));
+        assertPosition(0, 0);
+        assertTrue(packer.pack(32, 16, position));
+        assertPosition(32, 0);
+
+        // The two segments are merged, so a full width rectangle fits on top of both
+        assertTrue(packer.pack(64, 8, position));
+        assertPosition(0, 16);
+    }
+
+    @Test
+    void rectangleRestsOnTheHighestSegmentItSpans() {
+        SkylinePacker packer = new SkylinePacker(64, 64, 0);
+        packer.pack(16, 30, position);
+        packer.pack(16, 10, position);
+
+        // Placed at x = 32 this rests on the floor, at x = 0 it would rest on the 30 pixel tall rectangle
+        assertTrue(packer.pack(32, 20, position));
+        assertPosition(32, 0);
+
+        // Placed at x = 16 it spans the 10 and the 20 pixel segments, and rests on the taller one
+        assertTrue(packer.pack(32, 10, position));
+        assertPosition(16, 20);
+    }
+
+    @Test
+    void paddingIsKeptRightOfAndAboveEveryRectangle() {
+        SkylinePacker packer = new SkylinePacker(64, 64, 2);
+
+        assertTrue(packer.pack(30, 10, position));
+        assertPosition(0, 0);
+        assertTrue(packer.pack(30, 10, position));
+        assertPosition(32, 0);
+        assertTrue(packer.pack(10, 10, position));
+        assertPosition(0, 12);
+    }
+
+    @Test
+    void fullPageRejectsFurtherRectangles() {
+        SkylinePacker packer = new SkylinePacker(64, 64, 0);
+        for (int i = 0; i < 4; i++) {
+            assertTrue(packer.pack(32, 32, position));
+        }
+
+        // The atlas opens a new page when a page rejects an image
+        assertFalse(packer.pack(1, 1, position));
+    }
+
+    @Test
+    void rectangleThatDoesNotFitTheRemainingSpaceIsRejected() {
+        SkylinePacker packer = new SkylinePacker(64, 64, 0);
+        assertTrue(packer.pack(64, 40, position));
+
+        assertFalse(packer.pack(10, 30, position));
+        assertTrue(packer.pack(10, 24, position));
+        assertPosition(0, 40);
+    }
+
+    @Test
+    void rectangleLargerThanThePageIsRejected() {
+        SkylinePacker packer = new SkylinePacker(64, 64, 0);
+
+        assertFalse(packer.pack(65, 1, position));
+        assertFalse(packer.pack(1, 65, position));
+
+        // A rejected rectangle reserves nothing
+        assertTrue(packer.pack(64, 64, position));
+        assertPosition(0, 0);
+    }
+
+    @Test
+    void paddingCountsTowardsThePageSize() {
+        SkylinePacker packer = new SkylinePacker(64, 64, 2);
+
+        assertFalse(packer.pack(63, 10, position));
+        assertTrue(packer.pack(62, 62, position));
+    }
+
+    private void assertPosition(int x, int y) {
+        assertEquals(x, position[0], "x");
+        assertEquals(y, position[1], "y");
+    }
+}
+/*End of SkylinePackerTest class*/
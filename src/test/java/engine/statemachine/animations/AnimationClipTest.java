@@ -0,0 +1,102 @@
+/*
+ Title: AnimationClipTest
+ Date: 2024-08-19
+ Author: Kyle St John
+ */
+package engine.statemachine.animations;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class AnimationClipTest {
+
+    private static final float EPSILON = 1e-6f;
+
+    @Test
+    void framesAdvanceEveryFrameDuration() {
+        AnimationClip clip = createClip(4, 0.25f, true);
+
+        assertEquals(0, clip.getFrameAt(0.0f));
+        assertEquals(0, clip.getFrameAt(0.24f));
+        assertEquals(1, clip.getFrameAt(0.26f));
+        assertEquals(3, clip.getFrameAt(0.9f));
+    }
+
+    @Test
+    void loopingClipsWrapAroundToTheFirstFrame() {
+        AnimationClip clip = createClip(4, 0.25f, true);
+
+        assertEquals(0, clip.getFrameAt(1.1f));
+        assertEquals(2, clip.getFrameAt(1.6f));
+        // Far past the end the frame still wraps
+        assertEquals(1, clip.getFrameAt(100.3f));
+    }
+
+    @Test
+    void clipsThatDoNotLoopHoldTheirLastFrame() {
+        AnimationClip clip = createClip(4, 0.25f, false);
+
+        assertEquals(3, clip.getFrameAt(0.9f));
+        assertEquals(3, clip.getFrameAt(1.1f));
+        assertEquals(3, clip.getFrameAt(100.0f));
+    }
+
+    @Test
+    void negativeTimesShowTheFirstFrame() {
+        assertEquals(0, createClip(4, 0.25f, true).getFrameAt(-0.6f));
+        assertEquals(0, createClip(4, 0.25f, false).getFrameAt(-0.6f));
+    }
+
+    @Test
+    void singleFrameClipsAlwaysShowThatFrame() {
+        AnimationClip looping = createClip(1, 0.1f, true);
+        AnimationClip holding = createClip(1, 0.1f, false);
+
+        assertEquals(0, looping.getFrameAt(5.05f));
+        assertEquals(0, holding.getFrameAt(5.05f));
+    }
+
+    @Test
+    void uvsAreReadPerFrameAndCorner() {
+        AnimationClip clip = createClip(3, 0.1f, true);
+
+        assertEquals(2.0f, clip.getU(2, 0), EPSILON);
+        assertEquals(2.1f, clip.getV(2, 0), EPSILON);
+        assertEquals(1.6f, clip.getU(1, 3), EPSILON);
+        assertEquals(1.7f, clip.getV(1, 3), EPSILON);
+        assertEquals(0.3f, clip.getV(0, 1), EPSILON);
+    }
+
+    @Test
+    void theUvTableIsCopied() {
+        float[] uvTable = new float[8];
+        AnimationClip clip = new AnimationClip("copied", null, uvTable, 0.1f, true);
+        uvTable[0] = 1.0f;
+
+        assertEquals(0.0f, clip.getU(0, 0), EPSILON);
+    }
+
+    @Test
+    void durationCoversEveryFrame() {
+        AnimationClip clip = createClip(5, 0.2f, false);
+
+        assertEquals(5, clip.getNumFrames());
+        assertEquals(1.0f, clip.getDuration(), EPSILON);
+    }
+
+    /**
+     * Creates a clip whose table holds frame + i / 10 at the i-th float of each frame, so every UV is distinct.
+     */
+    private static AnimationClip createClip(int numFrames, float frameDuration, boolean bIsLooping) {
+        float[] uvTable = new float[numFrames * 8];
+        for (int frame = 0; frame < numFrames; frame++) {
+            for (int corner = 0; corner < 4; corner++) {
+                uvTable[frame * 8 + 2 * corner] = frame + 2 * corner / 10.0f;
+                uvTable[frame * 8 + 2 * corner + 1] = frame + (2 * corner + 1) / 10.0f;
+            }
+        }
+        return new AnimationClip("clip", null, uvTable, frameDuration, bIsLooping);
+    }
+}
+/*End of AnimationClipTest class*/
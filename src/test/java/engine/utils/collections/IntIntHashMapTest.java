@@ -0,0 +1,168 @@
+/*
+ Title: IntIntHashMapTest
+ Date: 2024-08-19
+ Author: Kyle St John
+ */
+package engine.utils.collections;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class IntIntHashMapTest {
+
+    @Test
+    void removingTheHeadOfAProbeChainKeepsTheRestReachable() {
+        IntIntHashMap map = new IntIntHashMap(8);
+        int[] chain = findKeysWithHome(map, 3, 3);
+        for (int key : chain) {
+            map.put(key, key * 10);
+        }
+
+        assertTrue(map.remove(chain[0]));
+
+        assertFalse(map.containsKey(chain[0]));
+        assertEquals(chain[1] * 10, map.get(chain[1], -1));
+        assertEquals(chain[2] * 10, map.get(chain[2], -1));
+        assertEquals(2, map.size());
+    }
+
+    @Test
+    void removingTheMiddleOfAProbeChainKeepsTheRestReachable() {
+        IntIntHashMap map = new IntIntHashMap(8);
+        int[] chain = findKeysWithHome(map, 5, 4);
+        for (int key : chain) {
+            map.put(key, key * 10);
+        }
+
+        assertTrue(map.remove(chain[1]));
+
+        assertFalse(map.containsKey(chain[1]));
+        assertEquals(chain[0] * 10, map.get(chain[0], -1));
+        assertEquals(chain[2] * 10, map.get(chain[2], -1));
+        assertEquals(chain[3] * 10, map.get(chain[3], -1));
+    }
+
+    @Test
+    void entriesAtTheirHomeSlotAreNotShiftedIntoAGap() {
+        IntIntHashMap map = new IntIntHashMap(8);
+        int[] first = findKeysWithHome(map, 2, 2);
+        // Lives in the slot right after the chain, which is also its home, so it must stay put
+        int neighbour = findKeysWithHome(map, 4, 1)[0];
+        map.put(first[0], 1);
+        map.put(first[1], 2);
+        map.put(neighbour, 3);
+
+        assertTrue(map.remove(first[0]));
+
+        assertEquals(2, map.get(first[1], -1));
+        assertEquals(3, map.get(neighbour, -1));
+        assertTrue(map.remove(neighbour));
+        assertEquals(2, map.get(first[1], -1));
+    }
+
+    @Test
+    void probeChainsWrapAroundTheEndOfTheTable() {
+        IntIntHashMap map = new IntIntHashMap(8);
+        int lastSlot = map.getCapacity() - 1;
+        int[] chain = findKeysWithHome(map, lastSlot, 3);
+        for (int key : chain) {
+            map.put(key, key * 10);
+        }
+
+        // The second and third keys are stored in slots 0 and 1, past the end of the table
+        assertTrue(map.remove(chain[0]));
+        assertEquals(chain[1] * 10, map.get(chain[1], -1));
+        assertEquals(chain[2] * 10, map.get(chain[2], -1));
+
+        assertTrue(map.remove(chain[2]));
+        assertEquals(chain[1] * 10, map.get(chain[1], -1));
+        assertEquals(1, map.size());
+    }
+
+    @Test
+    void negativeKeysAreRegularKeys() {
+        IntIntHashMap map = new IntIntHashMap(4);
+        map.put(-1, 1);
+        map.put(Integer.MIN_VALUE, 2);
+        map.put(0, 3);
+        map.put(-42, 4);
+
+        assertEquals(1, map.get(-1, -99));
+        assertEquals(2, map.get(Integer.MIN_VALUE, -99));
+        assertEquals(3, map.get(0, -99));
+        assertEquals(4, map.get(-42, -99));
+
+        assertTrue(map.remove(Integer.MIN_VALUE));
+        assertFalse(map.containsKey(Integer.MIN_VALUE));
+        assertEquals(1, map.get(-1, -99));
+        assertEquals(-99, map.get(Integer.MIN_VALUE, -99));
+    }
+
+    @Test
+    void putReplacesTheValueOfAPresentKey() {
+        IntIntHashMap map = new IntIntHashMap(4);
+        map.put(7, 1);
+        map.put(7, 2);
+
+        assertEquals(2, map.get(7, -1));
+        assertEquals(1, map.size());
+    }
+
+    @Test
+    void growingKeepsEveryEntry() {
+        IntIntHashMap map = new IntIntHashMap(2);
+        int initialCapacity = map.getCapacity();
+        for (int key = -500; key < 500; key++) {
+            map.put(key, key + 1);
+        }
+
+        assertTrue(map.getCapacity() > initialCapacity);
+        assertEquals(1000, map.size());
+        for (int key = -500; key < 500; key++) {
+            assertEquals(key + 1, map.get(key, Integer.MIN_VALUE));
+        }
+    }
+
+    @Test
+    void matchesAHashMapUnderRandomPutsAndRemoves() {
+        // A small key range on a small table gives long probe chains that wrap around
+        IntIntHashMap map = new IntIntHashMap(16);
+        Map<Integer, Integer> expected = new HashMap<>();
+        Random random = new Random(1234);
+
+        for (int i = 0; i < 20000; i++) {
+            int key = random.nextInt(64) - 32;
+            if (random.nextBoolean()) {
+                map.put(key, i);
+                expected.put(key, i);
+            } else {
+                assertEquals(expected.remove(key) != null, map.remove(key));
+            }
+        }
+
+        assertEquals(expected.size(), map.size());
+        for (int key = -32; key < 32; key++) {
+            assertEquals((int) expected.getOrDefault(key, -1), map.get(key, -1));
+        }
+    }
+
+    /**
+     * Finds keys that are all first probed at the same slot of a map.
+     */
+    private static int[] findKeysWithHome(IntIntHashMap map, int home, int numKeys) {
+        int[] keys = new int[numKeys];
+        int numFound = 0;
+        for (int key = 0; numFound < numKeys; key++) {
+            if (map.hash(key) == home) {
+                keys[numFound++] = key;
+            }
+        }
+        return keys;
+    }
+}
+/*End of IntIntHashMapTest class*/
@@ -0,0 +1,70 @@
+/*
+ Title: QuadKernelVector
+ Date: 2024-07-25
+ Author: Kyle St John
+ */
+package engine.graphics;
+
+import jdk.incubator.vector.FloatVector;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * The Vector API path of {@link QuadKernel}. Lives in the vector source set, the only one compiled with
+ * the incubator module, and is looked up by {@link QuadKernel} at runtime so the engine builds and runs
+ * without it.
+ */
+final class QuadKernelVector implements QuadKernel.VectorTransform {
+
+    private static final VectorSpecies<Float> SPECIES = FloatVector.SPECIES_PREFERRED;
+
+    // Created reflectively by QuadKernel
+    QuadKernelVector() {
+    }
+
+    @Override
+    public void transformQuads(QuadKernel kernel, int numQuads) {
+        transform(kernel, numQuads);
+    }
+
+    /**
+     * Computes the corners of the first sprites of the kernel's scratch memory, a full vector of
+     * sprites at a time. The remainder goes through the scalar loop.
+     */
+    static void transform(QuadKernel kernel, int numQuads) {
+        int capacity = kernel.capacity;
+        int upperBound = SPECIES.loopBound(numQuads);
+
+        int i = 0;
+        for (; i < upperBound; i += SPECIES.length()) {
+            FloatVector radians = FloatVector.fromArray(SPECIES, kernel.rotation, i).mul(QuadKernel.DEG_TO_RAD);
+            FloatVector cos = radians.lanewise(VectorOperators.COS);
+            FloatVector sin = radians.lanewise(VectorOperators.SIN);
+
+            FloatVector halfWidth = FloatVector.fromArray(SPECIES, kernel.halfWidth, i);
+            FloatVector halfHeight = FloatVector.fromArray(SPECIES, kernel.halfHeight, i);
+            FloatVector a = halfWidth.mul(cos);
+            FloatVector b = halfWidth.mul(sin);
+            FloatVector d = halfHeight.mul(sin);
+            FloatVector e = halfHeight.mul(cos);
+
+            FloatVector aMinusD = a.sub(d);
+            FloatVector aPlusD = a.add(d);
+            FloatVector bMinusE = b.sub(e);
+            FloatVector bPlusE = b.add(e);
+
+            FloatVector centerX = FloatVector.fromArray(SPECIES, kernel.centerX, i);
+            FloatVector centerY = FloatVector.fromArray(SPECIES, kernel.centerY, i);
+            centerX.sub(aMinusD).intoArray(kernel.cornerX, i);
+            centerY.sub(bPlusE).intoArray(kernel.cornerY, i);
+            centerX.sub(aPlusD).intoArray(kernel.cornerX, capacity + i);
+            centerY.sub(bMinusE).intoArray(kernel.cornerY, capacity + i);
+            centerX.add(aMinusD).intoArray(kernel.cornerX, 2 * capacity + i);
+            centerY.add(bPlusE).intoArray(kernel.cornerY, 2 * capacity + i);
+            centerX.add(aPlusD).intoArray(kernel.cornerX, 3 * capacity + i);
+            centerY.add(bMinusE).intoArray(kernel.cornerY, 3 * capacity + i);
+        }
+        kernel.transformRange(i, numQuads);
+    }
+}
+/*End of QuadKernelVector class*/